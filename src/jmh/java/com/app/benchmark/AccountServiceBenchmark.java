@@ -0,0 +1,67 @@
+package com.app.benchmark;
+
+import com.app.DAO.AccountDAO;
+import com.app.Model.Account;
+import com.app.Service.AccountIndex;
+import com.app.Service.AccountService;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures AccountService.login with the seed account (testuser1 / password), whose password is hashed with PBKDF2
+ * by a first login during setup.
+ * The warm variant reuses one service, so repeated logins are answered from the login cache;
+ * the hashed variant shares the account index but uses a new service (and so an empty login cache) for every login,
+ * so each login verifies the password hash on the hashing pool;
+ * the cold variant uses a new service and index for every login, so each login also reads the account from the database.
+ * Running with several threads (-t) shows how login throughput is capped by the size of the hashing pool
+ * (-Dapp.passwords.threads).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    private AccountDAO accountDAO;
+    private AccountIndex accountIndex;
+    private AccountService accountService;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.resetWithMessages(1);
+        accountDAO = new AccountDAO();
+        accountIndex = new AccountIndex(accountDAO);
+        accountService = new AccountService(accountDAO, accountIndex);
+        // Replacing the seed account's plaintext password with a hash
+        accountService.login("testuser1", "password");
+    }
+
+    @Benchmark
+    public Account loginWarm() {
+        return accountService.login("testuser1", "password");
+    }
+
+    @Benchmark
+    public Account loginHashed() {
+        return new AccountService(accountDAO, accountIndex).login("testuser1", "password");
+    }
+
+    @Benchmark
+    public Account loginCold() {
+        return new AccountService(accountDAO).login("testuser1", "password");
+    }
+}
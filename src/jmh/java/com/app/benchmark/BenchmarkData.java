@@ -0,0 +1,45 @@
+package com.app.benchmark;
+
+import com.app.Util.ConnectionUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Prepares the database for a benchmark run: the test schema with its seed account,
+ * plus a given number of messages inserted in JDBC batches.
+ */
+final class BenchmarkData {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Resets the database and fills the message table.
+     *
+     * @param messageCount The number of messages in the table afterwards (the seed message included).
+     */
+    static void resetWithMessages(int messageCount) {
+        ConnectionUtil.resetTestDatabase();
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (1, ?, ?)";
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            for (int i = 1; i < messageCount; i++) {
+                preparedStatement.setString(1, "benchmark message " + i);
+                preparedStatement.setLong(2, 1669947792L + i);
+                preparedStatement.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    preparedStatement.executeBatch();
+                }
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not prepare benchmark data", e);
+        }
+    }
+}
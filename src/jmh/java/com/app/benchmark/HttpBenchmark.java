@@ -0,0 +1,117 @@
+package com.app.benchmark;
+
+import com.app.Controller.SocialMediaController;
+
+import io.javalin.Javalin;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end requests against an in-process SocialMediaController.startAPI() instance, in both threading modes.
+ * Many client threads are used so that the comparison between platform and virtual threads reflects concurrent load.
+ * Rate limiting and the adaptive concurrency limit are turned off, since all requests come from one client and every
+ * response is expected to be a 200.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(64)
+@Fork(value = 1, jvmArgsAppend = {"-Dapp.rateLimit.enabled=false", "-Dapp.concurrencyLimit.enabled=false"})
+public class HttpBenchmark {
+
+    private static final int TABLE_SIZE = 1000;
+    private static final int BATCH_SIZE = 100;
+    private static final String BATCH_BODY =
+            "{\"posted_by\": 1, \"message_text\": \"benchmark post\", \"time_posted_epoch\": 1669947792}\n".repeat(BATCH_SIZE);
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.resetWithMessages(TABLE_SIZE);
+        app = new SocialMediaController().startAPI(virtualThreads);
+        // Port 0 lets the OS pick a free port, so a running instance of the application does not get in the way
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public int getMessageById() throws IOException, InterruptedException {
+        int messageId = ThreadLocalRandom.current().nextInt(1, TABLE_SIZE + 1);
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + messageId)).build());
+    }
+
+    @Benchmark
+    public int getMessagesPage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages?limit=100")).build());
+    }
+
+    @Benchmark
+    public int postMessage() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"posted_by\": 1, \"message_text\": \"benchmark post\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    /**
+     * Posts BATCH_SIZE messages in one request, to compare per-message cost with postMessage.
+     */
+    @Benchmark
+    public int postMessageBatch() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(BATCH_BODY))
+                .header("Content-Type", "application/x-ndjson")
+                .build());
+    }
+
+    @Benchmark
+    public int login() throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + request.uri());
+        }
+        return response.body().length;
+    }
+}
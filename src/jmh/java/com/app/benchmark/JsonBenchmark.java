@@ -0,0 +1,68 @@
+package com.app.benchmark;
+
+import com.app.Model.Message;
+import com.app.Util.JsonCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Jackson serialization of Message lists: with the application's JsonCodec writer, with one shared ObjectMapper
+ * and with a new ObjectMapper per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int listSize;
+
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+    private List<Message> messages;
+
+    @Setup
+    public void setUp() {
+        messages = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++) {
+            messages.add(new Message(i, 1, "benchmark message " + i, 1669947792L + i));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeWithCodec() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonCodec.getInstance().writeMessages(out, messages);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serializeWithSharedMapper() throws JsonProcessingException {
+        return sharedMapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] serializeWithNewMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsBytes(messages);
+    }
+}
@@ -0,0 +1,86 @@
+package com.app.benchmark;
+
+import com.app.DAO.JdbcMessageDAO;
+import com.app.DAO.MappedLogMessageDAO;
+import com.app.DAO.MessageDAO;
+import com.app.DAO.OffHeapMessageDAO;
+import com.app.Model.Message;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the MessageDAO operations against message tables of several sizes, for each message store.
+ * The off-heap store and the message log are filled with the same messages as the H2 table, in a fresh temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDAOBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    @Param({"jdbc", "offheap", "log"})
+    public String store;
+
+    private MessageDAO messageDAO;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.resetWithMessages(tableSize);
+        if (store.equals("jdbc")) {
+            messageDAO = new JdbcMessageDAO();
+            return;
+        }
+        if (store.equals("offheap")) {
+            messageDAO = new OffHeapMessageDAO(Files.createTempDirectory("message-store"), true, 64L << 20);
+        } else {
+            MappedLogMessageDAO log = new MappedLogMessageDAO(Files.createTempDirectory("message-log"), true, 16 << 20);
+            log.startCompactor(30_000L);
+            messageDAO = log;
+        }
+        messageDAO.insertMessages(new JdbcMessageDAO().getAllMessages());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (messageDAO instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(new Message(1, "benchmark insert", 1669947792L));
+    }
+
+    @Benchmark
+    public Message getMessageByMessageID() {
+        return messageDAO.getMessageByMessageID(ThreadLocalRandom.current().nextInt(1, tableSize + 1));
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() {
+        return messageDAO.getAllMessages();
+    }
+}
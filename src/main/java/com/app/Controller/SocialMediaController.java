@@ -1,28 +1,151 @@
 package com.app.Controller;
 
 import io.javalin.Javalin;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
+import io.javalin.config.HttpConfig;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.HttpResponseException;
+import io.javalin.http.sse.SseClient;
+import io.javalin.validation.ValidationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.app.DAO.AccountDAO;
+import com.app.DAO.MessageDAO;
 import com.app.Model.Account;
+import com.app.Model.BatchItemResult;
 import com.app.Model.Message;
+import com.app.Model.MessagePage;
+import com.app.Service.AccountIndex;
 import com.app.Service.AccountService;
+import com.app.Service.MessageEventBus;
 import com.app.Service.MessageService;
+import com.app.Service.MessageStats;
+import com.app.Service.SessionTokens;
+import com.app.Service.VersionTracker;
+import com.app.Util.ConcurrencyLimiter;
+import com.app.Util.ConnectionUtil;
+import com.app.Util.DatabaseUnavailableException;
+import com.app.Util.JsonCodec;
+import com.app.Util.LatencyHistogram;
+import com.app.Util.LruCache;
+import com.app.Util.MetricsRegistry;
+import com.app.Util.RateLimiter;
+import com.app.Util.ResponseSnapshot;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Controller class responsible for handling the HTTP requests related to social media functionality.
  * It manages the interactions with Account and Message services.
  */
 public class SocialMediaController {
+    /**
+     * Runs request handlers on virtual threads instead of Jetty's platform thread pool when -Dapp.virtualThreads=true.
+     */
+    private static final boolean USE_VIRTUAL_THREADS = Boolean.getBoolean("app.virtualThreads");
+
+    /**
+     * How long a request waits for its turn at the database before being answered with 503 Service Unavailable.
+     */
+    private static final long DATABASE_ADMISSION_TIMEOUT_MILLIS = Long.getLong("app.db.admissionTimeoutMillis", 5000);
+
+    /**
+     * Response compression: app.http.compression selects gzip (the default), brotli (brotli for clients that accept it,
+     * gzip for the others; needs brotli4j on the classpath) or none. Responses smaller than app.http.compressionMinBytes
+     * are sent uncompressed, since compressing them costs more than it saves.
+     */
+    private static final String COMPRESSION = System.getProperty("app.http.compression", "gzip");
+    private static final int COMPRESSION_MIN_BYTES = Integer.getInteger("app.http.compressionMinBytes", 1024);
+    private static final int GZIP_LEVEL = Integer.getInteger("app.http.gzipLevel", 6);
+    private static final int BROTLI_LEVEL = Integer.getInteger("app.http.brotliLevel", 4);
+
+    /**
+     * The largest GET /messages body kept serialized between requests (-Dapp.messages.snapshotMaxBytes).
+     */
+    private static final int MESSAGE_LIST_SNAPSHOT_MAX_BYTES = Integer.getInteger("app.messages.snapshotMaxBytes", 8 << 20);
+
+    /**
+     * Per-client rate limits, on unless -Dapp.rateLimit.enabled=false. Every client IP gets app.rateLimit.ipPerSecond
+     * requests per second with bursts of app.rateLimit.ipBurst; writes are also limited per account (posted_by or the
+     * session token's account) and logins and registrations per username, to app.rateLimit.accountPerSecond with bursts
+     * of app.rateLimit.accountBurst. Buckets idle for app.rateLimit.idleMillis are dropped.
+     */
+    private static final boolean RATE_LIMIT_ENABLED = Boolean.parseBoolean(System.getProperty("app.rateLimit.enabled", "true"));
+    private static final double RATE_LIMIT_IP_PER_SECOND = Double.parseDouble(System.getProperty("app.rateLimit.ipPerSecond", "100"));
+    private static final int RATE_LIMIT_IP_BURST = Integer.getInteger("app.rateLimit.ipBurst", 200);
+    private static final double RATE_LIMIT_ACCOUNT_PER_SECOND = Double.parseDouble(System.getProperty("app.rateLimit.accountPerSecond", "10"));
+    private static final int RATE_LIMIT_ACCOUNT_BURST = Integer.getInteger("app.rateLimit.accountBurst", 50);
+    private static final long RATE_LIMIT_IDLE_MILLIS = Long.getLong("app.rateLimit.idleMillis", 60000);
+
+    /**
+     * Adaptive limit on concurrent message requests, on unless -Dapp.concurrencyLimit.enabled=false. It starts at
+     * app.concurrencyLimit.initial, stays between app.concurrencyLimit.min and app.concurrencyLimit.max, and is cut when
+     * requests take longer than app.concurrencyLimit.targetLatencyMillis.
+     */
+    private static final boolean CONCURRENCY_LIMIT_ENABLED = Boolean.parseBoolean(System.getProperty("app.concurrencyLimit.enabled", "true"));
+    private static final int CONCURRENCY_LIMIT_INITIAL = Integer.getInteger("app.concurrencyLimit.initial", 64);
+    private static final int CONCURRENCY_LIMIT_MIN = Integer.getInteger("app.concurrencyLimit.min", 8);
+    private static final int CONCURRENCY_LIMIT_MAX = Integer.getInteger("app.concurrencyLimit.max", 1000);
+    private static final long CONCURRENCY_LIMIT_TARGET_LATENCY_MILLIS = Long.getLong("app.concurrencyLimit.targetLatencyMillis", 500);
+
+    /**
+     * When -Dapp.auth.required=true, writes without a valid session token are answered with 401. Otherwise a token is
+     * optional, and only checked (and used for authorization) when one is sent.
+     */
+    private static final boolean AUTH_REQUIRED = Boolean.getBoolean("app.auth.required");
+
+    /**
+     * The response header a session token is sent in by POST /login. Clients send it back as Authorization: Bearer.
+     */
+    private static final String SESSION_TOKEN_HEADER = "X-Session-Token";
+
+    /**
+     * Returned by authenticate() when no token was sent and none is required.
+     */
+    private static final int NO_SESSION = 0;
+
+    /**
+     * The date format of the Last-Modified header (RFC 1123, always in GMT).
+     */
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
     // Declaring accountService and messageService as class-level fields.
     private AccountService accountService;
     private MessageService messageService;
 
+    // Issues and verifies the session tokens of logged-in accounts
+    private final SessionTokens sessionTokens = new SessionTokens();
+
+    // Token buckets per client IP, and per account or username for writes and logins
+    private final RateLimiter ipRateLimiter = new RateLimiter(RATE_LIMIT_IP_PER_SECOND, RATE_LIMIT_IP_BURST, RATE_LIMIT_IDLE_MILLIS);
+    private final RateLimiter accountRateLimiter = new RateLimiter(RATE_LIMIT_ACCOUNT_PER_SECOND, RATE_LIMIT_ACCOUNT_BURST, RATE_LIMIT_IDLE_MILLIS);
+
+    // The JSON codec shared by every handler, with pre-built readers and writers for Account and Message
+    private final JsonCodec json = JsonCodec.getInstance();
+
+    // The serialized and pre-compressed GET /messages body, rebuilt only after messages have changed
+    private final ResponseSnapshot messageListSnapshot = new ResponseSnapshot(MESSAGE_LIST_SNAPSHOT_MAX_BYTES, COMPRESSION_MIN_BYTES, GZIP_LEVEL);
+
     // Constructing a new SocialMediaController and initializes the AccountService and MessageService.
+    // Both services share one AccountIndex, so an account registered through one is known to the other.
     public SocialMediaController() {
-        this.accountService = new AccountService();
-        this.messageService = new MessageService();
+        AccountDAO accountDAO = new AccountDAO();
+        AccountIndex accountIndex = new AccountIndex(accountDAO);
+        this.accountService = new AccountService(accountDAO, accountIndex);
+        this.messageService = new MessageService(MessageDAO.create(), accountDAO, accountIndex);
     }
 
     /**
@@ -32,81 +155,369 @@ public class SocialMediaController {
      * @return A Javalin app object that configures the behavior of the controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        return startAPI(USE_VIRTUAL_THREADS);
+    }
+
+    /**
+     * Starts the Javalin application in the given threading mode and defines the routes for various endpoints.
+     *
+     * In virtual-thread mode every request runs on its own virtual thread, so a slow database no longer caps throughput
+     * at the size of Jetty's thread pool. Since thousands of requests can then be in flight at once, the handlers that use
+     * the database are admitted through a semaphore sized to the connection pool: requests wait their turn on the
+     * semaphore (cheap for a virtual thread) instead of piling onto a handful of connections.
+     *
+     * @param useVirtualThreads True to run requests on virtual threads, false to use Jetty's platform thread pool.
+     * @return A Javalin app object that configures the behavior of the controller.
+     */
+    public Javalin startAPI(boolean useVirtualThreads) {
+        Javalin app = Javalin.create(config -> {
+            config.useVirtualThreads = useVirtualThreads;
+            // Anything serialized by Javalin itself goes through the same codec as the handlers
+            config.jsonMapper(json);
+            configureCompression(config.http);
+            // Once no more requests are served, writing out the messages still queued in write-behind mode
+            config.events(events -> events.serverStopped(messageService::shutdown));
+        });
+
+        // With platform threads, Jetty's thread pool already bounds concurrency
+        Semaphore databasePermits = useVirtualThreads ? new Semaphore(ConnectionUtil.getPool().getMaxSize(), true) : null;
+        // Login and registration are bounded by the password hashing pool instead, and their latency is mostly hashing
+        ConcurrencyLimiter messageLimiter = CONCURRENCY_LIMIT_ENABLED
+                ? new ConcurrencyLimiter(CONCURRENCY_LIMIT_INITIAL, CONCURRENCY_LIMIT_MIN, CONCURRENCY_LIMIT_MAX, CONCURRENCY_LIMIT_TARGET_LATENCY_MILLIS)
+                : null;
+
+        // Over-limit clients are turned away before any route runs
+        if (RATE_LIMIT_ENABLED) {
+            app.before(this::rateLimitFilter);
+        }
         
         // Account-related routes
-        app.post("/register", this::registerAccountHandler);
-        app.post("/login", this::postLoginHandler);
+        app.post("/register", instrumented("POST /register", databaseBound(databasePermits, null, this::registerAccountHandler)));
+        app.post("/login", instrumented("POST /login", databaseBound(databasePermits, null, this::postLoginHandler)));
+        app.post("/logout", instrumented("POST /logout", this::postLogoutHandler));
+
+        // Live feeds of message changes, registered before /messages/{message_id} so "feed" is not taken for an ID
+        app.sse("/messages/feed", client -> subscribeToFeed(client, null));
+        app.sse("/accounts/{account_id}/messages/feed", this::accountMessageFeedHandler);
 
         // Message-related routes
-        app.get("/messages", this::getAllMessagesHandler);
-        app.get("/messages/{message_id}", this::getMessageByMessageIdHandler);
-        app.post("/messages", this::postMessageHandler);
-        app.patch("/messages/{message_id}", this::updateMessageHandler);
-        app.delete("/messages/{message_id}", this::deleteMessageHandler);
+        app.get("/messages", instrumented("GET /messages", databaseBound(databasePermits, messageLimiter, this::getAllMessagesHandler)));
+        // Registered before /messages/{message_id} so "search" is not taken for an ID
+        app.get("/messages/search", instrumented("GET /messages/search", databaseBound(databasePermits, messageLimiter, this::searchMessagesHandler)));
+        app.get("/messages/{message_id}", instrumented("GET /messages/{message_id}", databaseBound(databasePermits, messageLimiter, this::getMessageByMessageIdHandler)));
+        app.post("/messages", instrumented("POST /messages", databaseBound(databasePermits, messageLimiter, this::postMessageHandler)));
+        app.post("/messages/batch", instrumented("POST /messages/batch", databaseBound(databasePermits, messageLimiter, this::postMessageBatchHandler)));
+        app.patch("/messages/{message_id}", instrumented("PATCH /messages/{message_id}", databaseBound(databasePermits, messageLimiter, this::updateMessageHandler)));
+        app.delete("/messages/{message_id}", instrumented("DELETE /messages/{message_id}", databaseBound(databasePermits, messageLimiter, this::deleteMessageHandler)));
 
         // Account and message-related routes
-        app.get("/accounts/{account_id}/messages", this::getAllMessagesByAccountIdHandler);
+        app.get("/accounts/{account_id}/messages", instrumented("GET /accounts/{account_id}/messages", databaseBound(databasePermits, messageLimiter, this::getAllMessagesByAccountIdHandler)));
+
+        // Message statistics, read from counters kept up to date by MessageService
+        app.get("/stats", instrumented("GET /stats", this::getStatsSummaryHandler));
+        app.get("/stats/accounts/{account_id}", instrumented("GET /stats/accounts/{account_id}", this::getAccountStatsHandler));
+        app.get("/stats/top-posters", instrumented("GET /stats/top-posters", this::getTopPostersHandler));
+        app.get("/stats/hourly", instrumented("GET /stats/hourly", ctx -> getPostCountsHandler(ctx, MessageStats.HOUR_SECONDS)));
+        app.get("/stats/daily", instrumented("GET /stats/daily", ctx -> getPostCountsHandler(ctx, MessageStats.DAY_SECONDS)));
+        app.post("/stats/rebuild", instrumented("POST /stats/rebuild", databaseBound(databasePermits, messageLimiter, this::rebuildStatsHandler)));
+
+        // Runtime metrics in the Prometheus text format
+        registerCacheMetrics();
+        registerFeedMetrics();
+        registerLimiterMetrics(messageLimiter);
+        app.get("/metrics", this::getMetricsHandler);
 
         return app;
     }
 
+    /**
+     * Applies the compression settings read from app.http.compression, app.http.compressionMinBytes,
+     * app.http.gzipLevel and app.http.brotliLevel.
+     *
+     * @param http The HTTP settings of the Javalin app being created.
+     */
+    private void configureCompression(HttpConfig http) {
+        CompressionStrategy strategy;
+        switch (COMPRESSION) {
+            case "none":
+                http.disableCompression();
+                return;
+            case "brotli":
+                if (isBrotliAvailable()) {
+                    strategy = new CompressionStrategy(new Brotli(BROTLI_LEVEL), new Gzip(GZIP_LEVEL));
+                    break;
+                }
+                System.out.println("Brotli compression needs brotli4j on the classpath, using gzip only");
+                strategy = new CompressionStrategy(null, new Gzip(GZIP_LEVEL));
+                break;
+            default:
+                strategy = new CompressionStrategy(null, new Gzip(GZIP_LEVEL));
+        }
+        strategy.setDefaultMinSizeForCompression(COMPRESSION_MIN_BYTES);
+        http.customCompression(strategy);
+    }
+
+    private static boolean isBrotliAvailable() {
+        try {
+            Class.forName("com.aayushatharva.brotli4j.Brotli4jLoader");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wraps a handler so that its latency and response status codes are recorded under the given route name.
+     * The histogram and the status counter are looked up once here, so a request only increments pre-allocated counters.
+     * A handler that throws is counted with the status Javalin answers with: the status of an HttpResponseException
+     * (e.g. BadRequestResponse), 400 for a ValidationException from a malformed query parameter, and 500 otherwise.
+     *
+     * @param route The route label, e.g. "GET /messages/{message_id}".
+     * @param handler The handler to wrap.
+     * @return The wrapped handler.
+     */
+    private Handler instrumented(String route, Handler handler) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String labels = MetricsRegistry.label("route", route);
+        LatencyHistogram latency = metrics.latency("app_http_request_duration_seconds", "HTTP request latency by route.", labels);
+        MetricsRegistry.StatusCounter statuses = metrics.statusCounter("app_http_requests_total", "HTTP requests by route and status code.", labels);
+        return ctx -> {
+            long start = System.nanoTime();
+            // The status Javalin's exception mappers answer with when the handler throws
+            int status = 500;
+            try {
+                handler.handle(ctx);
+                status = ctx.statusCode();
+            } catch (HttpResponseException e) {
+                status = e.getStatus();
+                throw e;
+            } catch (ValidationException e) {
+                status = 400;
+                throw e;
+            } finally {
+                latency.recordSince(start);
+                statuses.increment(status);
+            }
+        };
+    }
+
+    /**
+     * Publishes the message cache statistics of this controller's MessageService on /metrics.
+     */
+    private void registerCacheMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        LruCache<Integer, Message> messageCache = messageService.getMessageCache();
+        metrics.counter("app_message_cache_total", "Message cache lookups by result.", "result=\"hit\"", messageCache::getHitCount);
+        metrics.counter("app_message_cache_total", "Message cache lookups by result.", "result=\"miss\"", messageCache::getMissCount);
+        metrics.counter("app_message_cache_evictions_total", "Messages evicted from the message cache.", "", messageCache::getEvictionCount);
+        metrics.gauge("app_message_cache_size", "Messages currently held in the message cache.", "", messageCache::size);
+    }
+
+    /**
+     * Publishes the live feed statistics of this controller's MessageService on /metrics.
+     */
+    private void registerFeedMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        MessageEventBus eventBus = messageService.getEventBus();
+        metrics.gauge("app_feed_subscribers", "Clients subscribed to a live message feed.", "", eventBus::getSubscriberCount);
+        metrics.counter("app_feed_dropped_subscribers_total", "Feed subscribers dropped for falling behind.", "", eventBus::getDroppedSubscriberCount);
+        metrics.counter("app_feed_dropped_events_total", "Message events dropped because the dispatch queue was full.", "", eventBus::getDroppedEventCount);
+    }
+
+    /**
+     * Publishes the rate limiter and concurrency limiter statistics on /metrics.
+     *
+     * @param messageLimiter The concurrency limiter of the message routes, or null if it is disabled.
+     */
+    private void registerLimiterMetrics(ConcurrencyLimiter messageLimiter) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.counter("app_rate_limited_total", "Requests rejected with 429 by rate limit key.", "key=\"ip\"", ipRateLimiter::getRejectedCount);
+        metrics.counter("app_rate_limited_total", "Requests rejected with 429 by rate limit key.", "key=\"account\"", accountRateLimiter::getRejectedCount);
+        metrics.gauge("app_rate_limit_buckets", "Rate limit buckets currently kept.", "", () -> ipRateLimiter.size() + accountRateLimiter.size());
+        if (messageLimiter != null) {
+            metrics.gauge("app_concurrency_limit", "Current adaptive limit on concurrent message requests.", "", messageLimiter::getLimit);
+            metrics.gauge("app_concurrency_in_flight", "Message requests in flight.", "", messageLimiter::getInFlight);
+            metrics.counter("app_concurrency_rejected_total", "Message requests shed with 503 by the concurrency limit.", "", messageLimiter::getRejectedCount);
+        }
+    }
+
+    /**
+     * Serves the runtime metrics in the Prometheus text exposition format: request latency (p50/p99/p999) and
+     * status codes per route, DAO query timings, connection pool and cache statistics.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void getMetricsHandler(Context ctx) {
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+        ctx.result(MetricsRegistry.getInstance().scrape());
+    }
+
+    /**
+     * Wraps a handler that uses the database so that it only runs while holding one of the database permits.
+     * A request that cannot get a permit within the admission timeout is answered with 503 Service Unavailable and
+     * Retry-After.
+     *
+     * With a concurrency limiter, a request is first admitted by the limiter, and rejected straight away with 503 and
+     * Retry-After when the adaptive limit is reached. The latency the limiter learns from includes the wait for a permit.
+     *
+     * A handler that finds the connection pool exhausted is answered with 503 and Retry-After as well.
+     *
+     * @param databasePermits The semaphore bounding concurrent database work, or null for no bound.
+     * @param limiter The adaptive concurrency limiter, or null for none.
+     * @param handler The handler to wrap.
+     * @return The wrapped handler.
+     */
+    private Handler databaseBound(Semaphore databasePermits, ConcurrencyLimiter limiter, Handler handler) {
+        Handler guarded = ctx -> {
+            try {
+                handler.handle(ctx);
+            } catch (DatabaseUnavailableException e) {
+                ctx.header("Retry-After", "1");
+                ctx.status(503).result("");
+            }
+        };
+        Handler bounded = databasePermits == null ? guarded : ctx -> {
+            if (!databasePermits.tryAcquire(DATABASE_ADMISSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                ctx.header("Retry-After", "1");
+                ctx.status(503).result("");
+                return;
+            }
+            try {
+                guarded.handle(ctx);
+            } finally {
+                databasePermits.release();
+            }
+        };
+        if (limiter == null) {
+            return bounded;
+        }
+        return ctx -> {
+            if (!limiter.tryAcquire()) {
+                ctx.header("Retry-After", "1");
+                ctx.status(503).result("");
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                bounded.handle(ctx);
+            } finally {
+                limiter.release(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Before filter applying the per-IP rate limit to every request, and the per-account limit to writes, logins and
+     * registrations. An over-limit request is answered with 429 Too Many Requests and a Retry-After header (in whole
+     * seconds), and no route runs.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void rateLimitFilter(Context ctx) {
+        long waitNanos = ipRateLimiter.tryAcquire(ctx.ip());
+        if (waitNanos == 0) {
+            String accountKey = rateLimitAccountKey(ctx);
+            if (accountKey != null) {
+                waitNanos = accountRateLimiter.tryAcquire(accountKey);
+            }
+        }
+        if (waitNanos > 0) {
+            ctx.header("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            ctx.status(429).result("");
+            ctx.skipRemainingHandlers();
+        }
+    }
+
+    /**
+     * Finds who a write is made by, for the per-account rate limit: the account of a valid session token, else
+     * posted_by for POST /messages, or the username for POST /login and POST /register.
+     * The body is read here and again by the handler; Javalin keeps it after the first read.
+     *
+     * @return The rate limit key, or null if the request is not limited per account.
+     */
+    private String rateLimitAccountKey(Context ctx) {
+        if (ctx.method() == HandlerType.GET || ctx.method() == HandlerType.HEAD) {
+            return null;
+        }
+        String token = bearerToken(ctx);
+        if (token != null) {
+            int accountId = sessionTokens.verify(token);
+            // An invalid token is rejected by the route, and must not count against the account it names
+            return accountId < 0 ? null : "account:" + accountId;
+        }
+        if (ctx.method() != HandlerType.POST) {
+            return null;
+        }
+        try {
+            switch (ctx.path()) {
+                case "/messages":
+                    return "account:" + json.readMessage(ctx.bodyAsBytes()).getPosted_by();
+                case "/login":
+                case "/register":
+                    String username = json.readAccount(ctx.bodyAsBytes()).getUsername();
+                    return username == null ? null : "user:" + username;
+                default:
+                    return null;
+            }
+        } catch (IOException e) {
+            // Malformed JSON is answered with 400 by the route
+            return null;
+        }
+    }
+
     /**
      * Registers a new account using data from the request body.
      * Validates the account data, creates the account, and responds with account details.
      * 
      * @param ctx The Javalin Context object, which provides access to the HTTP request and response.
-     * @throws JsonProcessingException If there is an issue with JSON parsing or serialization.
-     * 
-     * When creating an account, the "throws JsonProcessingException" is required because the ObjectMapper's readValue()
-     * method can throw this exception if the JSON in the request body is invalid or cannot be deserialized 
-     * into the Account class. By declaring it here, we delegate the handling of this exception 
-     * to the framework or a global error handler, ensuring clean and centralized error management.
-     */
-    private void registerAccountHandler(Context ctx) throws JsonProcessingException {
-        // Initializing ObjectMapper to handle JSON serialization and deserialization
-        // Deserializing request body into Account object using Jackson ObjectMapper
-        ObjectMapper mapper = new ObjectMapper();
+     * @throws IOException If the response cannot be written.
+     */
+    private void registerAccountHandler(Context ctx) throws IOException {
+        Account account;
         try {
-            // Deserializing the JSON request body into an Account object
+            // Deserializing the JSON request body into an Account object with the shared codec's pre-built reader.
             // The account data sent by the client (username, password) is mapped to the Account class
-            Account account = mapper.readValue(ctx.body(), Account.class);  
+            account = json.readAccount(ctx.bodyAsBytes());
+        } catch (IOException e) {
+            // Handling malformed JSON input
+            ctx.status(400).result("Invalid JSON format in request body.");
+            return;
+        }
 
+        try {
             // Delegating account registration to the service layer.
             // Calling the service layer to register the account and persist it in the database.
             Account addedAccount = accountService.registerAccount(account);
-        
-            // Creating a response object. Here, we should NOT include the password in the response for security reasons.
-            // It's good practice to exclude sensitive data like passwords from being returned in API responses.
-            Map<String, Object> response = new HashMap<>();
-            response.put("account_id", addedAccount.getAccount_id());
-            response.put("username", addedAccount.getUsername());
-            response.put("password", addedAccount.getPassword()); // Should be removed from the response
-
-            // Serializing the response object into a JSON string and 
-            // responding with the newly created account details.
-            String jsonResponse = mapper.writeValueAsString(response);
-
-            // Sending the serialized JSON response with status 200 and the account details.
-            ctx.status(200).json(jsonResponse);
-            } catch (IllegalArgumentException e) {
-                // Handling validation failures and responding with 400 Bad Request
-                ctx.status(400).result(e.getMessage());
-            } catch (JsonProcessingException e) {
-                // Handling malformed JSON input
-                ctx.status(400).result("Invalid JSON format in request body.");
-            }
+
+            // Sending the account details with status 200, serialized straight into the response.
+            // The password is still part of the response (account_id, username, password) as the API has always returned it.
+            ctx.status(200);
+            json.writeAccount(ctx, addedAccount);
+        } catch (IllegalArgumentException e) {
+            // Handling validation failures and responding with 400 Bad Request
+            ctx.status(400).result(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // The password hashing queue is full, the client should retry later
+            ctx.status(503).result("");
         }
+    }
     
     /**
      * Authenticates a user by verifying their login credentials.
-     * If successful, returns the account details in the response.
+     * If successful, returns the account details in the response, and a session token in the X-Session-Token header.
      * 
      * @param ctx The Javalin Context object manages information about both the HTTP request and response.
+     * @throws IOException If the response cannot be written.
      */
-    private void postLoginHandler(Context ctx) {
-        // Deserializing request body into Account object
-        Account credentials = ctx.bodyAsClass(Account.class);
+    private void postLoginHandler(Context ctx) throws IOException {
+        Account credentials;
+        try {
+            // Deserializing request body into Account object
+            credentials = json.readAccount(ctx.bodyAsBytes());
+        } catch (IOException e) {
+            ctx.status(400).result("Invalid JSON format in request body.");
+            return;
+        }
 
         String username = credentials.getUsername();
         String password = credentials.getPassword();
@@ -115,150 +526,664 @@ public class SocialMediaController {
             // Delegating the login logic to the service layer
             Account account = accountService.login(username, password);
 
-            // Creating the response with account details (including account_id)
-            Map<String, Object> response = new HashMap<>();
-            response.put("account_id", account.getAccount_id());
-            response.put("username", account.getUsername());
-            response.put("password", account.getPassword()); // Needs to be removed as the response should contain only non-sensitive data
-
-            // Sending successful response with account details
-            ctx.status(200).json(response);
+            // Sending successful response with account details (including account_id) and a token for later requests
+            ctx.header(SESSION_TOKEN_HEADER, sessionTokens.issue(account.getAccount_id()));
+            ctx.status(200);
+            json.writeAccount(ctx, account);
         } catch (IllegalArgumentException e) {
             // Catching invalid credentials errors and send the error response
-            ctx.status(401).json(e.getMessage());
+            ctx.status(401).result(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // The password hashing queue is full, the client should retry later
+            ctx.status(503).result("");
+        }
+    }
+
+    /**
+     * Logs out: revokes every session token of the account the request's token belongs to.
+     * Answers 200 with an empty body, or 401 if the request has no valid token.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void postLogoutHandler(Context ctx) {
+        int accountId = sessionTokens.verify(bearerToken(ctx));
+        if (accountId < 0) {
+            ctx.status(401).result("");
+            return;
         }
+        sessionTokens.revokeAll(accountId);
+        ctx.status(200).result("");
     }
 
     /**
      * Posts a new message.
      * Validates the message data, creates the message, and responds with the newly created message details.
+     * With a session token, posted_by must be the token's account (403 otherwise), and is not looked up again.
      * 
      * @param ctx The Javalin Context object.
-     * @throws JsonProcessingException If there is an issue with JSON parsing or serialization.
+     * @throws IOException If the response cannot be written.
      */
-    private void postMessageHandler(Context ctx) {
-        ObjectMapper mapper = new ObjectMapper();
+    private void postMessageHandler(Context ctx) throws IOException {
+        int sessionAccountId = authenticate(ctx);
+        if (sessionAccountId < 0) {
+            return;
+        }
+        Message message;
         try {
             // Deserializing the JSON request body into an Message object.
             // The message data sent by the client (posted_by, message_text,time_posted_epoch) is mapped to the Message class.
-            Message message = mapper.readValue(ctx.body(), Message.class);
+            message = json.readMessage(ctx.bodyAsBytes());
+        } catch (IOException e) {
+            // Handling malformed JSON input
+            ctx.status(400).result("Invalid JSON format in request body.");
+            return;
+        }
 
-            // Delegating account registration to the service layer.
-            // Calling the service layer to verify the message and persist it in the database.
-            Message addedMessage = messageService.postMessage(message);
+        if (sessionAccountId != NO_SESSION && message.getPosted_by() != sessionAccountId) {
+            // Posting as another account
+            ctx.status(403).result("");
+            return;
+        }
 
-            // // Creating a response object
-            // Map<String, Object> response = new HashMap<>();
-            // response.put("message_id", addedMessage.getMessage_id());
-            // response.put("posted_by", addedMessage.getPosted_by());
-            // response.put("message_text", addedMessage.getMessage_text());
-            // response.put("time_posted_epoch", addedMessage.getTime_posted_epoch());
+        try {
+            // Calling the service layer to verify the message and persist it in the database.
+            // An account with a valid token exists, so the service does not check posted_by again.
+            Message addedMessage = messageService.postMessage(message, sessionAccountId != NO_SESSION);
 
-            // // Serializing the response object into a JSON string and 
-            // // responding with the newly created message details
-            // String jsonResponse = mapper.writeValueAsString(response);
+            // Sending the message details with status 200
+            ctx.status(200);
+            json.writeMessage(ctx, addedMessage);
+        } catch (IllegalArgumentException e) {
+            // Handling validation failures and responding with 400 Bad Request
+            ctx.status(400).result(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // The write-behind queue is full, the client should retry later
+            ctx.status(503).result("");
+        }
+    }
+    
+    /**
+     * Posts a batch of messages sent as a JSON array or as newline-delimited JSON (one message per line).
+     * Responds with one result per item, in upload order, holding either the generated message_id or an error.
+     * Invalid items do not prevent the valid ones from being inserted.
+     *
+     * @param ctx The Javalin Context object.
+     * @throws IOException If the response cannot be written.
+     */
+    private void postMessageBatchHandler(Context ctx) throws IOException {
+        int sessionAccountId = authenticate(ctx);
+        if (sessionAccountId < 0) {
+            return;
+        }
+        List<Message> messages;
+        try {
+            messages = json.readMessageBatch(ctx.bodyAsBytes());
+        } catch (IOException e) {
+            // Handling malformed JSON input
+            ctx.status(400).result("Invalid JSON format in request body.");
+            return;
+        }
+        if (sessionAccountId != NO_SESSION) {
+            for (Message message : messages) {
+                if (message != null && message.getPosted_by() != sessionAccountId) {
+                    // Posting as another account
+                    ctx.status(403).result("");
+                    return;
+                }
+            }
+        }
 
-            // Sending the serialized JSON response with status 200 and the message details
-            // ctx.status(200).json(jsonResponse);
+        try {
+            List<BatchItemResult> results = messageService.postMessages(messages);
+            ctx.status(200);
+            json.writeBatchResults(ctx, results);
+        } catch (IllegalArgumentException e) {
+            // Handling an empty or oversized batch
+            ctx.status(400).result(e.getMessage());
+        } catch (IllegalStateException e) {
+            // The database rejected the batch, nothing was inserted
+            ctx.status(500).result(e.getMessage());
+        }
+    }
 
-            ctx.status(200).json(addedMessage);
+    /**
+     * Retrieves all messages in the system.
+     * Supports cursor pagination with the after_id and limit query parameters, which returns a page with a next_cursor,
+     * time ranges with since and until (epoch seconds, until exclusive), which return a page in time order with a
+     * next_cursor and a next_cursor_time to pass back as after_id and after_time, and an opt-in streaming mode (stream=true) that writes the messages as they are read from the database.
+     *
+     * The full list is served from a snapshot: the JSON body, and its gzip form, are kept between requests and only
+     * rebuilt once a message has been posted, updated or deleted. The list also has an ETag, so an unchanged list
+     * can be answered with 304 Not Modified.
+     * 
+     * @param ctx The Javalin Context object.
+     */
+    private void getAllMessagesHandler(Context ctx) throws IOException {
+        if (isStreamingRequested(ctx)) {
+            streamMessages(ctx, messageService::streamAllMessages);
+            return;
+        }
+        if (isTimeRangeRequested(ctx)) {
+            try {
+                MessagePage page = messageService.getMessagesPageByTimeRange(sinceParam(ctx), untilParam(ctx), afterTimeParam(ctx), afterIdParam(ctx),
+                        limitParam(ctx));
+                json.writeMessagePage(ctx, page);
             } catch (IllegalArgumentException e) {
-                // Handling validation failures and responding with 400 Bad Request
                 ctx.status(400).result(e.getMessage());
-            } catch (JsonProcessingException e) {
-                // Handling malformed JSON input
-                ctx.status(400).result("Invalid JSON format in request body.");
             }
+            return;
         }
-    
+        if (isPageRequested(ctx)) {
+            try {
+                MessagePage page = messageService.getMessagesPage(afterIdParam(ctx), limitParam(ctx));
+                json.writeMessagePage(ctx, page);
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
+            return;
+        }
+        VersionTracker.Version version = messageService.getVersionTracker().listVersion();
+        if (isNotModified(ctx, version)) {
+            return;
+        }
+        ResponseSnapshot.Payload payload = messageListSnapshot.get(version.stamp(), () -> {
+            List<Message> messages = messageService.getAllMessages();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            json.writeMessages(body, messages);
+            return body.toByteArray();
+        });
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        ctx.header("Vary", "Accept-Encoding");
+        if (payload.gzipBody() != null && acceptsGzip(ctx)) {
+            // Javalin does not compress a response that already has a Content-Encoding
+            ctx.header("Content-Encoding", "gzip");
+            ctx.result(payload.gzipBody());
+        } else {
+            ctx.result(payload.body());
+        }
+    }
+
     /**
-     * Retrieves all messages in the system.
-     * 
-     * @param ctx The Javalin Context object.
+     * @return True if the request's Accept-Encoding allows gzip.
      */
-    private void getAllMessagesHandler(Context ctx) {
-        List<Message> messages = messageService.getAllMessages();
-        ctx.json(messages);
+    private boolean acceptsGzip(Context ctx) {
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
     /**
      * Retrieves a specific message by its ID.
+     * Sends an ETag and a Last-Modified header, and answers a matching If-None-Match with 304 Not Modified.
      * 
      * @param ctx The Javalin Context object.
      */
-    private void getMessageByMessageIdHandler(Context ctx) {
+    private void getMessageByMessageIdHandler(Context ctx) throws IOException {
         int messageId = Integer.parseInt(ctx.pathParam("message_id"));
+        if (isNotModified(ctx, messageService.getVersionTracker().messageVersion(messageId))) {
+            return;
+        }
         
         Message message = messageService.getMessageById(messageId);
     
         if (message != null) {
-            ctx.json(message);
+            json.writeMessage(ctx, message);
         } else {
             ctx.status(200).result("");
         }
     }
 
+    /**
+     * Searches message texts for the words in the q query parameter, all of which must appear in a message. A word
+     * ending with * matches any word starting with it. Results are a page, newest first, whose next_cursor is passed
+     * as before to get older matches; limit sets the page size.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void searchMessagesHandler(Context ctx) throws IOException {
+        try {
+            MessagePage page = messageService.searchMessages(ctx.queryParam("q"), beforeParam(ctx), limitParam(ctx));
+            json.writeMessagePage(ctx, page);
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(e.getMessage());
+        }
+    }
+
     /**
      * Retrieves all messages posted by a specific user.
+     * Besides the modes of GET /messages, order=desc (optionally with before and limit) returns a page of the user's
+     * timeline, newest first, whose next_cursor is passed as before to get older messages.
+     * Every mode sends an ETag and a Last-Modified header, and answers a matching If-None-Match with 304 Not Modified.
      * 
      * @param ctx The Javalin Context object.
      */
-    private void getAllMessagesByAccountIdHandler(Context ctx) {
+    private void getAllMessagesByAccountIdHandler(Context ctx) throws IOException {
         int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        if (isNotModified(ctx, messageService.getVersionTracker().accountVersion(accountId))) {
+            return;
+        }
+
+        // Same pagination and streaming modes as GET /messages
+        if (isStreamingRequested(ctx)) {
+            streamMessages(ctx, consumer -> messageService.streamMessagesByAccountId(accountId, consumer));
+            return;
+        }
+        if (isTimeRangeRequested(ctx)) {
+            try {
+                MessagePage page = messageService.getMessagesPageByAccountIdAndTimeRange(accountId, sinceParam(ctx), untilParam(ctx),
+                        afterTimeParam(ctx), afterIdParam(ctx), limitParam(ctx));
+                json.writeMessagePage(ctx, page);
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
+            return;
+        }
+        if (isTimelineRequested(ctx)) {
+            try {
+                MessagePage page = messageService.getTimelinePageByAccountId(accountId, beforeParam(ctx), limitParam(ctx));
+                json.writeMessagePage(ctx, page);
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
+            return;
+        }
+        if (isPageRequested(ctx)) {
+            try {
+                MessagePage page = messageService.getMessagesPageByAccountId(accountId, afterIdParam(ctx), limitParam(ctx));
+                json.writeMessagePage(ctx, page);
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
+            return;
+        }
         
         List<Message> messages = messageService.getMessagesByAccountId(accountId);
     
         if (messages != null) {
-            ctx.json(messages);
+            json.writeMessages(ctx, messages);
         } else {
             ctx.status(200).result("");
         }
     }
     
+    /**
+     * Returns the total number of messages and when the statistics were last rebuilt.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void getStatsSummaryHandler(Context ctx) throws IOException {
+        json.writeStatsSummary(ctx, messageService.getStats().getSummary());
+    }
+
+    /**
+     * Returns the number of messages posted by one account.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void getAccountStatsHandler(Context ctx) throws IOException {
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        json.writeAccountPostCount(ctx, messageService.getStats().getAccountPostCount(accountId));
+    }
+
+    /**
+     * Returns the accounts with the most messages, up to limit (10 by default). The ranking may lag behind new posts
+     * by up to app.stats.topPostersRefreshMillis.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void getTopPostersHandler(Context ctx) throws IOException {
+        try {
+            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(10);
+            json.writeAccountPostCounts(ctx, messageService.getStats().getTopPosters(limit));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of messages posted per hour or per day, for the buckets overlapping since and until
+     * (epoch seconds, until exclusive), up to limit buckets in time order.
+     *
+     * @param ctx The Javalin Context object.
+     * @param bucketSeconds MessageStats.HOUR_SECONDS or MessageStats.DAY_SECONDS.
+     */
+    private void getPostCountsHandler(Context ctx, long bucketSeconds) throws IOException {
+        try {
+            json.writePostCountBuckets(ctx, messageService.getStats().getPostCounts(bucketSeconds, sinceParam(ctx), untilParam(ctx), limitParam(ctx)));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).result(e.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes the statistics with one pass over the message store, e.g. after the store was changed by another
+     * process. Posts and deletes wait while it runs.
+     *
+     * @param ctx The Javalin Context object.
+     */
+    private void rebuildStatsHandler(Context ctx) throws IOException {
+        json.writeStatsSummary(ctx, messageService.getStats().rebuild());
+    }
+
     /**
      * Updates an existing message.
+     * With a session token, only the account that posted the message may update it (403 otherwise).
      * 
      * @param ctx The Javalin Context object.
-     * @throws JsonProcessingException If there is an issue with JSON parsing or serialization.
+     * @throws IOException If the response cannot be written.
      */
-    private void updateMessageHandler(Context ctx) {
+    private void updateMessageHandler(Context ctx) throws IOException {
         int messageId = Integer.parseInt(ctx.pathParam("message_id")); // Getting the message_id from the URL path
-        ObjectMapper mapper = new ObjectMapper();
+        if (!isAuthorizedFor(ctx, messageId)) {
+            return;
+        }
+        Message message;
         try {
             // Deserializing the JSON request body into an Message object.
-            // The message data sent by the client (posted_by, message_text,time_posted_epoch) is mapped to the Message class.
-            Message message = mapper.readValue(ctx.body(), Message.class);
+            // The message data sent by the client (message_text) is mapped to the Message class.
+            message = json.readMessage(ctx.bodyAsBytes());
+        } catch (IOException e) {
+            // Handling malformed JSON input
+            ctx.status(400).result("Invalid JSON format in request body.");
+            return;
+        }
 
+        try {
             // Calling the service layer to update the message
             Message updatedMessage = messageService.updateMessage(messageId, message);
 
-            ctx.status(200).json(updatedMessage);
-            } catch (IllegalArgumentException e) {
-                // Handling validation failures and responding with 400 Bad Request
-                ctx.status(400).result(e.getMessage());
-            } catch (JsonProcessingException e) {
-                // Handling malformed JSON input
-                ctx.status(400).result("Invalid JSON format in request body.");
-            }
+            ctx.status(200);
+            json.writeMessage(ctx, updatedMessage);
+        } catch (IllegalArgumentException e) {
+            // Handling validation failures and responding with 400 Bad Request
+            ctx.status(400).result(e.getMessage());
         }
+    }
     
     /**
      * Deletes a message by its ID.
+     * With a session token, only the account that posted the message may delete it (403 otherwise).
      * 
      * @param ctx The Javalin Context object.
      */
-    private void deleteMessageHandler(Context ctx) {
+    private void deleteMessageHandler(Context ctx) throws IOException {
         int messageId = Integer.parseInt(ctx.pathParam("message_id")); // Getting the message_id from the URL path
+        if (!isAuthorizedFor(ctx, messageId)) {
+            return;
+        }
         
         // Calling the service layer to delete the message
         Message deletedMessage = messageService.deleteMessage(messageId);
 
         if (deletedMessage != null) {
             // If the message existed and was deleted, return it in the response
-            ctx.status(200).json(deletedMessage);
+            ctx.status(200);
+            json.writeMessage(ctx, deletedMessage);
         } else {
             // If the message did not exist, return an empty body with a 200 status
             ctx.status(200).result("");
         }
     }
+
+    /**
+     * Checks the request's session token, if any. Verification is an HMAC over the token, without a database query.
+     *
+     * @param ctx The Javalin Context object.
+     * @return The account_id of the token; NO_SESSION if no token was sent and none is required; or -1 if the token
+     * is invalid, expired or revoked, or missing while required, in which case 401 has been sent.
+     */
+    private int authenticate(Context ctx) {
+        String token = bearerToken(ctx);
+        if (token == null && !AUTH_REQUIRED) {
+            return NO_SESSION;
+        }
+        int accountId = sessionTokens.verify(token);
+        if (accountId < 0) {
+            ctx.status(401).result("");
+        }
+        return accountId;
+    }
+
+    /**
+     * Checks that the request may change a message: either it has no session token (and none is required), or the
+     * message was posted by the token's account. A message that does not exist is left to the handler to report.
+     *
+     * @param ctx The Javalin Context object.
+     * @param messageId The message to be changed.
+     * @return True if the handler may go on, false if 401 or 403 has been sent.
+     */
+    private boolean isAuthorizedFor(Context ctx, int messageId) {
+        int sessionAccountId = authenticate(ctx);
+        if (sessionAccountId < 0) {
+            return false;
+        }
+        if (sessionAccountId != NO_SESSION) {
+            // Usually answered by the message cache
+            Message existing = messageService.getMessageById(messageId);
+            if (existing != null && existing.getPosted_by() != sessionAccountId) {
+                ctx.status(403).result("");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The token of an Authorization: Bearer header, or null if there is none.
+     */
+    private static String bearerToken(Context ctx) {
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        return authorization.substring(7).trim();
+    }
+
+    /**
+     * Handler for the live feed of one account's messages. A non-numeric account_id closes the stream straight away.
+     *
+     * @param client The Server-Sent Events client.
+     */
+    private void accountMessageFeedHandler(SseClient client) {
+        int accountId;
+        try {
+            accountId = Integer.parseInt(client.ctx().pathParam("account_id"));
+        } catch (NumberFormatException e) {
+            client.close();
+            return;
+        }
+        subscribeToFeed(client, accountId);
+    }
+
+    /**
+     * Subscribes a Server-Sent Events client to the messages created, updated and deleted from now on. Each change is
+     * sent as an event named created, updated or deleted, with the message as JSON. The stream starts with a comment
+     * once the subscription is in place, and a comment is sent whenever it has been idle for the keep-alive interval.
+     *
+     * A client that falls too far behind is disconnected, and so is a client over the subscriber limit; it is expected
+     * to reload what it missed with GET /messages and subscribe again.
+     *
+     * @param client The Server-Sent Events client.
+     * @param accountId The account whose messages are wanted, or null for all messages.
+     */
+    private void subscribeToFeed(SseClient client, Integer accountId) {
+        client.keepAlive();
+        MessageEventBus.Subscription subscription;
+        try {
+            subscription = messageService.getEventBus().subscribe(accountId, new MessageEventBus.Sink() {
+                @Override
+                public void send(MessageEventBus.Event event) throws IOException {
+                    String data = event.getData(message -> json.toJsonString(message, Message.class));
+                    client.sendEvent(event.getType(), data, String.valueOf(event.getId()));
+                    checkConnected();
+                }
+
+                @Override
+                public void keepAlive() throws IOException {
+                    client.sendComment("keep-alive");
+                    checkConnected();
+                }
+
+                @Override
+                public void close() {
+                    client.close();
+                }
+
+                private void checkConnected() throws IOException {
+                    // Javalin does not throw when a write fails, it marks the client as terminated
+                    if (client.terminated()) {
+                        throw new IOException("The feed client has disconnected.");
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            client.close();
+            return;
+        }
+        client.onClose(subscription::close);
+    }
+
+    /**
+     * Sets the ETag and Last-Modified headers of a resource and, if the request's If-None-Match lists the ETag,
+     * answers 304 Not Modified without a body. The version is read before the resource, so the data sent with a tag
+     * is never older than the version the tag names.
+     *
+     * If-Modified-Since is not used to answer 304: Last-Modified has a precision of one second, so it cannot tell
+     * apart two writes within the same second. Clients revalidate with the ETag.
+     *
+     * @param ctx The Javalin Context object.
+     * @param version The current version of the requested resource.
+     * @return True if a 304 was sent and the handler must not write a body.
+     */
+    private boolean isNotModified(Context ctx, VersionTracker.Version version) {
+        ctx.header("ETag", version.etag());
+        ctx.header("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(version.lastModifiedMillis())));
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            // Weak comparison, as for GET: a W/ prefix added by a proxy still matches
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(version.etag())) {
+                ctx.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the request asks for a page, i.e. it has an after_id or a limit query parameter.
+     */
+    private boolean isPageRequested(Context ctx) {
+        return ctx.queryParam("after_id") != null || ctx.queryParam("limit") != null;
+    }
+
+    /**
+     * @return True if the request asks for a newest-first page, i.e. it has order=desc or a before query parameter.
+     */
+    private boolean isTimelineRequested(Context ctx) {
+        return "desc".equalsIgnoreCase(ctx.queryParam("order")) || ctx.queryParam("before") != null;
+    }
+
+    /**
+     * @return True if the request asks for a time range, i.e. it has a since or an until query parameter.
+     */
+    private boolean isTimeRangeRequested(Context ctx) {
+        return ctx.queryParam("since") != null || ctx.queryParam("until") != null;
+    }
+
+    /**
+     * @return True if the request opts in to streaming with stream=true.
+     */
+    private boolean isStreamingRequested(Context ctx) {
+        return "true".equalsIgnoreCase(ctx.queryParam("stream"));
+    }
+
+    /**
+     * Reads the after_id query parameter. A value that is not a number is rejected by Javalin with a 400.
+     */
+    private int afterIdParam(Context ctx) {
+        return ctx.queryParamAsClass("after_id", Integer.class).getOrDefault(0);
+    }
+
+    /**
+     * Reads the after_time query parameter, the next_cursor_time of the previous page of a time range. It must come
+     * with after_id, since together they are the position the next page starts after. A value that is not a number
+     * is rejected by Javalin with a 400.
+     *
+     * @throws IllegalArgumentException If after_id is given without after_time.
+     */
+    private long afterTimeParam(Context ctx) throws IllegalArgumentException {
+        Long afterTime = ctx.queryParamAsClass("after_time", Long.class).allowNullable().get();
+        if (afterTime == null && afterIdParam(ctx) != 0) {
+            throw new IllegalArgumentException(""); // "after_time is required with after_id in a time range."
+        }
+        return afterTime == null ? Long.MIN_VALUE : afterTime;
+    }
+
+    /**
+     * Reads the before query parameter. A value that is not a number is rejected by Javalin with a 400.
+     */
+    private int beforeParam(Context ctx) {
+        return ctx.queryParamAsClass("before", Integer.class).getOrDefault(0);
+    }
+
+    /**
+     * Reads the since query parameter (epoch seconds, inclusive). A value that is not a number is rejected by Javalin with a 400.
+     */
+    private long sinceParam(Context ctx) {
+        return ctx.queryParamAsClass("since", Long.class).getOrDefault(Long.MIN_VALUE);
+    }
+
+    /**
+     * Reads the until query parameter (epoch seconds, exclusive). A value that is not a number is rejected by Javalin with a 400.
+     */
+    private long untilParam(Context ctx) {
+        return ctx.queryParamAsClass("until", Long.class).getOrDefault(Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the limit query parameter. A value that is not a number is rejected by Javalin with a 400.
+     */
+    private int limitParam(Context ctx) {
+        return ctx.queryParamAsClass("limit", Integer.class).getOrDefault(MessageService.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Writes messages to the response as a JSON array while they are read from the database, using Jackson's
+     * streaming generator, so that memory use does not depend on the number of messages.
+     *
+     * @param ctx The Javalin Context object.
+     * @param source Feeds each message to the consumer it is given.
+     */
+    private void streamMessages(Context ctx, Consumer<Consumer<Message>> source) {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        try (JsonGenerator generator = json.getFactory().createGenerator(ctx.outputStream())) {
+            generator.writeStartArray();
+            source.accept(message -> {
+                try {
+                    generator.writeObject(message);
+                } catch (IOException e) {
+                    // Surfacing client disconnects so that the database cursor is closed right away
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -2,11 +2,30 @@ package com.app.DAO;
 
 import com.app.Model.Account;
 import com.app.Util.ConnectionUtil;
+import com.app.Util.LatencyHistogram;
+import com.app.Util.MetricsRegistry;
 
 import java.sql.*;
+import java.util.HashSet;
+import java.util.Set;
 
 public class AccountDAO {
 
+    /**
+     * Query timings per DAO method, published on /metrics as app_db_query_duration_seconds.
+     * Resolved once here, so timing a query only records into a pre-allocated histogram.
+     */
+    private static final LatencyHistogram INSERT_ACCOUNT_TIMER = queryTimer("insertAccount");
+    private static final LatencyHistogram GET_ACCOUNT_BY_USER_NAME_TIMER = queryTimer("getAccountByUserName");
+    private static final LatencyHistogram ACCOUNT_EXISTS_BY_ID_TIMER = queryTimer("accountExistsById");
+    private static final LatencyHistogram FIND_EXISTING_ACCOUNT_IDS_TIMER = queryTimer("findExistingAccountIds");
+    private static final LatencyHistogram UPDATE_PASSWORD_TIMER = queryTimer("updatePassword");
+
+    private static LatencyHistogram queryTimer(String method) {
+        return MetricsRegistry.getInstance().latency("app_db_query_duration_seconds",
+                "Time spent in DAO methods, including waiting for a connection.", MetricsRegistry.label("method", "AccountDAO." + method));
+    }
+
     /**
      * Inserts a new account into the database and returns the created account with its generated ID.
      *
@@ -14,6 +33,7 @@ public class AccountDAO {
      * @return A new Account object with the generated account ID, or null if the insertion fails.
      */
     public Account insertAccount(Account account){
+        long start = System.nanoTime();
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet pkeyResultSet = null; 
@@ -38,9 +58,11 @@ public class AccountDAO {
                 return new Account(generated_account_id, account.getUsername(), account.getPassword());
             }
         } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
             // Logging the exception message for debugging purposes
             System.out.println(e.getMessage());
         } finally {
+            INSERT_ACCOUNT_TIMER.recordSince(start);
             // Closing resources in reverse order of their opening
             // Closing the connection is necessary to:
             // 1. Return the connection to the pool for reuse, avoiding connection pool exhaustion.
@@ -63,6 +85,7 @@ public class AccountDAO {
      * @return An Account object if found, or null if no account matches the username.
      */
     public Account getAccountByUserName(String username) {
+        long start = System.nanoTime();
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null; 
@@ -89,8 +112,10 @@ public class AccountDAO {
                 return new Account(accountId, username, password);
             }
         } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
             System.out.println(e.getMessage());
         } finally {
+            GET_ACCOUNT_BY_USER_NAME_TIMER.recordSince(start);
             // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
             try {
                 if (resultSet != null) resultSet.close();
@@ -110,6 +135,7 @@ public class AccountDAO {
      * @return True if the account exists, false otherwise.
      */
     public boolean accountExistsById(int accountId) {
+        long start = System.nanoTime();
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
@@ -130,8 +156,54 @@ public class AccountDAO {
             // Returning true if a row exists, false otherwise
             return resultSet.next();
         } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            ACCOUNT_EXISTS_BY_ID_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds which of the given account IDs exist, with a single query however many IDs are given.
+     *
+     * @param accountIds The account IDs to check.
+     * @return The subset of accountIds that exist in the database (empty if the query fails).
+     */
+    public Set<Integer> findExistingAccountIds(Set<Integer> accountIds) {
+        long start = System.nanoTime();
+        Set<Integer> existing = new HashSet<>();
+        if (accountIds.isEmpty()) {
+            return existing;
+        }
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+
+            // Binding all IDs as one array parameter, so the SQL text (and its cached plan) is the same for every batch
+            String sql = "SELECT account_id FROM account WHERE account_id = ANY(?)";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setObject(1, accountIds.toArray(new Integer[0]));
+
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                existing.add(resultSet.getInt("account_id"));
+            }
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
             System.out.println(e.getMessage());
         } finally {
+            FIND_EXISTING_ACCOUNT_IDS_TIMER.recordSince(start);
             // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
             try {
                 if (resultSet != null) resultSet.close();
@@ -141,6 +213,45 @@ public class AccountDAO {
                 System.out.println(e.getMessage());
             }
         }
+        return existing;
+    }
+
+    /**
+     * Replaces the stored password of an account, only if it is still the expected one. Used to replace a legacy
+     * plaintext password (or an older hash) with a new hash; if another login replaced it first, nothing is changed.
+     *
+     * @param accountId The ID of the account.
+     * @param expectedPassword The stored password that is being replaced.
+     * @param newPassword The new stored password.
+     * @return True if the password was replaced, false if it had changed or the update failed.
+     */
+    public boolean updatePassword(int accountId, String expectedPassword, String newPassword) {
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+
+            String sql = "UPDATE account SET password = ? WHERE account_id = ? AND password = ?";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, newPassword);
+            preparedStatement.setInt(2, accountId);
+            preparedStatement.setString(3, expectedPassword);
+
+            return preparedStatement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            UPDATE_PASSWORD_TIMER.recordSince(start);
+            // Ensuring that resources (PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
         return false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,712 @@
+package com.app.DAO;
+
+import com.app.Util.ConnectionUtil;
+import com.app.Util.LatencyHistogram;
+import com.app.Util.MetricsRegistry;
+import com.app.Model.Message;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The MessageDAO backed by the 'message' table in H2, through the pooled connections of ConnectionUtil.
+ * This is the default message store.
+ */
+public class JdbcMessageDAO implements MessageDAO {
+
+    /**
+     * The number of rows fetched at a time when streaming messages.
+     */
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Query timings per DAO method, published on /metrics as app_db_query_duration_seconds.
+     * Resolved once here, so timing a query only records into a pre-allocated histogram.
+     */
+    private static final LatencyHistogram GET_ALL_MESSAGES_TIMER = queryTimer("getAllMessages");
+    private static final LatencyHistogram GET_MESSAGE_BY_MESSAGE_ID_TIMER = queryTimer("getMessageByMessageID");
+    private static final LatencyHistogram GET_MESSAGES_BY_IDS_TIMER = queryTimer("getMessagesByIds");
+    private static final LatencyHistogram GET_ALL_MESSAGES_BY_ACCOUNT_ID_TIMER = queryTimer("getAllMessagesByAccountID");
+    private static final LatencyHistogram GET_MESSAGES_AFTER_TIMER = queryTimer("getMessagesAfter");
+    private static final LatencyHistogram GET_MESSAGES_BY_ACCOUNT_ID_AFTER_TIMER = queryTimer("getMessagesByAccountIDAfter");
+    private static final LatencyHistogram GET_MESSAGES_IN_TIME_RANGE_TIMER = queryTimer("getMessagesInTimeRange");
+    private static final LatencyHistogram GET_MESSAGES_BY_ACCOUNT_ID_IN_TIME_RANGE_TIMER = queryTimer("getMessagesByAccountIDInTimeRange");
+    private static final LatencyHistogram GET_LATEST_MESSAGES_TIMER = queryTimer("getLatestMessages");
+    private static final LatencyHistogram FOR_EACH_MESSAGE_TIMER = queryTimer("forEachMessage");
+    private static final LatencyHistogram FOR_EACH_MESSAGE_BY_ACCOUNT_ID_TIMER = queryTimer("forEachMessageByAccountID");
+    private static final LatencyHistogram INSERT_MESSAGE_TIMER = queryTimer("insertMessage");
+    private static final LatencyHistogram INSERT_MESSAGES_TIMER = queryTimer("insertMessages");
+    private static final LatencyHistogram ALLOCATE_MESSAGE_IDS_TIMER = queryTimer("allocateMessageIds");
+    private static final LatencyHistogram INSERT_MESSAGES_WITH_IDS_TIMER = queryTimer("insertMessagesWithIds");
+    private static final LatencyHistogram UPDATE_MESSAGE_TIMER = queryTimer("updateMessage");
+    private static final LatencyHistogram DELETE_MESSAGE_BY_ID_TIMER = queryTimer("deleteMessageById");
+
+    private static LatencyHistogram queryTimer(String method) {
+        return MetricsRegistry.getInstance().latency("app_db_query_duration_seconds",
+                "Time spent in DAO methods, including waiting for a connection.", MetricsRegistry.label("method", "MessageDAO." + method));
+    }
+
+    /**
+     * Retrieves all messages from the 'message' table.
+     *
+     * @return A list of all messages in the database, or an empty list if no messages exist.
+     */
+    @Override
+    public List<Message> getAllMessages(){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        List<Message> messages = new ArrayList<>();
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "SELECT * FROM message"; // SQL query to fetch all rows from the 'message' table
+            preparedStatement = connection.prepareStatement(sql);
+            resultSet = preparedStatement.executeQuery(); // Executing the query and retrieving the result set
+            while(resultSet.next()){
+                // Creating a Message object for each row and adding it to the list
+                Message message = mapMessage(resultSet);
+                messages.add(message);
+            }
+        } catch(SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_MESSAGES_TIMER.recordSince(start);
+            // Closing resources in reverse order of their opening
+            // Closing the connection is necessary to:
+            // 1. Return the connection to the pool for reuse, avoiding connection pool exhaustion.
+            // 2. Prevent resource leaks that can lead to memory and database issues.
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close(); // Returning the connection to the pool
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return messages; // Returning the list of messages
+    }
+
+    /**
+     * Retrieves a specific message from the 'message' table by its ID.
+     *
+     * @param message_id The unique ID of the message to retrieve.
+     * @return A Message object representing the retrieved message, or null if the message is not found.
+     */
+    @Override
+    public Message getMessageByMessageID(int message_id){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null; 
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "SELECT * FROM message WHERE message_id = ?";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, message_id); // Setting the message_id parameter
+            resultSet = preparedStatement.executeQuery(); // Executing the query
+            while(resultSet.next()){
+                // Constructing a Message object from the result set
+                Message message = mapMessage(resultSet);
+                return message;
+            }
+        } catch(SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGE_BY_MESSAGE_ID_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return null; // Returning null if no message was found
+    }
+
+    /**
+     * Retrieves several messages from the 'message' table by their IDs, with a single query however many IDs are given.
+     *
+     * @param message_ids The IDs of the messages to retrieve.
+     * @return The messages that exist, in message_id order, or an empty list if none does or the query fails.
+     */
+    @Override
+    public List<Message> getMessagesByIds(int[] message_ids){
+        long start = System.nanoTime();
+        List<Message> messages = new ArrayList<>(message_ids.length);
+        if (message_ids.length == 0) {
+            return messages;
+        }
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+
+            // Binding all IDs as one array parameter, so the SQL text (and its cached plan) is the same for every call
+            String sql = "SELECT * FROM message WHERE message_id = ANY(?) ORDER BY message_id";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setObject(1, Arrays.stream(message_ids).boxed().toArray(Integer[]::new));
+
+            resultSet = preparedStatement.executeQuery();
+            while(resultSet.next()){
+                messages.add(mapMessage(resultSet));
+            }
+        } catch(SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGES_BY_IDS_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Retrieves all messages posted by a specific user.
+     *
+     * @param account_id The ID of the user whose messages are to be retrieved.
+     * @return A list of messages posted by the specified user, or an empty list if no messages exist for that user.
+     */
+    @Override
+    public List<Message> getAllMessagesByAccountID(int account_id){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null; 
+        List<Message> messages = new ArrayList<>();
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "SELECT * FROM message WHERE posted_by = ?"; // Query to fetch messages by account_id
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, account_id); // Setting the account_id parameter
+            resultSet = preparedStatement.executeQuery();
+            while(resultSet.next()){
+                Message message = mapMessage(resultSet);
+                messages.add(message);
+            }
+        } catch(SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_MESSAGES_BY_ACCOUNT_ID_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return messages; // Returning the list of messages
+    }
+
+    /**
+     * Retrieves one page of messages using keyset pagination: the messages with an ID greater than the cursor,
+     * in message_id order. Unlike OFFSET paging, the cost of a page does not grow with its position in the table.
+     *
+     * @param after_id The cursor: only messages with a greater ID are returned (0 for the first page).
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    @Override
+    public List<Message> getMessagesAfter(int after_id, int limit){
+        String sql = "SELECT * FROM message WHERE message_id > ? ORDER BY message_id LIMIT ?";
+        return queryPage(GET_MESSAGES_AFTER_TIMER, sql, limit, after_id, limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user using keyset pagination.
+     *
+     * @param account_id The ID of the user whose messages are to be retrieved.
+     * @param after_id The cursor: only messages with a greater ID are returned (0 for the first page).
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    @Override
+    public List<Message> getMessagesByAccountIDAfter(int account_id, int after_id, int limit){
+        String sql = "SELECT * FROM message WHERE posted_by = ? AND message_id > ? ORDER BY message_id LIMIT ?";
+        return queryPage(GET_MESSAGES_BY_ACCOUNT_ID_AFTER_TIMER, sql, limit, account_id, after_id, limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted in a time range, as a range scan of the (time_posted_epoch, message_id)
+     * index. The cursor is a keyset: the page starts after (since, after_id) in index order.
+     *
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param after_id 0 for the first page, or the ID of a message posted at since, to return only the messages after it.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    @Override
+    public List<Message> getMessagesInTimeRange(long since, int after_id, long until, int limit){
+        String sql = "SELECT * FROM message WHERE time_posted_epoch >= ? AND time_posted_epoch < ? "
+                + "AND (time_posted_epoch > ? OR message_id > ?) ORDER BY time_posted_epoch, message_id LIMIT ?";
+        return queryPage(GET_MESSAGES_IN_TIME_RANGE_TIMER, sql, limit, since, until, since, after_id, limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user in a time range, as a range scan of the
+     * (posted_by, time_posted_epoch, message_id) index. The index is named in the query because, without statistics,
+     * H2 otherwise picks the foreign key index on posted_by alone and sorts the account's messages.
+     *
+     * @param account_id The ID of the user whose messages are to be retrieved.
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param after_id 0 for the first page, or the ID of a message posted at since, to return only the messages after it.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    @Override
+    public List<Message> getMessagesByAccountIDInTimeRange(int account_id, long since, int after_id, long until, int limit){
+        String sql = "SELECT * FROM message USE INDEX (idx_message_posted_by_time) WHERE posted_by = ? AND time_posted_epoch >= ? AND time_posted_epoch < ? "
+                + "AND (time_posted_epoch > ? OR message_id > ?) ORDER BY time_posted_epoch, message_id LIMIT ?";
+        return queryPage(GET_MESSAGES_BY_ACCOUNT_ID_IN_TIME_RANGE_TIMER, sql, limit, account_id, since, until, since, after_id, limit);
+    }
+
+    /**
+     * Retrieves the most recently posted messages, read backwards from the end of the (time_posted_epoch, message_id) index.
+     *
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, newest first, or an empty list if no messages exist.
+     */
+    @Override
+    public List<Message> getLatestMessages(int limit){
+        String sql = "SELECT * FROM message ORDER BY time_posted_epoch DESC, message_id DESC LIMIT ?";
+        return queryPage(GET_LATEST_MESSAGES_TIMER, sql, limit, limit);
+    }
+
+    /**
+     * Streams every message to the consumer as rows come off the ResultSet, in message_id order,
+     * without collecting them into a list. The connection is held until the last row has been consumed.
+     *
+     * @param consumer Receives each message. A RuntimeException thrown by the consumer stops the stream and is rethrown.
+     */
+    @Override
+    public void forEachMessage(Consumer<Message> consumer){
+        streamQuery(FOR_EACH_MESSAGE_TIMER, "SELECT * FROM message ORDER BY message_id", consumer);
+    }
+
+    /**
+     * Streams every message posted by a specific user to the consumer, in message_id order.
+     *
+     * @param account_id The ID of the user whose messages are to be streamed.
+     * @param consumer Receives each message. A RuntimeException thrown by the consumer stops the stream and is rethrown.
+     */
+    @Override
+    public void forEachMessageByAccountID(int account_id, Consumer<Message> consumer){
+        streamQuery(FOR_EACH_MESSAGE_BY_ACCOUNT_ID_TIMER, "SELECT * FROM message WHERE posted_by = ? ORDER BY message_id", consumer, account_id);
+    }
+
+    /**
+     * Inserts a new message into the 'message' table.
+     *
+     * @param message The Message object containing the data to be inserted.
+     * @return A new Message object representing the inserted message with its generated ID, or null if the insertion fails.
+     */
+    @Override
+    public Message insertMessage(Message message){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet pkeyResultSet = null; 
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) Values(?, ?, ?)";
+            preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            // Setting the values for posted_by, message_text, time_posted_epoch
+            preparedStatement.setInt(1, message.getPosted_by());
+            preparedStatement.setString(2, message.getMessage_text());
+            preparedStatement.setLong(3, message.getTime_posted_epoch());
+            
+            // Executing the SQL statement
+            preparedStatement.executeUpdate();
+
+            // Retrieving the generated keys to set the message ID
+            pkeyResultSet = preparedStatement.getGeneratedKeys();
+            if (pkeyResultSet.next()) {
+                int generated_message_id = pkeyResultSet.getInt(1);
+                // Returning a new Message object with the generated ID
+                return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            }
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            INSERT_MESSAGE_TIMER.recordSince(start);
+            // Ensuring that resources (pkeyResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (pkeyResultSet != null) pkeyResultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return null; // Returning null if the insert failed
+    }
+
+    /**
+     * Inserts several messages in one transaction using JDBC batching, so a batch costs one connection
+     * and one commit instead of one of each per message.
+     *
+     * @param messages The messages to insert, already validated.
+     * @return The inserted messages with their generated IDs, in the same order, or null if the batch failed
+     *         (in which case nothing was inserted).
+     */
+    @Override
+    public List<Message> insertMessages(List<Message> messages){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet pkeyResultSet = null;
+        List<Message> insertedMessages = new ArrayList<>(messages.size());
+        try {
+            connection = ConnectionUtil.getConnection();
+            connection.setAutoCommit(false);
+            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) Values(?, ?, ?)";
+            preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            for (Message message : messages) {
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            // Generated keys come back in the order the rows were added to the batch
+            pkeyResultSet = preparedStatement.getGeneratedKeys();
+            for (Message message : messages) {
+                if (!pkeyResultSet.next()) {
+                    throw new SQLException("Missing generated key for batch item " + insertedMessages.size());
+                }
+                insertedMessages.add(new Message(pkeyResultSet.getInt(1), message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            connection.commit();
+            return insertedMessages;
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+            try {
+                if (connection != null) connection.rollback();
+            } catch (SQLException rollbackException) {
+                System.out.println(rollbackException.getMessage());
+            }
+        } finally {
+            INSERT_MESSAGES_TIMER.recordSince(start);
+            // Restoring auto-commit and closing resources before the connection goes back to the pool
+            try {
+                if (pkeyResultSet != null) pkeyResultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) {
+                    connection.setAutoCommit(true);
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserves a block of message IDs from message_id_seq. The IDs are never handed out again, whether or not
+     * a message is eventually inserted with them.
+     *
+     * @param count The number of IDs to reserve.
+     * @return The reserved IDs in ascending order, or null if they could not be reserved.
+     */
+    @Override
+    public int[] allocateMessageIds(int count){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "SELECT NEXT VALUE FOR message_id_seq FROM SYSTEM_RANGE(1, ?)";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, count);
+
+            resultSet = preparedStatement.executeQuery();
+            int[] ids = new int[count];
+            int i = 0;
+            while (resultSet.next() && i < count) {
+                ids[i++] = resultSet.getInt(1);
+            }
+            if (i == count) {
+                Arrays.sort(ids);
+                return ids;
+            }
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            ALLOCATE_MESSAGE_IDS_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserts messages that already carry their message_id (reserved with allocateMessageIds) in one transaction
+     * using JDBC batching. Used by the write-behind writer to group-commit queued messages.
+     *
+     * @param messages The messages to insert, each with its reserved message_id.
+     * @return True if every message was inserted and committed, false if the batch was rolled back.
+     */
+    @Override
+    public boolean insertMessagesWithIds(List<Message> messages){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+            connection.setAutoCommit(false);
+            String sql = "INSERT INTO message (message_id, posted_by, message_text, time_posted_epoch) Values(?, ?, ?, ?)";
+            preparedStatement = connection.prepareStatement(sql);
+
+            for (Message message : messages) {
+                preparedStatement.setInt(1, message.getMessage_id());
+                preparedStatement.setInt(2, message.getPosted_by());
+                preparedStatement.setString(3, message.getMessage_text());
+                preparedStatement.setLong(4, message.getTime_posted_epoch());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+            try {
+                if (connection != null) connection.rollback();
+            } catch (SQLException rollbackException) {
+                System.out.println(rollbackException.getMessage());
+            }
+        } finally {
+            INSERT_MESSAGES_WITH_IDS_TIMER.recordSince(start);
+            // Restoring auto-commit and closing resources before the connection goes back to the pool
+            try {
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) {
+                    connection.setAutoCommit(true);
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the text of an existing message in the 'message' table by its ID.
+     * The update and the read of the updated row are one statement: H2's FINAL TABLE returns the rows
+     * as they are after the update, so no separate existence check or read back is needed.
+     *
+     * @param message_id The ID of the message to update.
+     * @param message The Message object containing the updated text.
+     * @return The updated Message object, or null if the update fails or the message is not found.
+     */
+    @Override
+    public Message updateMessage(int message_id, Message message){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "SELECT * FROM FINAL TABLE (UPDATE message SET message_text = ? WHERE message_id = ?)";
+            preparedStatement = connection.prepareStatement(sql);
+
+            // Setting parameters for the update query
+            preparedStatement.setString(1, message.getMessage_text());
+            preparedStatement.setInt(2, message_id);
+            
+            // Executing the update, a row comes back only if the message existed
+            resultSet = preparedStatement.executeQuery();
+            if (resultSet.next()) {
+                return mapMessage(resultSet);
+            }
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            UPDATE_MESSAGE_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes a message from the 'message' table by its ID.
+     * The delete returns the deleted row through H2's OLD TABLE, so reading and deleting happen atomically:
+     * of two concurrent deletes of the same message, only one gets the message back.
+     *
+     * @param message_id The unique ID of the message to delete.
+     * @return The deleted Message object, or null if the deletion fails or the message does not exist.
+     */
+    @Override
+    public Message deleteMessageById(int message_id){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+            String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id = ?)";
+            preparedStatement = connection.prepareStatement(sql);
+
+            // Setting the values for message_id
+            preparedStatement.setInt(1, message_id);
+            
+            // Executing the delete query, a row comes back only if the message existed
+            resultSet = preparedStatement.executeQuery();
+            if (resultSet.next()) {
+                return mapMessage(resultSet); // Returning the deleted message
+            }
+        } catch (SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            DELETE_MESSAGE_BY_ID_TIMER.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs a query whose numeric parameters are bound in order and collects at most limit rows.
+     * The time taken is recorded in the given timer.
+     */
+    private List<Message> queryPage(LatencyHistogram timer, String sql, int limit, long... params){
+        long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        List<Message> messages = new ArrayList<>(limit);
+        try {
+            connection = ConnectionUtil.getConnection();
+            preparedStatement = connection.prepareStatement(sql);
+            for (int i = 0; i < params.length; i++) {
+                preparedStatement.setLong(i + 1, params[i]);
+            }
+            resultSet = preparedStatement.executeQuery();
+            while(resultSet.next()){
+                messages.add(mapMessage(resultSet));
+            }
+        } catch(SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            timer.recordSince(start);
+            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Runs a query whose int parameters are bound in order and hands each row to the consumer.
+     * H2 materializes query results by default, so lazy query execution is switched on for the duration
+     * of the query to keep memory flat however many rows there are. The time taken is recorded in the given timer.
+     */
+    private void streamQuery(LatencyHistogram timer, String sql, Consumer<Message> consumer, int... params){
+        long start = System.nanoTime();
+        Connection connection = null;
+        Statement sessionStatement = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = ConnectionUtil.getConnection();
+            sessionStatement = connection.createStatement();
+            sessionStatement.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < params.length; i++) {
+                preparedStatement.setInt(i + 1, params[i]);
+            }
+            resultSet = preparedStatement.executeQuery();
+            while(resultSet.next()){
+                consumer.accept(mapMessage(resultSet));
+            }
+        } catch(SQLException e) {
+            ConnectionUtil.rethrowIfUnavailable(e);
+            System.out.println(e.getMessage());
+        } finally {
+            timer.recordSince(start);
+            // Closing the cursor and restoring the session setting before the connection goes back to the pool
+            try {
+                if (resultSet != null) resultSet.close();
+                if (preparedStatement != null) preparedStatement.close();
+                if (sessionStatement != null) {
+                    sessionStatement.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                    sessionStatement.close();
+                }
+                if (connection != null) connection.close();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Constructs a Message object from the current row of the result set.
+     */
+    private Message mapMessage(ResultSet resultSet) throws SQLException {
+        return new Message(resultSet.getInt("message_id"),
+                resultSet.getInt("posted_by"),
+                resultSet.getString("message_text"),
+                resultSet.getLong("time_posted_epoch"));
+    }
+}
\ No newline at end of file
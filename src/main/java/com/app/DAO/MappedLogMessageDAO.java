@@ -0,0 +1,840 @@
+package com.app.DAO;
+
+import com.app.Model.Message;
+import com.app.Util.IntLongHashMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A MessageDAO that stores messages as records appended to memory-mapped segment files (a log-structured store).
+ *
+ * Every change is a sequential append to the active segment:
+ * - an insert or an update appends the full message (a PUT record); the newest PUT for a message_id wins
+ * - a delete appends a TOMBSTONE record
+ * Records have a fixed 21-byte header (op, message_id, posted_by, time_posted_epoch, text length), the UTF-8 text and a
+ * CRC32 of both. The op byte of the last record of each write carries a commit flag, so a batch that was cut short
+ * by a crash is dropped as a whole when the log is replayed.
+ *
+ * An in-memory message_id -> (segment, offset) index points at the newest PUT of each live message, and a bitset of the
+ * live IDs gives message_id order. A point read is a hash probe and a few absolute reads from the mapped segment: the
+ * record is read straight from the page cache, without a read() call or an intermediate buffer.
+ *
+ * Segments have a fixed size; when the active one is full, a new one is created and the old one is sealed. A background
+ * compactor rewrites sealed segments that are mostly garbage (replaced or deleted messages) into a temporary file with
+ * only their live records, and moves it over the segment atomically. Tombstones are kept for as long as an older segment
+ * still holds a PUT for the same message_id.
+ *
+ * With app.messageStore.syncWrites=true (the default) the touched segments are forced to disk before a write returns.
+ * As with OffHeapMessageDAO, posted_by is validated by MessageService, not by a foreign key here.
+ */
+public class MappedLogMessageDAO implements MessageDAO, AutoCloseable {
+
+    private static final String DIRECTORY = System.getProperty("app.messageStore.dir", "./data/messages");
+    private static final boolean SYNC_WRITES = Boolean.parseBoolean(System.getProperty("app.messageStore.syncWrites", "true"));
+    private static final int SEGMENT_BYTES = Integer.getInteger("app.messageStore.segmentBytes", 16 << 20);
+    private static final long COMPACTION_INTERVAL_MILLIS = Long.getLong("app.messageStore.compactionIntervalMillis", 30_000L);
+
+    /**
+     * A sealed segment is compacted once at least this share of its bytes can be reclaimed.
+     */
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    /**
+     * Record layout: op (1 byte), message_id, posted_by (ints), time_posted_epoch (long), text length (int), text, CRC32 (int).
+     */
+    private static final int OP_PUT = 1;
+    private static final int OP_TOMBSTONE = 2;
+    private static final int OP_MASK = 0x7F;
+    private static final int COMMIT = 0x80;
+    private static final int HEADER_SIZE = 1 + 4 + 4 + 8 + 4;
+    private static final int TRAILER_SIZE = 4;
+
+    private static final long NO_LOCATION = -1L;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static MappedLogMessageDAO shared;
+
+    /**
+     * One segment file, mapped in full. Only the active (newest) segment is written to; the others are sealed.
+     */
+    private static final class Segment {
+        final int number;
+        final Path path;
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        int writePosition;
+        // Bytes taken by the newest PUT of live messages, by tombstones, and by the tombstones a compaction had to keep
+        long liveBytes;
+        long tombstoneBytes;
+        long keptTombstoneBytes;
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final boolean syncWrites;
+    private final int segmentBytes;
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+
+    private final IntLongHashMap locations = new IntLongHashMap(1024);
+    private final BitSet liveIds = new BitSet();
+    private int nextId = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * The background compactor, once started, and whether close() has stopped it. Guarded by this.
+     */
+    private ScheduledExecutorService compactor;
+    private boolean compactorStopped;
+
+    /**
+     * Opens the store in a directory, replaying the segments found there.
+     *
+     * @param directory The directory holding the segment files. Created if missing.
+     * @param syncWrites True to force the touched segments to disk before each write returns.
+     * @param segmentBytes The size of a segment file.
+     * @throws IOException If the directory or the files in it cannot be read or written.
+     */
+    public MappedLogMessageDAO(Path directory, boolean syncWrites, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.syncWrites = syncWrites;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Starts the background compactor. Until then, segments are only compacted when compact() is called.
+     * Kept out of the constructor, so the compactor thread never sees a store that is still being opened.
+     *
+     * @param compactionIntervalMillis How often the compactor looks for segments to rewrite.
+     * @throws IllegalStateException If the compactor has already been started or the store is closed.
+     */
+    public synchronized void startCompactor(long compactionIntervalMillis) throws IllegalStateException {
+        if (compactor != null || compactorStopped) {
+            throw new IllegalStateException("The compactor is already running or the store is closed.");
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compactInBackground, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        compactor = executor;
+    }
+
+    /**
+     * Returns the process-wide store in the directory set with app.messageStore.dir, opening it on first use.
+     * The store is closed when the JVM shuts down.
+     */
+    static synchronized MappedLogMessageDAO getShared() {
+        if (shared == null) {
+            try {
+                shared = new MappedLogMessageDAO(Paths.get(DIRECTORY), SYNC_WRITES, SEGMENT_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open the message log in " + DIRECTORY, e);
+            }
+            MappedLogMessageDAO store = shared;
+            if (COMPACTION_INTERVAL_MILLIS > 0) {
+                store.startCompactor(COMPACTION_INTERVAL_MILLIS);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(store::close, "message-log-shutdown"));
+        }
+        return shared;
+    }
+
+    @Override
+    public List<Message> getAllMessages() {
+        return getMessagesAfter(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Message getMessageByMessageID(int message_id) {
+        lock.readLock().lock();
+        try {
+            long location = locations.get(message_id, NO_LOCATION);
+            return location == NO_LOCATION ? null : readMessage(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesByIds(int[] message_ids) {
+        int[] sortedIds = message_ids.clone();
+        Arrays.sort(sortedIds);
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(sortedIds.length);
+            for (int i = 0; i < sortedIds.length; i++) {
+                long location = locations.get(sortedIds[i], NO_LOCATION);
+                if (location != NO_LOCATION && (i == 0 || sortedIds[i] != sortedIds[i - 1])) {
+                    messages.add(readMessage(location));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessagesByAccountID(int account_id) {
+        return getMessagesByAccountIDAfter(account_id, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int after_id, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(Math.min(limit, locations.size()));
+            for (int id = firstLiveIdAfter(after_id); id >= 0 && messages.size() < limit; id = nextLiveId(id)) {
+                messages.add(readMessage(locations.get(id, NO_LOCATION)));
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesByAccountIDAfter(int account_id, int after_id, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>();
+            for (int id = firstLiveIdAfter(after_id); id >= 0 && messages.size() < limit; id = nextLiveId(id)) {
+                long location = locations.get(id, NO_LOCATION);
+                // Checking posted_by in the mapped header before decoding the whole record
+                if (segmentOf(location).buffer.getInt(offsetOf(location) + 5) == account_id) {
+                    messages.add(readMessage(location));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachMessage(Consumer<Message> consumer) {
+        // Reading in chunks, so a slow consumer does not hold the lock and block writers
+        int afterId = 0;
+        List<Message> chunk;
+        do {
+            chunk = getMessagesAfter(afterId, STREAM_CHUNK_SIZE);
+            for (Message message : chunk) {
+                consumer.accept(message);
+            }
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getMessage_id();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
+    @Override
+    public void forEachMessageByAccountID(int account_id, Consumer<Message> consumer) {
+        int afterId = 0;
+        List<Message> chunk;
+        do {
+            chunk = getMessagesByAccountIDAfter(account_id, afterId, STREAM_CHUNK_SIZE);
+            for (Message message : chunk) {
+                consumer.accept(message);
+            }
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getMessage_id();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
+    @Override
+    public Message insertMessage(Message message) {
+        List<Message> inserted = insertMessages(List.of(message));
+        return inserted == null ? null : inserted.get(0);
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages) {
+        lock.writeLock().lock();
+        try {
+            List<Message> inserted = new ArrayList<>(messages.size());
+            int id = nextId;
+            for (Message message : messages) {
+                inserted.add(new Message(id++, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            return append(OP_PUT, inserted) ? inserted : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] allocateMessageIds(int count) {
+        lock.writeLock().lock();
+        try {
+            // IDs reserved but never inserted are not logged; after a restart they may be handed out again,
+            // which is harmless since no message carries them
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = nextId++;
+            }
+            return ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insertMessagesWithIds(List<Message> messages) {
+        lock.writeLock().lock();
+        try {
+            for (Message message : messages) {
+                if (message.getMessage_id() < 1 || locations.containsKey(message.getMessage_id())) {
+                    System.out.println("Message " + message.getMessage_id() + " cannot be inserted: invalid or duplicate message_id");
+                    return false;
+                }
+            }
+            return append(OP_PUT, messages);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message updateMessage(int message_id, Message message) {
+        lock.writeLock().lock();
+        try {
+            long location = locations.get(message_id, NO_LOCATION);
+            if (location == NO_LOCATION) {
+                return null;
+            }
+            Message current = readMessage(location);
+            Message updated = new Message(message_id, current.getPosted_by(), message.getMessage_text(), current.getTime_posted_epoch());
+            return append(OP_PUT, List.of(updated)) ? updated : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message deleteMessageById(int message_id) {
+        lock.writeLock().lock();
+        try {
+            long location = locations.get(message_id, NO_LOCATION);
+            if (location == NO_LOCATION) {
+                return null;
+            }
+            Message deleted = readMessage(location);
+            return append(OP_TOMBSTONE, List.of(deleted)) ? deleted : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites every sealed segment with enough garbage to be worth it, one segment at a time, so writers are only
+     * held up for the duration of a single segment.
+     *
+     * @return The number of segments rewritten or deleted.
+     * @throws IOException If a segment cannot be rewritten. That segment is left as it was.
+     */
+    public int compact() throws IOException {
+        List<Integer> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && isWorthCompacting(segment)) {
+                    candidates.add(segment.number);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int compacted = 0;
+        for (int number : candidates) {
+            lock.writeLock().lock();
+            try {
+                Segment segment = segments.get(number);
+                // Checking again: the segment may have been compacted or closed in the meantime
+                if (!closed && segment != null && segment != active && isWorthCompacting(segment)) {
+                    compactSegment(segment);
+                    compacted++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Stops the compactor, forces the active segment to disk and closes the segment files.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService compactor;
+        synchronized (this) {
+            compactor = this.compactor;
+            compactorStopped = true;
+        }
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            active.buffer.force();
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of live messages.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of segment files.
+     */
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writing
+
+    /**
+     * Appends one record per message, setting the commit flag on the last one, forces the touched segments to disk
+     * when syncWrites is on, and only then updates the index. Called with the write lock held.
+     *
+     * @return True if the records were written; false if they could not be, in which case nothing is applied.
+     */
+    private boolean append(int op, List<Message> messages) {
+        Segment startSegment = active;
+        int startPosition = active.writePosition;
+        long[] written = new long[messages.size()];
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                Message message = messages.get(i);
+                byte[] text = op == OP_PUT ? utf8(message.getMessage_text()) : new byte[0];
+                int size = HEADER_SIZE + text.length + TRAILER_SIZE;
+                if (size > segmentBytes) {
+                    throw new IOException("A record of " + size + " bytes does not fit in a segment of " + segmentBytes + " bytes");
+                }
+                if (active.writePosition + size > active.buffer.capacity()) {
+                    rollOver();
+                }
+                int flags = i == messages.size() - 1 ? COMMIT : 0;
+                written[i] = writeRecord(active, op | flags, message.getMessage_id(), message.getPosted_by(),
+                        message.getTime_posted_epoch(), text);
+            }
+            if (syncWrites) {
+                for (Segment segment : segments.tailMap(startSegment.number, true).values()) {
+                    segment.buffer.force();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println(e.getMessage());
+            rollBack(startSegment, startPosition);
+            return false;
+        }
+        for (long location : written) {
+            apply(location);
+        }
+        return true;
+    }
+
+    /**
+     * Writes one record at the end of a segment.
+     *
+     * @return The location of the record.
+     */
+    private long writeRecord(Segment segment, int op, int id, int posted_by, long epoch, byte[] text) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = segment.writePosition;
+        buffer.put(offset, (byte) op)
+                .putInt(offset + 1, id)
+                .putInt(offset + 5, posted_by)
+                .putLong(offset + 9, epoch)
+                .putInt(offset + 17, text.length)
+                .put(offset + HEADER_SIZE, text);
+        buffer.putInt(offset + HEADER_SIZE + text.length, checksum(buffer, offset, text.length));
+        segment.writePosition = offset + HEADER_SIZE + text.length + TRAILER_SIZE;
+        return location(segment.number, offset);
+    }
+
+    /**
+     * Seals the active segment and starts a new one after it.
+     */
+    private void rollOver() throws IOException {
+        int number = segments.lastKey() + 1;
+        Path path = directory.resolve(segmentFileName(number));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = addSegment(number, path, channel, segmentBytes);
+    }
+
+    /**
+     * Undoes a write that failed part way: deletes the segments it started and clears what it wrote in the first one,
+     * so the records are neither read back nor committed by a later record.
+     */
+    private void rollBack(Segment startSegment, int startPosition) {
+        for (Segment segment : new ArrayList<>(segments.tailMap(startSegment.number, false).values())) {
+            removeSegment(segment);
+        }
+        zero(startSegment, startPosition, startSegment.writePosition);
+        startSegment.writePosition = startPosition;
+        active = startSegment;
+    }
+
+    /**
+     * Points the index at a record that has been written. Called for new records and while replaying the log.
+     */
+    private void apply(long location) {
+        Segment segment = segmentOf(location);
+        int offset = offsetOf(location);
+        int op = segment.buffer.get(offset) & OP_MASK;
+        int id = segment.buffer.getInt(offset + 1);
+        int size = recordSize(segment.buffer, offset);
+
+        long previous = locations.get(id, NO_LOCATION);
+        if (previous != NO_LOCATION) {
+            // The record this one replaces is garbage from now on
+            segmentOf(previous).liveBytes -= recordSize(segmentOf(previous).buffer, offsetOf(previous));
+        }
+        if (op == OP_PUT) {
+            locations.put(id, location);
+            liveIds.set(id);
+            segment.liveBytes += size;
+        } else {
+            locations.remove(id, NO_LOCATION);
+            liveIds.clear(id);
+            segment.tombstoneBytes += size;
+        }
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    // Compaction
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            // The segments are left as they were, the compaction is retried on the next run
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private boolean isWorthCompacting(Segment segment) {
+        // New tombstones may be droppable; those a compaction already had to keep only are in the oldest segment,
+        // since nothing older can be brought back by dropping them
+        long reclaimable = segment.writePosition - segment.liveBytes;
+        if (segment != segments.firstEntry().getValue()) {
+            reclaimable -= segment.keptTombstoneBytes;
+        }
+        return segment.writePosition > 0 && reclaimable >= segment.writePosition * COMPACTION_GARBAGE_RATIO;
+    }
+
+    /**
+     * Copies the live records of a sealed segment, and the tombstones that are still needed, into a temporary file,
+     * moves it over the segment and points the index at the new offsets. Deletes the segment if nothing is left.
+     * Called with the write lock held.
+     */
+    private void compactSegment(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        ByteBuffer compacted = ByteBuffer.allocate(segment.writePosition).order(ByteOrder.LITTLE_ENDIAN);
+        List<long[]> moved = new ArrayList<>();
+        BitSet olderPutIds = null;
+        for (int offset = 0; offset < segment.writePosition; offset += recordSize(buffer, offset)) {
+            int op = buffer.get(offset) & OP_MASK;
+            int id = buffer.getInt(offset + 1);
+            boolean keep;
+            if (op == OP_PUT) {
+                keep = locations.get(id, NO_LOCATION) == location(segment.number, offset);
+            } else {
+                if (olderPutIds == null) {
+                    olderPutIds = putIdsBefore(segment.number);
+                }
+                // A tombstone is still needed while an older segment holds a PUT it would otherwise let back in on replay
+                keep = !locations.containsKey(id) && olderPutIds.get(id);
+            }
+            if (keep) {
+                int newOffset = compacted.position();
+                int size = recordSize(buffer, offset);
+                compacted.put(buffer.slice(offset, size));
+                // Every record that survives has been committed; marking it so keeps it valid on its own
+                compacted.put(newOffset, (byte) (op | COMMIT));
+                int textLength = size - HEADER_SIZE - TRAILER_SIZE;
+                compacted.putInt(newOffset + HEADER_SIZE + textLength, checksum(compacted, newOffset, textLength));
+                if (op == OP_PUT) {
+                    moved.add(new long[] {id, newOffset});
+                }
+            }
+        }
+
+        if (compacted.position() == 0) {
+            removeSegment(segment);
+            return;
+        }
+
+        Path temporaryFile = segment.path.resolveSibling(segment.path.getFileName() + ".compact");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            compacted.flip();
+            while (compacted.hasRemaining()) {
+                channel.write(compacted);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, segment.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel oldChannel = segment.channel;
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment.buffer = map(segment.channel, compacted.limit());
+        segment.writePosition = compacted.limit();
+        segment.liveBytes = 0;
+        for (long[] record : moved) {
+            locations.put((int) record[0], location(segment.number, (int) record[1]));
+            segment.liveBytes += recordSize(segment.buffer, (int) record[1]);
+        }
+        segment.tombstoneBytes = segment.writePosition - segment.liveBytes;
+        segment.keptTombstoneBytes = segment.tombstoneBytes;
+        // The old mapping is released by the garbage collector; closing the channel does not invalidate it
+        oldChannel.close();
+    }
+
+    /**
+     * @return The message_ids of every PUT record, live or not, in the segments older than the given one.
+     */
+    private BitSet putIdsBefore(int segmentNumber) {
+        BitSet ids = new BitSet();
+        for (Segment older : segments.headMap(segmentNumber, false).values()) {
+            for (int offset = 0; offset < older.writePosition; offset += recordSize(older.buffer, offset)) {
+                if ((older.buffer.get(offset) & OP_MASK) == OP_PUT) {
+                    ids.set(older.buffer.getInt(offset + 1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Recovery
+
+    /**
+     * Maps the segment files in order and replays their records. A batch without its commit record, cut short by a
+     * crash, is discarded along with any torn record at the end of the log.
+     */
+    private void recover() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX + ".compact")) {
+                    // Left behind by a compaction that did not finish; the segment it was copied from is intact
+                    Files.delete(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    numbers.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        numbers.sort(null);
+        if (numbers.isEmpty()) {
+            numbers.add(1);
+        }
+
+        List<Long> uncommitted = new ArrayList<>();
+        for (int i = 0; i < numbers.size(); i++) {
+            int number = numbers.get(i);
+            Path path = directory.resolve(segmentFileName(number));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long fileSize = channel.size();
+            Segment segment = addSegment(number, path, channel, fileSize == 0 ? segmentBytes : (int) fileSize);
+
+            int offset = 0;
+            int size;
+            while ((size = validRecordSize(segment.buffer, offset)) > 0) {
+                uncommitted.add(location(number, offset));
+                if ((segment.buffer.get(offset) & COMMIT) != 0) {
+                    for (long location : uncommitted) {
+                        apply(location);
+                    }
+                    uncommitted.clear();
+                }
+                offset += size;
+            }
+            segment.writePosition = offset;
+            if (offset < segment.buffer.capacity() && segment.buffer.get(offset) != 0) {
+                System.out.println("Discarding a torn record at offset " + offset + " of " + path);
+                zero(segment, offset, segment.buffer.capacity());
+            }
+        }
+        active = segments.lastEntry().getValue();
+
+        if (!uncommitted.isEmpty()) {
+            long first = uncommitted.get(0);
+            Segment segment = segmentOf(first);
+            System.out.println("Discarding " + uncommitted.size() + " records of an uncommitted write in " + segment.path);
+            rollBack(segment, offsetOf(first));
+        }
+    }
+
+    /**
+     * @return The size of the complete, intact record at the offset, or -1 if there is none.
+     */
+    private static int validRecordSize(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_SIZE + TRAILER_SIZE > buffer.capacity()) {
+            return -1;
+        }
+        int op = buffer.get(offset) & OP_MASK;
+        int length = buffer.getInt(offset + 17);
+        if ((op != OP_PUT && op != OP_TOMBSTONE) || length < 0 || length > buffer.capacity() - offset - HEADER_SIZE - TRAILER_SIZE) {
+            return -1;
+        }
+        if (checksum(buffer, offset, length) != buffer.getInt(offset + HEADER_SIZE + length)) {
+            return -1;
+        }
+        return HEADER_SIZE + length + TRAILER_SIZE;
+    }
+
+    // Segments and records
+
+    private Segment addSegment(int number, Path path, FileChannel channel, int size) throws IOException {
+        Segment segment = new Segment(number, path, channel, map(channel, size));
+        segments.put(number, segment);
+        return segment;
+    }
+
+    private void removeSegment(Segment segment) {
+        segments.remove(segment.number);
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int size) throws IOException {
+        // Mapping past the end of the file extends it
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static void zero(Segment segment, int from, int to) {
+        if (to > from) {
+            segment.buffer.put(from, new byte[to - from]);
+        }
+    }
+
+    /**
+     * Decodes the record at a location. The header and the text are read straight from the mapped segment.
+     */
+    private Message readMessage(long location) {
+        MappedByteBuffer buffer = segmentOf(location).buffer;
+        int offset = offsetOf(location);
+        byte[] text = new byte[buffer.getInt(offset + 17)];
+        buffer.get(offset + HEADER_SIZE, text);
+        return new Message(buffer.getInt(offset + 1), buffer.getInt(offset + 5), new String(text, StandardCharsets.UTF_8), buffer.getLong(offset + 9));
+    }
+
+    private static int recordSize(ByteBuffer buffer, int offset) {
+        return HEADER_SIZE + buffer.getInt(offset + 17) + TRAILER_SIZE;
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int textLength) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, HEADER_SIZE + textLength));
+        return (int) crc.getValue();
+    }
+
+    private int firstLiveIdAfter(int afterId) {
+        return afterId < 0 ? liveIds.nextSetBit(0) : nextLiveId(afterId);
+    }
+
+    private int nextLiveId(int id) {
+        return id == Integer.MAX_VALUE ? -1 : liveIds.nextSetBit(id + 1);
+    }
+
+    private Segment segmentOf(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * A location packs the segment number in the high 32 bits and the offset in the low 32 bits.
+     */
+    private static long location(int segmentNumber, int offset) {
+        return ((long) segmentNumber << 32) | offset;
+    }
+
+    private static String segmentFileName(int number) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static byte[] utf8(String text) {
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+}
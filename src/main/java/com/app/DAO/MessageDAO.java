@@ -1,256 +1,235 @@
 package com.app.DAO;
 
-import com.app.Util.ConnectionUtil;
 import com.app.Model.Message;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
 
-public class MessageDAO {
+/**
+ * The storage operations on messages used by MessageService.
+ *
+ * The implementation is chosen at startup with -Dapp.messageStore:
+ * - jdbc (default): the 'message' table in H2, see JdbcMessageDAO
+ * - offheap: off-heap columns in this process, persisted with a snapshot and a write-ahead log, see OffHeapMessageDAO
+ * - log: an append-only log of memory-mapped segment files with a background compactor, see MappedLogMessageDAO
+ *
+ * Every implementation hands out message IDs in ascending order, returns lists in message_id order unless stated
+ * otherwise, and reports failures the way the JDBC implementation always has: null, false or an empty list.
+ */
+public interface MessageDAO {
 
     /**
-     * Retrieves all messages from the 'message' table.
+     * The order of the time range queries: by time_posted_epoch, then message_id.
+     */
+    Comparator<Message> BY_TIME = Comparator.comparingLong(Message::getTime_posted_epoch).thenComparingInt(Message::getMessage_id);
+
+    /**
+     * Creates the MessageDAO selected with the app.messageStore system property.
      *
-     * @return A list of all messages in the database, or an empty list if no messages exist.
+     * @return The configured message store.
+     * @throws IllegalArgumentException If app.messageStore names an unknown store.
      */
-    public List<Message> getAllMessages(){
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null;
-        List<Message> messages = new ArrayList<>();
-        try {
-            connection = ConnectionUtil.getConnection();
-            String sql = "SELECT * FROM message"; // SQL query to fetch all rows from the 'message' table
-            preparedStatement = connection.prepareStatement(sql);
-            resultSet = preparedStatement.executeQuery(); // Executing the query and retrieving the result set
-            while(resultSet.next()){
-                // Creating a Message object for each row and adding it to the list
-                Message message = new Message(resultSet.getInt("message_id"),
-                        resultSet.getInt("posted_by"),
-                        resultSet.getString("message_text"),
-                        resultSet.getInt("time_posted_epoch"));
-                messages.add(message);
-            }
-        } catch(SQLException e) {
-            System.out.println(e.getMessage());
-        } finally {
-            // Closing resources in reverse order of their opening
-            // Closing the connection is necessary to:
-            // 1. Return the connection to the pool for reuse, avoiding connection pool exhaustion.
-            // 2. Prevent resource leaks that can lead to memory and database issues.
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                if (connection != null) connection.close(); // Returning the connection to the pool
-            } catch (SQLException e) {
-                System.out.println(e.getMessage());
-            }
+    static MessageDAO create() {
+        String store = System.getProperty("app.messageStore", "jdbc");
+        switch (store) {
+            case "jdbc":
+                return new JdbcMessageDAO();
+            case "offheap":
+                return OffHeapMessageDAO.getShared();
+            case "log":
+                return MappedLogMessageDAO.getShared();
+            default:
+                throw new IllegalArgumentException("Unknown message store: " + store);
         }
-        return messages; // Returning the list of messages
     }
 
     /**
-     * Retrieves a specific message from the 'message' table by its ID.
+     * Retrieves all messages.
+     *
+     * @return A list of all messages, or an empty list if no messages exist.
+     */
+    List<Message> getAllMessages();
+
+    /**
+     * Retrieves a specific message by its ID.
      *
      * @param message_id The unique ID of the message to retrieve.
-     * @return A Message object representing the retrieved message, or null if the message is not found.
+     * @return The Message object corresponding to the given ID, or null if not found.
      */
-    public Message getMessageByMessageID(int message_id){
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null; 
-        try {
-            connection = ConnectionUtil.getConnection();
-            String sql = "SELECT * FROM message WHERE message_id = ?";
-            preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setInt(1, message_id); // Setting the message_id parameter
-            resultSet = preparedStatement.executeQuery(); // Executing the query
-            while(resultSet.next()){
-                // Constructing a Message object from the result set
-                Message message = new Message(resultSet.getInt("message_id"),
-                        resultSet.getInt("posted_by"),
-                        resultSet.getString("message_text"),
-                        resultSet.getInt("time_posted_epoch"));
-                return message;
-            }
-        } catch(SQLException e) {
-            System.out.println(e.getMessage());
-        } finally {
-            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.out.println(e.getMessage());
-            }
-        }
-        return null; // Returning null if no message was found
-    }
+    Message getMessageByMessageID(int message_id);
+
+    /**
+     * Retrieves several messages by their IDs in one lookup.
+     *
+     * @param message_ids The IDs of the messages to retrieve.
+     * @return The messages that exist, in message_id order, or an empty list if none does.
+     */
+    List<Message> getMessagesByIds(int[] message_ids);
 
     /**
      * Retrieves all messages posted by a specific user.
      *
      * @param account_id The ID of the user whose messages are to be retrieved.
-     * @return A list of messages posted by the specified user, or an empty list if no messages exist for that user.
+     * @return A list of messages posted by the specified user, or an empty list if none exist.
      */
-    public List<Message> getAllMessagesByAccountID(int account_id){
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet resultSet = null; 
-        List<Message> messages = new ArrayList<>();
-        try {
-            connection = ConnectionUtil.getConnection();
-            String sql = "SELECT * FROM message WHERE posted_by = ?"; // Query to fetch messages by account_id
-            preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setInt(1, account_id); // Setting the account_id parameter
-            resultSet = preparedStatement.executeQuery();
-            while(resultSet.next()){
-                Message message = new Message(resultSet.getInt("message_id"),
-                        resultSet.getInt("posted_by"),
-                        resultSet.getString("message_text"),
-                        resultSet.getInt("time_posted_epoch"));
-                messages.add(message);
-            }
-        } catch(SQLException e) {
-            System.out.println(e.getMessage());
-        } finally {
-            // Ensuring that resources (ResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
-            try {
-                if (resultSet != null) resultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.out.println(e.getMessage());
+    List<Message> getAllMessagesByAccountID(int account_id);
+
+    /**
+     * Retrieves one page of messages with an ID greater than the cursor, in message_id order.
+     *
+     * @param after_id The cursor: only messages with a greater ID are returned (0 for the first page).
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    List<Message> getMessagesAfter(int after_id, int limit);
+
+    /**
+     * Retrieves one page of the messages posted by a specific user with an ID greater than the cursor.
+     *
+     * @param account_id The ID of the user whose messages are to be retrieved.
+     * @param after_id The cursor: only messages with a greater ID are returned (0 for the first page).
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    List<Message> getMessagesByAccountIDAfter(int account_id, int after_id, int limit);
+
+    /**
+     * Retrieves one page of the messages posted in a time range, ordered by (time_posted_epoch, message_id).
+     * The default implementation scans every message; stores with a time index override it.
+     *
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param after_id The cursor: 0 for the first page, or the ID of a message posted at since, to return only the
+     * messages after it.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    default List<Message> getMessagesInTimeRange(long since, int after_id, long until, int limit) {
+        return selectByTime(this::forEachMessage, since, after_id, until, limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user in a time range, ordered by
+     * (time_posted_epoch, message_id). The default implementation scans the user's messages.
+     *
+     * @param account_id The ID of the user whose messages are to be retrieved.
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param after_id The cursor: 0 for the first page, or the ID of a message posted at since, to return only the
+     * messages after it.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if there are no more messages.
+     */
+    default List<Message> getMessagesByAccountIDInTimeRange(int account_id, long since, int after_id, long until, int limit) {
+        return selectByTime(consumer -> forEachMessageByAccountID(account_id, consumer), since, after_id, until, limit);
+    }
+
+    /**
+     * Retrieves the most recently posted messages, newest first by (time_posted_epoch, message_id).
+     * The default implementation scans every message.
+     *
+     * @param limit The maximum number of messages to return.
+     * @return A list of at most limit messages, or an empty list if no messages exist.
+     */
+    default List<Message> getLatestMessages(int limit) {
+        PriorityQueue<Message> newest = new PriorityQueue<>(BY_TIME);
+        forEachMessage(message -> {
+            newest.add(message);
+            if (newest.size() > limit) {
+                newest.poll();
             }
-        }
-        return messages; // Returning the list of messages
+        });
+        List<Message> messages = new ArrayList<>(newest);
+        messages.sort(BY_TIME.reversed());
+        return messages;
     }
 
     /**
-     * Inserts a new message into the 'message' table.
+     * Streams every message to the consumer in message_id order, without collecting them into a list.
+     *
+     * @param consumer Receives each message. A RuntimeException thrown by the consumer stops the stream and is rethrown.
+     */
+    void forEachMessage(Consumer<Message> consumer);
+
+    /**
+     * Streams every message posted by a specific user to the consumer, in message_id order.
+     *
+     * @param account_id The ID of the user whose messages are to be streamed.
+     * @param consumer Receives each message. A RuntimeException thrown by the consumer stops the stream and is rethrown.
+     */
+    void forEachMessageByAccountID(int account_id, Consumer<Message> consumer);
+
+    /**
+     * Inserts a new message.
      *
      * @param message The Message object containing the data to be inserted.
-     * @return A new Message object representing the inserted message with its generated ID, or null if the insertion fails.
+     * @return The inserted message with its generated ID, or null if the insertion fails.
      */
-    public Message insertMessage(Message message){
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        ResultSet pkeyResultSet = null; 
-        try {
-            connection = ConnectionUtil.getConnection();
-            String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) Values(?, ?, ?)";
-            preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    Message insertMessage(Message message);
 
-            // Setting the values for posted_by, message_text, time_posted_epoch
-            preparedStatement.setInt(1, message.getPosted_by());
-            preparedStatement.setString(2, message.getMessage_text());
-            preparedStatement.setLong(3, message.getTime_posted_epoch());
-            
-            // Executing the SQL statement
-            preparedStatement.executeUpdate();
+    /**
+     * Inserts several messages atomically.
+     *
+     * @param messages The messages to insert, already validated.
+     * @return The inserted messages with their generated IDs, in the same order, or null if nothing was inserted.
+     */
+    List<Message> insertMessages(List<Message> messages);
 
-            // Retrieving the generated keys to set the message ID
-            pkeyResultSet = preparedStatement.getGeneratedKeys();
-            if (pkeyResultSet.next()) {
-                int generated_message_id = (int) pkeyResultSet.getInt(1);
-                // Returning a new Message object with the generated ID
-                return new Message(generated_message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        } finally {
-            // Ensuring that resources (pkeyResultSet, PreparedStatement, Connection) are closed to prevent resource leaks
-            try {
-                if (pkeyResultSet != null) pkeyResultSet.close();
-                if (preparedStatement != null) preparedStatement.close();
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.out.println(e.getMessage());
-            }
-        }
-        return null; // Returning null if the insert failed
-    }
+    /**
+     * Reserves a block of message IDs that will not be handed out again.
+     *
+     * @param count The number of IDs to reserve.
+     * @return The reserved IDs in ascending order, or null if they could not be reserved.
+     */
+    int[] allocateMessageIds(int count);
+
+    /**
+     * Inserts messages that already carry their message_id (reserved with allocateMessageIds) atomically.
+     *
+     * @param messages The messages to insert, each with its reserved message_id.
+     * @return True if every message was inserted, false if none was.
+     */
+    boolean insertMessagesWithIds(List<Message> messages);
 
     /**
-     * Updates the text of an existing message in the 'message' table by its ID.
+     * Updates the text of an existing message.
      *
      * @param message_id The ID of the message to update.
      * @param message The Message object containing the updated text.
      * @return The updated Message object, or null if the update fails or the message is not found.
      */
-    public Message updateMessage(int message_id, Message message){
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        try {
-            connection = ConnectionUtil.getConnection();
-            String sql = "UPDATE message SET message_text = ? WHERE message_id = ?";
-            preparedStatement = connection.prepareStatement(sql);
-
-            // Setting parameters for the update query
-            preparedStatement.setString(1, message.getMessage_text());
-            preparedStatement.setInt(2, message_id);
-            
-            // Executing the update
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        } finally {
-            // Ensuring that resources (PreparedStatement, Connection) are closed to prevent resource leaks
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.out.println(e.getMessage());
-            }
-        }
-        return null;
-    }
+    Message updateMessage(int message_id, Message message);
 
     /**
-     * Deletes a message from the 'message' table by its ID.
+     * Deletes a message by its ID.
      *
      * @param message_id The unique ID of the message to delete.
      * @return The deleted Message object, or null if the deletion fails or the message does not exist.
      */
-    public Message deleteMessageById(int message_id){
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
-        try {
-            // Fetching the message using the existing method
-            Message message = getMessageByMessageID(message_id);
-            if (message == null) {
-                return null; // Message doesn't exist
-            }
-
-            // Deleting the message
-            connection = ConnectionUtil.getConnection();
-            String sql = "DELETE FROM message WHERE message_id = ?";
-            preparedStatement = connection.prepareStatement(sql);
-
-            // Setting the values for message_id
-            preparedStatement.setInt(1, message_id);
-            
-            // Executing the delete query
-            preparedStatement.executeUpdate();
+    Message deleteMessageById(int message_id);
 
-            return message; // Returning the deleted message
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        } finally {
-            // Ensuring that resources (PreparedStatement, Connection) are closed to prevent resource leaks
-            try {
-                if (preparedStatement != null) preparedStatement.close();
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                System.out.println(e.getMessage());
+    /**
+     * Keeps the first limit messages of a time range, in time order, with a bounded heap over the messages the source
+     * feeds, so a scan never holds more than one page.
+     */
+    private static List<Message> selectByTime(Consumer<Consumer<Message>> source, long since, int after_id, long until, int limit) {
+        // Latest of the kept messages at the head, so it is the one replaced by an earlier match
+        PriorityQueue<Message> earliest = new PriorityQueue<>(BY_TIME.reversed());
+        source.accept(message -> {
+            long epoch = message.getTime_posted_epoch();
+            if (epoch < since || epoch >= until || (epoch == since && message.getMessage_id() <= after_id)) {
+                return;
             }
-        }
-        return null;
+            earliest.add(message);
+            if (earliest.size() > limit) {
+                earliest.poll();
+            }
+        });
+        List<Message> messages = new ArrayList<>(earliest);
+        messages.sort(BY_TIME);
+        return messages;
     }
-}
\ No newline at end of file
+}
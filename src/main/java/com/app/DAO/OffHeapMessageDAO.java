@@ -0,0 +1,743 @@
+package com.app.DAO;
+
+import com.app.Model.Message;
+import com.app.Util.IntLongHashMap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A MessageDAO that keeps every message in this process, outside the Java heap, in primitive columns:
+ * - message_id, posted_by and text length as ints, time_posted_epoch and the text reference as longs,
+ *   one slot per row in direct ByteBuffers
+ * - message_text as UTF-8 bytes in an arena of 1 MB direct slabs
+ * - a primitive int -> row hash index for lookups by message_id
+ *
+ * The garbage collector only sees a handful of buffers however many messages are stored, and a point read is a hash
+ * probe plus a few absolute buffer reads. Rows are kept in message_id order, so pages are found with a binary search
+ * and per-account queries are a scan of the posted_by column.
+ *
+ * Persistence: every change is appended to a write-ahead log (messages.wal) before it is applied in memory.
+ * When the log grows past a threshold, a snapshot of the live rows (messages.snapshot) is written to a temporary
+ * file, moved into place atomically, and the log is truncated. On startup the snapshot is loaded and the log replayed.
+ * Every record carries a CRC32, so a log whose tail was torn by a crash, or filled with garbage, is replayed up to the
+ * last intact record and truncated there.
+ * With app.messageStore.syncWrites=true (the default) the log is forced to disk before a write returns.
+ *
+ * Accounts stay in H2: posted_by is validated by MessageService through the AccountDAO, not by a foreign key here.
+ */
+public class OffHeapMessageDAO implements MessageDAO, AutoCloseable {
+
+    private static final String DIRECTORY = System.getProperty("app.messageStore.dir", "./data/messages");
+    private static final boolean SYNC_WRITES = Boolean.parseBoolean(System.getProperty("app.messageStore.syncWrites", "true"));
+    private static final long SNAPSHOT_THRESHOLD_BYTES = Long.getLong("app.messageStore.snapshotThresholdBytes", 64L << 20);
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SLAB_SIZE = 1 << 20;
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    /**
+     * Log and snapshot records: op (1 byte), message_id, posted_by (ints), time_posted_epoch (long), text length (int), text,
+     * then a CRC32 of everything before it (int).
+     */
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_DELETE = 3;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4 + 8 + 4;
+    private static final int RECORD_TRAILER_SIZE = 4;
+    // "MSG2": records carry a checksum since version 2
+    private static final int SNAPSHOT_MAGIC = 0x4D534732;
+
+    /**
+     * Text length stored for a deleted row. Deleted rows keep their message_id, so binary searches still work,
+     * until the next compaction removes them.
+     */
+    private static final int DELETED = -1;
+
+    private static OffHeapMessageDAO shared;
+
+    // Columns, one slot per row
+    private ByteBuffer ids;
+    private ByteBuffer postedBy;
+    private ByteBuffer epochs;
+    private ByteBuffer textRefs;
+    private ByteBuffer textLengths;
+    private int capacity;
+    private int rowCount;
+    private int deletedCount;
+
+    /**
+     * True while the rows are in ascending message_id order. Inserting reserved IDs after newer ones breaks the order
+     * until the next compaction restores it.
+     */
+    private volatile boolean rowsInIdOrder = true;
+
+    // Text arena
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private int slabPosition;
+
+    private final IntLongHashMap rowById = new IntLongHashMap(INITIAL_CAPACITY);
+    private int nextId = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Persistence
+    private final Path snapshotFile;
+    private final Path walFile;
+    private FileChannel wal;
+    private final ByteBuffer walBuffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final boolean syncWrites;
+    private final long snapshotThresholdBytes;
+
+    /**
+     * Opens the store in a directory, loading the snapshot and replaying the log found there.
+     *
+     * @param directory The directory holding messages.snapshot and messages.wal. Created if missing.
+     * @param syncWrites True to force the log to disk before each write returns.
+     * @param snapshotThresholdBytes The log size above which a snapshot is taken.
+     * @throws IOException If the directory or the files in it cannot be read or written.
+     */
+    public OffHeapMessageDAO(Path directory, boolean syncWrites, long snapshotThresholdBytes) throws IOException {
+        this.syncWrites = syncWrites;
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.snapshotFile = directory.resolve("messages.snapshot");
+        this.walFile = directory.resolve("messages.wal");
+        allocateColumns(INITIAL_CAPACITY);
+        slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+
+        Files.createDirectories(directory);
+        if (Files.exists(snapshotFile)) {
+            try (FileChannel snapshot = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(snapshot, header);
+                header.flip();
+                if (header.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a message snapshot: " + snapshotFile);
+                }
+                nextId = header.getInt();
+                // A snapshot is moved into place only once it is complete, so a record that fails its checksum is damage
+                if (replay(snapshot) != snapshot.size()) {
+                    throw new IOException("Corrupted message snapshot: " + snapshotFile);
+                }
+            }
+        }
+        wal = FileChannel.open(walFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validLength = replay(wal);
+        // Dropping a record that was cut short by a crash, so new records follow the last complete one
+        wal.truncate(validLength);
+        wal.position(validLength);
+    }
+
+    /**
+     * Returns the process-wide store in the directory set with app.messageStore.dir, opening it on first use.
+     * The store writes a snapshot when the JVM shuts down.
+     */
+    static synchronized OffHeapMessageDAO getShared() {
+        if (shared == null) {
+            try {
+                shared = new OffHeapMessageDAO(Paths.get(DIRECTORY), SYNC_WRITES, SNAPSHOT_THRESHOLD_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open the message store in " + DIRECTORY, e);
+            }
+            OffHeapMessageDAO store = shared;
+            Runtime.getRuntime().addShutdownHook(new Thread(store::close, "message-store-shutdown"));
+        }
+        return shared;
+    }
+
+    @Override
+    public List<Message> getAllMessages() {
+        return getMessagesAfter(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Message getMessageByMessageID(int message_id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(message_id);
+            return row < 0 ? null : readRow(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesByIds(int[] message_ids) {
+        int[] sortedIds = message_ids.clone();
+        Arrays.sort(sortedIds);
+        lock.readLock().lock();
+        try {
+            List<Message> messages = new ArrayList<>(sortedIds.length);
+            for (int i = 0; i < sortedIds.length; i++) {
+                int row = rowOf(sortedIds[i]);
+                if (row >= 0 && (i == 0 || sortedIds[i] != sortedIds[i - 1])) {
+                    messages.add(readRow(row));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessagesByAccountID(int account_id) {
+        return getMessagesByAccountIDAfter(account_id, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int after_id, int limit) {
+        lockOrdered();
+        try {
+            List<Message> messages = new ArrayList<>(Math.min(limit, rowCount));
+            for (int row = firstRowAfter(after_id); row < rowCount && messages.size() < limit; row++) {
+                if (textLengths.getInt(row * 4) != DELETED) {
+                    messages.add(readRow(row));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesByAccountIDAfter(int account_id, int after_id, int limit) {
+        lockOrdered();
+        try {
+            List<Message> messages = new ArrayList<>();
+            for (int row = firstRowAfter(after_id); row < rowCount && messages.size() < limit; row++) {
+                if (postedBy.getInt(row * 4) == account_id && textLengths.getInt(row * 4) != DELETED) {
+                    messages.add(readRow(row));
+                }
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachMessage(Consumer<Message> consumer) {
+        // Reading in chunks, so a slow consumer does not hold the lock and block writers
+        int afterId = 0;
+        List<Message> chunk;
+        do {
+            chunk = getMessagesAfter(afterId, STREAM_CHUNK_SIZE);
+            for (Message message : chunk) {
+                consumer.accept(message);
+            }
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getMessage_id();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
+    @Override
+    public void forEachMessageByAccountID(int account_id, Consumer<Message> consumer) {
+        int afterId = 0;
+        List<Message> chunk;
+        do {
+            chunk = getMessagesByAccountIDAfter(account_id, afterId, STREAM_CHUNK_SIZE);
+            for (Message message : chunk) {
+                consumer.accept(message);
+            }
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getMessage_id();
+            }
+        } while (chunk.size() == STREAM_CHUNK_SIZE);
+    }
+
+    @Override
+    public Message insertMessage(Message message) {
+        List<Message> inserted = insertMessages(List.of(message));
+        return inserted == null ? null : inserted.get(0);
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages) {
+        lock.writeLock().lock();
+        try {
+            List<Message> inserted = new ArrayList<>(messages.size());
+            int id = nextId;
+            for (Message message : messages) {
+                inserted.add(new Message(id++, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            if (!log(OP_INSERT, inserted)) {
+                return null;
+            }
+            for (Message message : inserted) {
+                applyInsert(message.getMessage_id(), message.getPosted_by(), message.getTime_posted_epoch(), utf8(message.getMessage_text()));
+            }
+            maybeSnapshot();
+            return inserted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] allocateMessageIds(int count) {
+        lock.writeLock().lock();
+        try {
+            // IDs reserved but never inserted are not logged; after a restart they may be handed out again,
+            // which is harmless since no message carries them
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = nextId++;
+            }
+            return ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean insertMessagesWithIds(List<Message> messages) {
+        lock.writeLock().lock();
+        try {
+            for (Message message : messages) {
+                if (message.getMessage_id() < 1 || rowById.containsKey(message.getMessage_id())) {
+                    System.out.println("Message " + message.getMessage_id() + " cannot be inserted: invalid or duplicate message_id");
+                    return false;
+                }
+            }
+            if (!log(OP_INSERT, messages)) {
+                return false;
+            }
+            for (Message message : messages) {
+                applyInsert(message.getMessage_id(), message.getPosted_by(), message.getTime_posted_epoch(), utf8(message.getMessage_text()));
+            }
+            maybeSnapshot();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message updateMessage(int message_id, Message message) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(message_id);
+            if (row < 0) {
+                return null;
+            }
+            Message updated = new Message(message_id, postedBy.getInt(row * 4), message.getMessage_text(), epochs.getLong(row * 8));
+            if (!log(OP_UPDATE, List.of(updated))) {
+                return null;
+            }
+            applyUpdate(message_id, utf8(updated.getMessage_text()));
+            maybeSnapshot();
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message deleteMessageById(int message_id) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(message_id);
+            if (row < 0) {
+                return null;
+            }
+            Message deleted = readRow(row);
+            if (!log(OP_DELETE, List.of(deleted))) {
+                return null;
+            }
+            applyDelete(message_id);
+            maybeSnapshot();
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the live rows and truncates the log.
+     *
+     * @throws IOException If the snapshot cannot be written. The log is left untouched in that case.
+     */
+    public void snapshot() throws IOException {
+        lock.writeLock().lock();
+        try {
+            compact();
+            Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+            try (FileChannel snapshot = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(SNAPSHOT_MAGIC).putInt(nextId).flip();
+                writeFully(snapshot, header);
+                List<Message> batch = new ArrayList<>(STREAM_CHUNK_SIZE);
+                for (int row = 0; row < rowCount; row++) {
+                    batch.add(readRow(row));
+                    if (batch.size() == STREAM_CHUNK_SIZE || row == rowCount - 1) {
+                        writeRecords(snapshot, OP_INSERT, batch);
+                        batch.clear();
+                    }
+                }
+                snapshot.force(true);
+            }
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            wal.truncate(0);
+            wal.position(0);
+            wal.force(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a final snapshot and closes the log.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (wal.isOpen()) {
+                snapshot();
+                wal.close();
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of live messages.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rowCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // In-memory columns
+
+    private void allocateColumns(int newCapacity) {
+        ids = grow(ids, newCapacity * 4);
+        postedBy = grow(postedBy, newCapacity * 4);
+        epochs = grow(epochs, newCapacity * 8);
+        textRefs = grow(textRefs, newCapacity * 8);
+        textLengths = grow(textLengths, newCapacity * 4);
+        capacity = newCapacity;
+    }
+
+    private static ByteBuffer grow(ByteBuffer column, int bytes) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        if (column != null) {
+            grown.put(column.duplicate().clear());
+            grown.clear();
+        }
+        return grown;
+    }
+
+    private void applyInsert(int id, int posted_by, long epoch, byte[] text) {
+        if (rowCount == capacity) {
+            allocateColumns(capacity * 2);
+        }
+        int row = rowCount++;
+        if (row > 0 && id < ids.getInt((row - 1) * 4)) {
+            rowsInIdOrder = false;
+        }
+        ids.putInt(row * 4, id);
+        postedBy.putInt(row * 4, posted_by);
+        epochs.putLong(row * 8, epoch);
+        textRefs.putLong(row * 8, storeText(text));
+        textLengths.putInt(row * 4, text.length);
+        rowById.put(id, row);
+        nextId = Math.max(nextId, id + 1);
+    }
+
+    private void applyUpdate(int id, byte[] text) {
+        int row = rowOf(id);
+        if (row >= 0) {
+            // The old text stays in its slab until the next compaction
+            textRefs.putLong(row * 8, storeText(text));
+            textLengths.putInt(row * 4, text.length);
+        }
+    }
+
+    private void applyDelete(int id) {
+        int row = rowOf(id);
+        if (row >= 0) {
+            textLengths.putInt(row * 4, DELETED);
+            rowById.remove(id, -1);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Copies text into the arena and returns its reference: the slab index in the high 32 bits, the offset in the low.
+     */
+    private long storeText(byte[] text) {
+        if (slabPosition + text.length > SLAB_SIZE) {
+            slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            slabPosition = 0;
+        }
+        int slab = slabs.size() - 1;
+        slabs.get(slab).put(slabPosition, text);
+        long ref = ((long) slab << 32) | slabPosition;
+        slabPosition += text.length;
+        return ref;
+    }
+
+    private Message readRow(int row) {
+        long ref = textRefs.getLong(row * 8);
+        byte[] text = new byte[textLengths.getInt(row * 4)];
+        slabs.get((int) (ref >>> 32)).get((int) ref, text);
+        return new Message(ids.getInt(row * 4), postedBy.getInt(row * 4), new String(text, StandardCharsets.UTF_8), epochs.getLong(row * 8));
+    }
+
+    private int rowOf(int id) {
+        return (int) rowById.get(id, -1);
+    }
+
+    /**
+     * @return The first row with a message_id greater than afterId. The rows must be in message_id order.
+     */
+    private int firstRowAfter(int afterId) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ids.getInt(mid * 4) <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Takes the read lock with the rows in message_id order, compacting them first if they are not.
+     */
+    private void lockOrdered() {
+        while (true) {
+            if (!rowsInIdOrder) {
+                lock.writeLock().lock();
+                try {
+                    if (!rowsInIdOrder) {
+                        compact();
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            lock.readLock().lock();
+            if (rowsInIdOrder) {
+                return;
+            }
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the columns and the arena with only the live rows, sorted by message_id. Reclaims the space of deleted
+     * rows and of replaced texts. Called with the write lock held.
+     */
+    private void compact() {
+        int[] liveRows = new int[rowCount - deletedCount];
+        int live = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (textLengths.getInt(row * 4) != DELETED) {
+                liveRows[live++] = row;
+            }
+        }
+        if (!rowsInIdOrder) {
+            // Sorting rows by message_id through a packed (id, row) long array, without boxing
+            long[] keys = new long[live];
+            for (int i = 0; i < live; i++) {
+                keys[i] = ((long) ids.getInt(liveRows[i] * 4) << 32) | liveRows[i];
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < live; i++) {
+                liveRows[i] = (int) keys[i];
+            }
+        }
+
+        ByteBuffer oldIds = ids, oldPostedBy = postedBy, oldEpochs = epochs, oldTextRefs = textRefs, oldTextLengths = textLengths;
+        List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+        ids = null;
+        postedBy = null;
+        epochs = null;
+        textRefs = null;
+        textLengths = null;
+        allocateColumns(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, live)) << 1));
+        slabs.clear();
+        slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+        slabPosition = 0;
+        rowById.clear();
+        rowCount = 0;
+        deletedCount = 0;
+        rowsInIdOrder = true;
+
+        for (int i = 0; i < live; i++) {
+            int row = liveRows[i];
+            long ref = oldTextRefs.getLong(row * 8);
+            byte[] text = new byte[oldTextLengths.getInt(row * 4)];
+            oldSlabs.get((int) (ref >>> 32)).get((int) ref, text);
+            applyInsert(oldIds.getInt(row * 4), oldPostedBy.getInt(row * 4), oldEpochs.getLong(row * 8), text);
+        }
+    }
+
+    // Persistence
+
+    /**
+     * Appends records to the log, forcing it to disk when syncWrites is on. Called with the write lock held.
+     *
+     * @return True if the records were logged; false if the log could not be written, in which case nothing is applied.
+     */
+    private boolean log(byte op, List<Message> messages) {
+        long position = -1;
+        try {
+            position = wal.position();
+            writeRecords(wal, op, messages);
+            if (syncWrites) {
+                wal.force(false);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            // Cutting off a partly written batch, so replay does not apply half of it
+            try {
+                if (position >= 0) {
+                    wal.truncate(position);
+                    wal.position(position);
+                }
+            } catch (IOException truncateException) {
+                System.out.println(truncateException.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private void writeRecords(FileChannel channel, byte op, List<Message> messages) throws IOException {
+        walBuffer.clear();
+        CRC32 crc = new CRC32();
+        for (Message message : messages) {
+            byte[] text = op == OP_DELETE ? new byte[0] : utf8(message.getMessage_text());
+            if (walBuffer.remaining() < RECORD_HEADER_SIZE + text.length + RECORD_TRAILER_SIZE) {
+                walBuffer.flip();
+                writeFully(channel, walBuffer);
+                walBuffer.clear();
+            }
+            int start = walBuffer.position();
+            walBuffer.put(op)
+                    .putInt(message.getMessage_id())
+                    .putInt(message.getPosted_by())
+                    .putLong(message.getTime_posted_epoch())
+                    .putInt(text.length)
+                    .put(text);
+            crc.reset();
+            crc.update(walBuffer.slice(start, RECORD_HEADER_SIZE + text.length));
+            walBuffer.putInt((int) crc.getValue());
+        }
+        walBuffer.flip();
+        writeFully(channel, walBuffer);
+    }
+
+    /**
+     * Applies every complete record from the channel's current position, stopping at the first record that is cut
+     * short or fails its checksum.
+     *
+     * @return The position just after the last intact record.
+     */
+    private long replay(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer trailer = ByteBuffer.allocate(RECORD_TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        long validLength = channel.position();
+        while (true) {
+            header.clear();
+            try {
+                readFully(channel, header);
+                header.flip();
+                byte op = header.get();
+                int id = header.getInt();
+                int posted_by = header.getInt();
+                long epoch = header.getLong();
+                int length = header.getInt();
+                if (op < OP_INSERT || op > OP_DELETE || length < 0 || length > SLAB_SIZE) {
+                    break;
+                }
+                ByteBuffer text = ByteBuffer.allocate(length);
+                readFully(channel, text);
+                trailer.clear();
+                readFully(channel, trailer);
+                crc.reset();
+                crc.update(header.flip());
+                crc.update(text.flip());
+                if (trailer.getInt(0) != (int) crc.getValue()) {
+                    // A torn or garbage record: nothing after it can be trusted either
+                    break;
+                }
+                switch (op) {
+                    case OP_INSERT -> {
+                        if (!rowById.containsKey(id)) {
+                            applyInsert(id, posted_by, epoch, text.array());
+                        }
+                    }
+                    case OP_UPDATE -> applyUpdate(id, text.array());
+                    default -> applyDelete(id);
+                }
+                validLength = channel.position();
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        return validLength;
+    }
+
+    private void maybeSnapshot() {
+        try {
+            if (wal.position() > snapshotThresholdBytes) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            // The log is still complete, the snapshot is retried after the next write
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,7 @@
 package com.app;
 
 import com.app.Controller.SocialMediaController;
+import com.app.Util.MigrationRunner;
 import io.javalin.Javalin;
 
 /**
@@ -8,6 +9,8 @@ import io.javalin.Javalin;
  */
 public class Main {
     public static void main(String[] args) {
+        // Bringing the schema up to date before serving requests
+        MigrationRunner.migrate();
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
         app.start(8080);
@@ -1,5 +1,7 @@
 package com.app.Model;
 
+import java.util.Objects;
+
 /**
  * This is a class that models an Account.
  */
@@ -98,7 +100,7 @@ public class Account {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Account account = (Account) o;
-        return account_id == account.account_id && username.equals(account.username) && password.equals(account.password);
+        return account_id == account.account_id && username.equals(account.username) && Objects.equals(password, account.password);
     }
     /**
      * Overriding the default toString() method allows for easy debugging.
@@ -0,0 +1,91 @@
+package com.app.Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models the number of messages posted by one account.
+ */
+public class AccountPostCount {
+    /**
+     * The account the count is for.
+     */
+    public int account_id;
+    /**
+     * The number of messages the account has posted.
+     */
+    public long message_count;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson ObjectMapper to work.
+     */
+    public AccountPostCount(){
+    }
+    /**
+     * @param account_id
+     * @param message_count
+     */
+    public AccountPostCount(int account_id, long message_count) {
+        this.account_id = account_id;
+        this.message_count = message_count;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return account_id
+     */
+    public int getAccount_id() {
+        return account_id;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param account_id
+     */
+    public void setAccount_id(int account_id) {
+        this.account_id = account_id;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return message_count
+     */
+    public long getMessage_count() {
+        return message_count;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param message_count
+     */
+    public void setMessage_count(long message_count) {
+        this.message_count = message_count;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AccountPostCount other = (AccountPostCount) o;
+        return account_id == other.account_id && message_count == other.message_count;
+    }
+    /**
+     * Consistent with equals(), so counts can be kept in hash-based collections.
+     * @return a hash of the fields.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(account_id, message_count);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "AccountPostCount{" +
+                "account_id=" + account_id +
+                ", message_count=" + message_count +
+                '}';
+    }
+}
@@ -0,0 +1,90 @@
+package com.app.Model;
+
+/**
+ * This is a class that models the outcome of one item of a batch message upload.
+ * Exactly one of message_id and error is set.
+ */
+public class BatchItemResult {
+    /**
+     * The position of the item in the uploaded batch, starting at 0.
+     */
+    public int index;
+    /**
+     * The ID generated for the message if it was inserted, otherwise null.
+     */
+    public Integer message_id;
+    /**
+     * Why the item was rejected, or null if it was inserted.
+     */
+    public String error;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson ObjectMapper to work.
+     */
+    public BatchItemResult(){
+    }
+    /**
+     * @param index
+     * @param message_id
+     * @param error
+     */
+    public BatchItemResult(int index, Integer message_id, String error) {
+        this.index = index;
+        this.message_id = message_id;
+        this.error = error;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return message_id
+     */
+    public Integer getMessage_id() {
+        return message_id;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param message_id
+     */
+    public void setMessage_id(Integer message_id) {
+        this.message_id = message_id;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param error
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "index=" + index +
+                ", message_id=" + message_id +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+package com.app.Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of messages returned by a cursor-paginated request.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, ordered by message_id, or newest first for a page of an account's timeline.
+     */
+    public List<Message> messages;
+    /**
+     * The cursor to pass as after_id (as before for a timeline page) to fetch the next page, or null if this is the last page.
+     */
+    public Integer next_cursor;
+    /**
+     * For a page of a time range, the time_posted_epoch of the message next_cursor points to, to pass as after_time
+     * along with after_id. Null for the other kinds of pages and on the last page.
+     */
+    public Long next_cursor_time;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson ObjectMapper to work.
+     */
+    public MessagePage(){
+    }
+    /**
+     * @param messages
+     * @param next_cursor
+     */
+    public MessagePage(List<Message> messages, Integer next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * @param messages
+     * @param next_cursor
+     * @param next_cursor_time
+     */
+    public MessagePage(List<Message> messages, Integer next_cursor, Long next_cursor_time) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+        this.next_cursor_time = next_cursor_time;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param messages
+     */
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return next_cursor
+     */
+    public Integer getNext_cursor() {
+        return next_cursor;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param next_cursor
+     */
+    public void setNext_cursor(Integer next_cursor) {
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return next_cursor_time
+     */
+    public Long getNext_cursor_time() {
+        return next_cursor_time;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param next_cursor_time
+     */
+    public void setNext_cursor_time(Long next_cursor_time) {
+        this.next_cursor_time = next_cursor_time;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", next_cursor=" + next_cursor +
+                ", next_cursor_time=" + next_cursor_time +
+                '}';
+    }
+}
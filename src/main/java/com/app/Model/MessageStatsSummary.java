@@ -0,0 +1,68 @@
+package com.app.Model;
+
+/**
+ * This is a class that models the overall message statistics.
+ */
+public class MessageStatsSummary {
+    /**
+     * The number of messages in the store.
+     */
+    public long total_messages;
+    /**
+     * When the statistics were last rebuilt from the store, in epoch milliseconds.
+     */
+    public long rebuilt_at;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson ObjectMapper to work.
+     */
+    public MessageStatsSummary(){
+    }
+    /**
+     * @param total_messages
+     * @param rebuilt_at
+     */
+    public MessageStatsSummary(long total_messages, long rebuilt_at) {
+        this.total_messages = total_messages;
+        this.rebuilt_at = rebuilt_at;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return total_messages
+     */
+    public long getTotal_messages() {
+        return total_messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param total_messages
+     */
+    public void setTotal_messages(long total_messages) {
+        this.total_messages = total_messages;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return rebuilt_at
+     */
+    public long getRebuilt_at() {
+        return rebuilt_at;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param rebuilt_at
+     */
+    public void setRebuilt_at(long rebuilt_at) {
+        this.rebuilt_at = rebuilt_at;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageStatsSummary{" +
+                "total_messages=" + total_messages +
+                ", rebuilt_at=" + rebuilt_at +
+                '}';
+    }
+}
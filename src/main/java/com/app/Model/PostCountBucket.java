@@ -0,0 +1,91 @@
+package com.app.Model;
+
+import java.util.Objects;
+
+/**
+ * This is a class that models the number of messages posted in one hour or one day, by time_posted_epoch.
+ */
+public class PostCountBucket {
+    /**
+     * The start of the hour or day, in epoch seconds.
+     */
+    public long bucket_start;
+    /**
+     * The number of messages posted in it.
+     */
+    public long message_count;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson ObjectMapper to work.
+     */
+    public PostCountBucket(){
+    }
+    /**
+     * @param bucket_start
+     * @param message_count
+     */
+    public PostCountBucket(long bucket_start, long message_count) {
+        this.bucket_start = bucket_start;
+        this.message_count = message_count;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return bucket_start
+     */
+    public long getBucket_start() {
+        return bucket_start;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param bucket_start
+     */
+    public void setBucket_start(long bucket_start) {
+        this.bucket_start = bucket_start;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @return message_count
+     */
+    public long getMessage_count() {
+        return message_count;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. We may use them as well.
+     * @param message_count
+     */
+    public void setMessage_count(long message_count) {
+        this.message_count = message_count;
+    }
+    /**
+     * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
+     * Assert.assertEquals and List.contains to function.
+     * @param o the other object.
+     * @return true if o is equal to this object.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PostCountBucket other = (PostCountBucket) o;
+        return bucket_start == other.bucket_start && message_count == other.message_count;
+    }
+    /**
+     * Consistent with equals(), so counts can be kept in hash-based collections.
+     * @return a hash of the fields.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(bucket_start, message_count);
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "PostCountBucket{" +
+                "bucket_start=" + bucket_start +
+                ", message_count=" + message_count +
+                '}';
+    }
+}
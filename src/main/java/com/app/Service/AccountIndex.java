@@ -0,0 +1,166 @@
+package com.app.Service;
+
+import com.app.DAO.AccountDAO;
+import com.app.Model.Account;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the accounts this application has seen, so that registration, login and message posting
+ * can answer "does this account exist?" and "what is this user's password hash?" without a database round trip.
+ *
+ * The index has two parts:
+ * - username -> account_id plus the stored password hash, used by registration and login
+ * - a compact bit set of existing account IDs, used to validate posted_by when a message is posted
+ *
+ * It is populated lazily: a miss falls through to the AccountDAO and the result is remembered if the account exists.
+ * Misses are never remembered, so accounts created outside this process are still found. Accounts are never deleted
+ * by the application, so a positive entry never has to be removed.
+ */
+public class AccountIndex {
+
+    /**
+     * What the index remembers about a username: its account_id and the password as stored in the database, i.e. its
+     * PBKDF2 hash (or, for an account created before hashing and not logged in since, its legacy plaintext password).
+     */
+    private record Entry(int accountId, String storedPassword) {
+    }
+
+    private final AccountDAO accountDAO;
+    private final ConcurrentHashMap<String, Entry> byUsername = new ConcurrentHashMap<>();
+
+    /**
+     * One bit per account_id. Account IDs are generated by the database in sequence, so the set stays dense.
+     */
+    private final BitSet accountIds = new BitSet();
+
+    /**
+     * @param accountDAO The Data Access Object used when an account is not in the index yet.
+     */
+    public AccountIndex(AccountDAO accountDAO) {
+        this.accountDAO = accountDAO;
+    }
+
+    /**
+     * Checks whether an account with the given username exists.
+     *
+     * @param username The username to look for.
+     * @return True if the account exists, false otherwise.
+     */
+    public boolean usernameExists(String username) {
+        return lookup(username) != null;
+    }
+
+    /**
+     * Finds an account by username, loading it from the database on a miss.
+     *
+     * @param username The username to look for.
+     * @return The Account with its stored password hash, or null if the account does not exist.
+     */
+    public Account getAccount(String username) {
+        Entry entry = lookup(username);
+        return entry == null ? null : new Account(entry.accountId, username, entry.storedPassword);
+    }
+
+    /**
+     * Replaces the stored password of an account already in the index, e.g. after a legacy password has been hashed.
+     *
+     * @param username The username of the account.
+     * @param storedPassword The new password hash, as written to the database.
+     */
+    public void updateStoredPassword(String username, String storedPassword) {
+        byUsername.computeIfPresent(username, (name, entry) -> new Entry(entry.accountId, storedPassword));
+    }
+
+    /**
+     * Checks whether an account with the given ID exists.
+     *
+     * @param accountId The account ID to check for existence.
+     * @return True if the account exists, false otherwise.
+     */
+    public boolean accountExists(int accountId) {
+        if (accountId < 0) {
+            return false;
+        }
+        synchronized (accountIds) {
+            if (accountIds.get(accountId)) {
+                return true;
+            }
+        }
+        // Miss: asking the database and remembering the account if it exists
+        boolean exists = accountDAO.accountExistsById(accountId);
+        if (exists) {
+            markExists(accountId);
+        }
+        return exists;
+    }
+
+    /**
+     * Checks a set of account IDs at once. IDs already in the index are answered from memory,
+     * the rest are checked with a single database query.
+     *
+     * @param accountIds The account IDs to check.
+     * @return The subset of accountIds that exist.
+     */
+    public Set<Integer> existingAccounts(Set<Integer> accountIds) {
+        Set<Integer> existing = new HashSet<>();
+        Set<Integer> unknown = new HashSet<>();
+        synchronized (this.accountIds) {
+            for (int accountId : accountIds) {
+                if (accountId >= 0 && this.accountIds.get(accountId)) {
+                    existing.add(accountId);
+                } else {
+                    unknown.add(accountId);
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (int accountId : accountDAO.findExistingAccountIds(unknown)) {
+                markExists(accountId);
+                existing.add(accountId);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Adds an account to the index, e.g. right after it has been registered.
+     *
+     * @param account The persisted account, including its account_id and its password as stored (hashed).
+     */
+    public void add(Account account) {
+        if (account.getUsername() == null || account.getPassword() == null) {
+            return;
+        }
+        byUsername.put(account.getUsername(), new Entry(account.getAccount_id(), account.getPassword()));
+        markExists(account.getAccount_id());
+    }
+
+    /**
+     * Finds the index entry for a username, loading it from the database on a miss.
+     */
+    private Entry lookup(String username) {
+        if (username == null) {
+            return null;
+        }
+        Entry entry = byUsername.get(username);
+        if (entry == null) {
+            Account account = accountDAO.getAccountByUserName(username);
+            if (account == null) {
+                return null;
+            }
+            add(account);
+            entry = byUsername.get(username);
+        }
+        return entry;
+    }
+
+    private void markExists(int accountId) {
+        synchronized (accountIds) {
+            accountIds.set(accountId);
+        }
+    }
+}
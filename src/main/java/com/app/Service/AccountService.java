@@ -2,28 +2,68 @@ package com.app.Service;
 
 import com.app.Model.Account;
 import com.app.DAO.AccountDAO;
+import com.app.Util.LruCache;
+import com.app.Util.PasswordHasher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 public class AccountService {
+    /**
+     * Size and time-to-live of the cache of recent successful logins (-Dapp.passwords.loginCache.maxSize and
+     * -Dapp.passwords.loginCache.ttlMillis). A cached login skips PBKDF2, so the TTL bounds how long a password keeps
+     * working from memory alone.
+     */
+    private static final int LOGIN_CACHE_SIZE = Integer.getInteger("app.passwords.loginCache.maxSize", 10000);
+    private static final long LOGIN_CACHE_TTL_MILLIS = Long.getLong("app.passwords.loginCache.ttlMillis", 60000);
+
     private AccountDAO accountDAO;
+    // In-memory index answering existence checks and holding password hashes without a database round trip
+    private AccountIndex accountIndex;
+    // Salted PBKDF2 hashing, run on its own bounded thread pool
+    private final PasswordHasher passwordHasher = PasswordHasher.getInstance();
+    // Recent successful logins: a digest of the username and password mapped to the account_id
+    private final LruCache<String, Integer> loginCache = new LruCache<>(LOGIN_CACHE_SIZE, LOGIN_CACHE_TTL_MILLIS);
+    // Key of the login cache digests, generated per service so the digests are useless outside this process
+    private final SecretKeySpec loginCacheKey;
 
     // Default constructor initializes accountDAO
     public AccountService(){
-        accountDAO = new AccountDAO();
+        this(new AccountDAO());
     }
 
     // Constructor to inject AccountDAO
     public AccountService(AccountDAO accountDAO){
+        this(accountDAO, new AccountIndex(accountDAO));
+    }
+
+    // Constructor to inject AccountDAO and an AccountIndex shared with other services
+    public AccountService(AccountDAO accountDAO, AccountIndex accountIndex){
         this.accountDAO = accountDAO;
+        this.accountIndex = accountIndex;
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.loginCacheKey = new SecretKeySpec(key, "HmacSHA256");
     }
 
     /**
      * Handles account registration logic.
      * 
      * @param account The Account object containing the user's registration details.
+     * The password is stored as a PBKDF2 hash, and the returned Account carries no password, so it is never echoed.
+     *
      * @return The newly registered Account object if registration is successful.
      * @throws IllegalArgumentException If any validation fails (e.g., empty username, weak password, or duplicate username).
+     * @throws RejectedExecutionException If the password hashing queue is full.
      */
-    public Account registerAccount(Account account) {
+    public Account registerAccount(Account account) throws IllegalArgumentException, RejectedExecutionException {
         // Validating username
         String username = account.getUsername();
         if (username == null || username.isBlank()) {
@@ -41,8 +81,13 @@ public class AccountService {
             throw new IllegalArgumentException(""); // "Account with this username already exists."
         }
 
-        // If validations pass, persist the account and return the saved object
-        return accountDAO.insertAccount(account);
+        // If validations pass, hash the password, persist the account, add it to the index and return the saved object
+        Account addedAccount = accountDAO.insertAccount(new Account(username, passwordHasher.hash(password)));
+        if (addedAccount == null) {
+            throw new IllegalArgumentException(""); // "Account could not be created." (e.g. the username was taken concurrently)
+        }
+        accountIndex.add(addedAccount);
+        return new Account(addedAccount.getAccount_id(), username, null);
     }
 
     /**
@@ -62,7 +107,7 @@ public class AccountService {
      * @return True if an account exists with the given username, false otherwise.
      */
     public boolean accountExists(String username) {
-        return getAccountByUsername(username) != null;
+        return accountIndex.usernameExists(username);
     }
 
     /**
@@ -70,25 +115,74 @@ public class AccountService {
      * 
      * @param username The username entered by the user.
      * @param password The password entered by the user.
-     * @return The authenticated Account object if login is successful.
+     * A login that succeeded within the login cache TTL is answered from the cache without hashing. Otherwise the
+     * password is verified against the stored hash on the hashing pool; a legacy plaintext password is replaced with a
+     * hash once it has been verified.
+     *
+     * @return The authenticated Account object, without its password, if login is successful.
      * @throws IllegalArgumentException If the username is invalid or the password does not match.
+     * @throws RejectedExecutionException If the password hashing queue is full.
      */
-    public Account login(String username, String password) throws IllegalArgumentException {
-        // Step 1: Checking if account exists by username
-        Account account = getAccountByUsername(username);
-
-        if (account == null) {
-            // Account not found, throwing exception to be handled by the controller
+    public Account login(String username, String password) throws IllegalArgumentException, RejectedExecutionException {
+        if (username == null || password == null) {
             throw new IllegalArgumentException(""); // "Invalid username or password."
         }
 
-        // Step 2: Checking if the password matches
-        if (!account.getPassword().equals(password)) {
-            // Invalid password, throwing exception
+        // Answering a repeated login from the cache
+        String credentialDigest = credentialDigest(username, password);
+        Integer cachedAccountId = loginCache.get(credentialDigest);
+        if (cachedAccountId != null) {
+            return new Account(cachedAccountId, username, null);
+        }
+
+        // Checking the password against the hash held by the account index.
+        // The database is only queried the first time a username is seen.
+        Account account = accountIndex.getAccount(username);
+        if (!passwordHasher.verify(password, account == null ? null : account.getPassword())) {
+            // Account not found or password does not match, throwing exception to be handled by the controller
             throw new IllegalArgumentException(""); // "Invalid username or password."
         }
 
-        // Returning the authenticated account if successful
-        return account;
+        if (passwordHasher.needsRehash(account.getPassword())) {
+            rehashPassword(account, password);
+        }
+        loginCache.put(credentialDigest, account.getAccount_id());
+
+        // Returning the authenticated account if successful, without its password
+        return new Account(account.getAccount_id(), username, null);
+    }
+
+    /**
+     * Replaces a legacy plaintext password, or a hash with too few iterations, with a new hash.
+     * The login has already succeeded, so a full hashing queue only postpones this to a later login.
+     */
+    private void rehashPassword(Account account, String password) {
+        try {
+            String newHash = passwordHasher.hash(password);
+            if (accountDAO.updatePassword(account.getAccount_id(), account.getPassword(), newHash)) {
+                accountIndex.updateStoredPassword(account.getUsername(), newHash);
+            }
+        } catch (RejectedExecutionException e) {
+            // Trying again at the next login
+        }
+    }
+
+    /**
+     * Computes the login cache key of a username and password: an HMAC under a key that never leaves this service,
+     * so the cache does not hold anything a password could be recovered from without that key.
+     */
+    private String credentialDigest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(loginCacheKey);
+            byte[] name = username.getBytes(StandardCharsets.UTF_8);
+            // Prefixing the username with its length, so "ab" + "c" and "a" + "bc" give different digests
+            mac.update(ByteBuffer.allocate(4).putInt(name.length).array());
+            mac.update(name);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.app.Service;
+
+import com.app.DAO.MessageDAO;
+import com.app.Model.Message;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory timelines of the messages posted by each account, so "the latest N messages of this user" is an index
+ * lookup followed by point reads instead of a query over the whole message table.
+ *
+ * A timeline keeps the IDs of an account's messages in two primitive arrays sorted by (time_posted_epoch, message_id):
+ * the epochs, and the message IDs at the same positions. Newest-first pages are read from the end of the arrays.
+ *
+ * Timelines are loaded lazily, with one query per account on first use, and then kept up to date by MessageService
+ * when messages are posted or deleted. Updating a message changes neither its author nor its time, so it leaves the
+ * timeline as it is. A change to an account that has no timeline yet is ignored: it is read from the database
+ * when the timeline is loaded.
+ */
+public class AccountTimelineIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The messages of one account, sorted by (time_posted_epoch, message_id). Guarded by its own monitor.
+     */
+    private static final class Timeline {
+        private long[] epochs = new long[INITIAL_CAPACITY];
+        private int[] ids = new int[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized void add(int id, long epoch) {
+            int position = position(id, epoch);
+            if (position < size && ids[position] == id) {
+                // Already there: the message was loaded from the database before it was reported
+                return;
+            }
+            if (size == ids.length) {
+                epochs = Arrays.copyOf(epochs, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            // New messages are usually the newest, so this is almost always an append
+            System.arraycopy(epochs, position, epochs, position + 1, size - position);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            epochs[position] = epoch;
+            ids[position] = id;
+            size++;
+        }
+
+        synchronized void remove(int id, long epoch) {
+            int position = position(id, epoch);
+            if (position < size && ids[position] == id) {
+                System.arraycopy(epochs, position + 1, epochs, position, size - position - 1);
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+
+        /**
+         * @return Up to count message IDs, newest first, starting just before beforeId (or at the newest message if
+         * beforeId is 0), or null if beforeId is not in this timeline.
+         */
+        synchronized int[] newestBefore(int beforeId, int count) {
+            int end = size;
+            if (beforeId != 0) {
+                end = size - 1;
+                while (end >= 0 && ids[end] != beforeId) {
+                    end--;
+                }
+                if (end < 0) {
+                    return null;
+                }
+            }
+            int[] page = new int[Math.min(count, end)];
+            for (int i = 0; i < page.length; i++) {
+                page[i] = ids[end - 1 - i];
+            }
+            return page;
+        }
+
+        /**
+         * @return The position of (epoch, id) in the arrays, or the position where it would be inserted.
+         */
+        private int position(int id, long epoch) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (epochs[mid] < epoch || (epochs[mid] == epoch && ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final MessageDAO messageDAO;
+    private final ConcurrentHashMap<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+
+    /**
+     * @param messageDAO The Data Access Object used to load the timeline of an account on first use.
+     */
+    public AccountTimelineIndex(MessageDAO messageDAO) {
+        this.messageDAO = messageDAO;
+    }
+
+    /**
+     * Returns the IDs of an account's messages, newest first.
+     *
+     * @param accountId The account whose timeline is read.
+     * @param beforeId 0 to start at the newest message, or the ID of a message in the timeline to start just after it.
+     * @param count The maximum number of IDs to return.
+     * @return Up to count message IDs, or null if beforeId is not a message of this account.
+     */
+    public int[] newestMessageIds(int accountId, int beforeId, int count) {
+        return timelineOf(accountId).newestBefore(beforeId, count);
+    }
+
+    /**
+     * Adds a message that has just been posted to the timeline of its author, if that timeline is loaded.
+     *
+     * @param message The posted message, with its message_id.
+     */
+    public void messageAdded(Message message) {
+        // computeIfPresent waits for a load of the same timeline in progress, so the message cannot be missed by both
+        timelines.computeIfPresent(message.getPosted_by(), (accountId, timeline) -> {
+            timeline.add(message.getMessage_id(), message.getTime_posted_epoch());
+            return timeline;
+        });
+    }
+
+    /**
+     * Removes a message that has just been deleted from the timeline of its author, if that timeline is loaded.
+     *
+     * @param message The deleted message.
+     */
+    public void messageRemoved(Message message) {
+        timelines.computeIfPresent(message.getPosted_by(), (accountId, timeline) -> {
+            timeline.remove(message.getMessage_id(), message.getTime_posted_epoch());
+            return timeline;
+        });
+    }
+
+    /**
+     * Returns the timeline of an account, loading it from the database on first use.
+     */
+    private Timeline timelineOf(int accountId) {
+        Timeline timeline = timelines.get(accountId);
+        if (timeline != null) {
+            return timeline;
+        }
+        return timelines.computeIfAbsent(accountId, id -> {
+            Timeline loaded = new Timeline();
+            messageDAO.forEachMessageByAccountID(id, message -> loaded.add(message.getMessage_id(), message.getTime_posted_epoch()));
+            return loaded;
+        });
+    }
+}
@@ -0,0 +1,339 @@
+package com.app.Service;
+
+import com.app.Model.Message;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-process publish/subscribe of message changes, used to push new, updated and deleted messages to live feeds
+ * instead of having clients poll GET /messages.
+ *
+ * Publishing never blocks the writer: publish() only offers the event to a bounded dispatch queue. A dispatcher thread
+ * fans each event out to the subscribers of the global feed and of the author's feed, by offering it to each
+ * subscriber's own bounded queue. Every subscriber has a virtual thread that drains its queue into its sink, so a
+ * client that reads slowly only holds up its own thread.
+ *
+ * A subscriber whose queue is full has fallen too far behind and is dropped: its feed is closed and the client is
+ * expected to reconnect and reload. If the dispatch queue itself overflows, every subscriber has missed an event,
+ * so all of them are dropped the same way.
+ */
+public class MessageEventBus implements AutoCloseable {
+
+    /**
+     * A change to a message. The JSON sent to subscribers is built once per event, by the first subscriber that needs it.
+     */
+    public static final class Event {
+        private final long id;
+        private final String type;
+        private final Message message;
+        private volatile String data;
+
+        private Event(long id, String type, Message message) {
+            this.id = id;
+            this.type = type;
+            this.message = message;
+        }
+
+        /**
+         * @return The position of the event in the bus, increasing by one per published event.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return created, updated or deleted.
+         */
+        public String getType() {
+            return type;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        /**
+         * @return The message serialized with the given serializer, shared by every subscriber of the event.
+         */
+        public String getData(Function<Message, String> serializer) {
+            String serialized = data;
+            if (serialized == null) {
+                // Two subscribers may both serialize it; they produce the same string
+                serialized = serializer.apply(message);
+                data = serialized;
+            }
+            return serialized;
+        }
+    }
+
+    /**
+     * Where a subscriber's events go, e.g. a Server-Sent Events connection. Called only from the subscriber's thread.
+     */
+    public interface Sink {
+        void send(Event event) throws IOException;
+
+        /**
+         * Sends something harmless when no event has been sent for a while, so a closed connection is noticed.
+         */
+        void keepAlive() throws IOException;
+
+        void close();
+    }
+
+    /**
+     * One subscriber: its bounded queue of events and the virtual thread that writes them to its sink.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Integer accountId;
+        private final Sink sink;
+        private final BlockingQueue<Event> queue;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Thread writer;
+
+        private Subscription(Integer accountId, Sink sink) {
+            this.accountId = accountId;
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(subscriberQueueCapacity);
+        }
+
+        /**
+         * Queues an event without blocking, dropping the subscriber if its queue is full.
+         */
+        private void offer(Event event) {
+            if (!queue.offer(event)) {
+                droppedSubscribers.incrementAndGet();
+                close();
+            }
+        }
+
+        private void run() {
+            try {
+                // A first keep-alive tells the client the subscription is in place
+                sink.keepAlive();
+                while (!closed.get()) {
+                    Event event = queue.poll(keepAliveMillis, TimeUnit.MILLISECONDS);
+                    if (event == null) {
+                        sink.keepAlive();
+                    } else {
+                        sink.send(event);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // The client has gone away
+            } catch (InterruptedException e) {
+                // Closed while waiting for an event
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Unsubscribes and closes the sink. Safe to call more than once and from any thread.
+         */
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            unsubscribe(this);
+            if (writer != null && writer != Thread.currentThread()) {
+                writer.interrupt();
+            }
+            sink.close();
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+    }
+
+    private final int subscriberQueueCapacity;
+    private final int maxSubscribers;
+    private final long keepAliveMillis;
+
+    private final BlockingQueue<Event> dispatchQueue;
+    private final Set<Subscription> globalSubscribers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, Set<Subscription>> accountSubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final AtomicLong nextEventId = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+    private volatile boolean overflowed;
+
+    private Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * Creates the bus. Its dispatcher thread is started by the first subscription.
+     *
+     * @param dispatchQueueCapacity The number of published events that may wait to be fanned out.
+     * @param subscriberQueueCapacity The number of events a subscriber may fall behind before it is dropped.
+     * @param maxSubscribers The largest number of subscribers at a time.
+     * @param keepAliveMillis How long a subscriber may go without an event before a keep-alive is sent.
+     */
+    public MessageEventBus(int dispatchQueueCapacity, int subscriberQueueCapacity, int maxSubscribers, long keepAliveMillis) {
+        this.subscriberQueueCapacity = subscriberQueueCapacity;
+        this.maxSubscribers = maxSubscribers;
+        this.keepAliveMillis = keepAliveMillis;
+        this.dispatchQueue = new ArrayBlockingQueue<>(dispatchQueueCapacity);
+    }
+
+    /**
+     * Publishes a change to a message. Never blocks.
+     *
+     * @param type created, updated or deleted.
+     * @param message The message as written.
+     */
+    public void publish(String type, Message message) {
+        if (closed || subscriberCount.get() == 0) {
+            return;
+        }
+        if (!dispatchQueue.offer(new Event(nextEventId.incrementAndGet(), type, message))) {
+            droppedEvents.incrementAndGet();
+            overflowed = true;
+        }
+    }
+
+    /**
+     * Subscribes a sink to the global feed or to the feed of one account, and starts its writer thread.
+     *
+     * @param accountId The account whose messages are wanted, or null for every message.
+     * @param sink Where the events go.
+     * @return The subscription, to be closed when the client goes away.
+     * @throws RejectedExecutionException If the bus already has maxSubscribers subscribers or is closed.
+     */
+    public Subscription subscribe(Integer accountId, Sink sink) throws RejectedExecutionException {
+        startDispatcher();
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new RejectedExecutionException("Too many feed subscribers.");
+        }
+        Subscription subscription = new Subscription(accountId, sink);
+        if (accountId == null) {
+            globalSubscribers.add(subscription);
+        } else {
+            // Adding inside the mapping function, so a concurrent unsubscribe cannot drop the set in between
+            accountSubscribers.compute(accountId, (id, subscribers) -> {
+                Set<Subscription> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                set.add(subscription);
+                return set;
+            });
+        }
+        subscription.writer = Thread.ofVirtual().name("message-feed-subscriber").start(subscription::run);
+        return subscription;
+    }
+
+    /**
+     * @return The number of subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * @return The number of subscribers dropped for falling behind, including those dropped after the dispatch queue overflowed.
+     */
+    public long getDroppedSubscriberCount() {
+        return droppedSubscribers.get();
+    }
+
+    /**
+     * @return The number of events that could not be queued because the dispatch queue was full.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Stops the dispatcher and closes every subscription.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (dispatcher != null) {
+                dispatcher.interrupt();
+            }
+        }
+        closeAll();
+    }
+
+    private synchronized void startDispatcher() {
+        if (closed) {
+            throw new RejectedExecutionException("The message feed is closed.");
+        }
+        if (dispatcher == null) {
+            dispatcher = new Thread(this::runDispatcher, "message-event-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        boolean removed;
+        if (subscription.accountId == null) {
+            removed = globalSubscribers.remove(subscription);
+        } else {
+            // Removing and dropping the emptied set atomically, so a concurrent subscribe never adds to a dropped set
+            boolean[] found = new boolean[1];
+            accountSubscribers.computeIfPresent(subscription.accountId, (id, subscribers) -> {
+                found[0] = subscribers.remove(subscription);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+            removed = found[0];
+        }
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private void closeAll() {
+        for (Subscription subscription : globalSubscribers) {
+            subscription.close();
+        }
+        for (Set<Subscription> subscribers : accountSubscribers.values()) {
+            for (Subscription subscription : subscribers) {
+                subscription.close();
+            }
+        }
+    }
+
+    private void runDispatcher() {
+        while (!closed) {
+            Event event;
+            try {
+                event = dispatchQueue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (overflowed) {
+                // Events were lost, so no subscriber's feed is complete any more
+                overflowed = false;
+                droppedSubscribers.addAndGet(subscriberCount.get());
+                closeAll();
+                dispatchQueue.clear();
+                continue;
+            }
+            for (Subscription subscription : globalSubscribers) {
+                subscription.offer(event);
+            }
+            Set<Subscription> subscribers = accountSubscribers.get(event.getMessage().getPosted_by());
+            if (subscribers != null) {
+                for (Subscription subscription : subscribers) {
+                    subscription.offer(event);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.app.Service;
+
+import com.app.DAO.MessageDAO;
+import com.app.Model.Message;
+import com.app.Util.IntBitmap;
+import com.app.Util.IntLongHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index of message_text, so a word search is a few set intersections instead of a LIKE scan of
+ * the message table.
+ *
+ * Texts are split into terms: runs of letters and digits, lowercased. The term dictionary is a TreeMap from term to
+ * term ID, sorted so that a prefix query is a range of it, and the postings of each term (the IDs of the messages
+ * containing it) are an IntBitmap. A query is a list of terms, each optionally ending with * for a prefix, and
+ * matches the messages that contain all of them. Matches are ranked newest first, by (time_posted_epoch, message_id),
+ * using the epoch of each message kept next to the postings.
+ *
+ * The index also keeps the term IDs of each message, so an updated or deleted message is removed from exactly the
+ * postings it was added to. It is built on first use with one pass over the message table, and MessageService
+ * reports every change to it, before and after the build: a change reported before the build is also in the table by
+ * the time the build reads it, and adding a message twice is harmless.
+ */
+public class MessageSearchIndex {
+
+    /**
+     * The largest number of terms in a query.
+     */
+    public static final int MAX_QUERY_TERMS = 16;
+
+    private static final int[] NO_TERMS = new int[0];
+
+    private final MessageDAO messageDAO;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    private final List<IntBitmap> postings = new ArrayList<>();
+    private final Map<Integer, int[]> messageTerms = new HashMap<>();
+    private final IntLongHashMap epochs = new IntLongHashMap(1024);
+
+    private volatile boolean built;
+
+    /**
+     * @param messageDAO The Data Access Object used to build the index on first use.
+     */
+    public MessageSearchIndex(MessageDAO messageDAO) {
+        this.messageDAO = messageDAO;
+    }
+
+    /**
+     * Returns the IDs of the messages matching a query, newest first.
+     *
+     * @param query Terms separated by spaces or punctuation; a term ending with * matches every term starting with it.
+     * @param beforeId 0 to start at the newest match, or the ID of an indexed message to start just after it.
+     * @param count The maximum number of IDs to return.
+     * @return Up to count message IDs, or null if beforeId is not an indexed message.
+     * @throws IllegalArgumentException If the query has no terms or more than MAX_QUERY_TERMS.
+     */
+    public int[] search(String query, int beforeId, int count) throws IllegalArgumentException {
+        List<String> terms = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        parseQuery(query, terms, prefixes);
+        if (terms.isEmpty() || terms.size() > MAX_QUERY_TERMS) {
+            throw new IllegalArgumentException(""); // "q must contain between 1 and 16 words."
+        }
+        ensureBuilt();
+
+        lock.readLock().lock();
+        try {
+            long beforeEpoch = Long.MAX_VALUE;
+            if (beforeId != 0) {
+                if (!epochs.containsKey(beforeId)) {
+                    return null;
+                }
+                beforeEpoch = epochs.get(beforeId, 0);
+            }
+
+            // Intersecting the smallest postings first keeps every intermediate set small
+            List<IntBitmap> sets = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                IntBitmap set = prefixes.get(i) ? prefixPostings(terms.get(i)) : exactPostings(terms.get(i));
+                if (set.isEmpty()) {
+                    return NO_TERMS;
+                }
+                sets.add(set);
+            }
+            sets.sort(Comparator.comparingInt(IntBitmap::cardinality));
+            IntBitmap matches = sets.get(0);
+            for (int i = 1; i < sets.size() && !matches.isEmpty(); i++) {
+                matches = matches.and(sets.get(i));
+            }
+            return newest(matches, beforeId, beforeEpoch, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a message that has just been posted.
+     *
+     * @param message The posted message, with its message_id.
+     */
+    public void messageAdded(Message message) {
+        lock.writeLock().lock();
+        try {
+            index(message);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes a message whose text has just been updated.
+     *
+     * @param message The updated message.
+     */
+    public void messageUpdated(Message message) {
+        messageAdded(message);
+    }
+
+    /**
+     * Removes a message that has just been deleted from the index.
+     *
+     * @param message The deleted message.
+     */
+    public void messageRemoved(Message message) {
+        lock.writeLock().lock();
+        try {
+            unindex(message.getMessage_id());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of messages in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return epochs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits a text into its distinct terms.
+     *
+     * @return The lowercased runs of letters and digits of the text, each once, in order of first appearance.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!terms.contains(term)) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Reads the whole message table into the index the first time a search needs it.
+     */
+    private void ensureBuilt() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                messageDAO.forEachMessage(this::index);
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a message to the postings of its terms, replacing what was indexed for it before. Requires the write lock.
+     */
+    private void index(Message message) {
+        int messageId = message.getMessage_id();
+        unindex(messageId);
+        String text = message.getMessage_text();
+        List<String> terms = text == null ? List.of() : terms(text);
+        int[] ids = new int[terms.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Integer termId = termIds.get(terms.get(i));
+            if (termId == null) {
+                termId = postings.size();
+                termIds.put(terms.get(i), termId);
+                postings.add(new IntBitmap());
+            }
+            postings.get(termId).add(messageId);
+            ids[i] = termId;
+        }
+        messageTerms.put(messageId, ids);
+        epochs.put(messageId, message.getTime_posted_epoch());
+    }
+
+    /**
+     * Removes a message from the postings it was added to. Requires the write lock.
+     */
+    private void unindex(int messageId) {
+        int[] ids = messageTerms.remove(messageId);
+        if (ids == null) {
+            return;
+        }
+        // Terms left without postings stay in the dictionary, so term IDs never need to be reassigned
+        for (int termId : ids) {
+            postings.get(termId).remove(messageId);
+        }
+        epochs.remove(messageId, 0);
+    }
+
+    private IntBitmap exactPostings(String term) {
+        Integer termId = termIds.get(term);
+        return termId == null ? new IntBitmap() : postings.get(termId);
+    }
+
+    private IntBitmap prefixPostings(String prefix) {
+        IntBitmap union = new IntBitmap();
+        for (int termId : termIds.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            union.addAll(postings.get(termId));
+        }
+        return union;
+    }
+
+    /**
+     * Selects the newest matches older than the cursor with a bounded min-heap, so ranking costs O(matches * log count)
+     * and never sorts the whole match set. The heap is kept in parallel epoch and ID arrays, so each match costs one
+     * epoch lookup and no boxing.
+     */
+    private int[] newest(IntBitmap matches, int beforeId, long beforeEpoch, int count) {
+        // Oldest of the kept matches at the root, so it is the one replaced by a newer match
+        long[] heapEpochs = new long[Math.min(count, matches.cardinality())];
+        int[] heapIds = new int[heapEpochs.length];
+        int[] size = new int[1];
+        matches.forEach(id -> {
+            long epoch = epochs.get(id, 0);
+            if (beforeId != 0 && (epoch > beforeEpoch || (epoch == beforeEpoch && id >= beforeId))) {
+                return;
+            }
+            if (size[0] < heapIds.length) {
+                siftUp(heapEpochs, heapIds, size[0]++, epoch, id);
+            } else if (heapIds.length > 0 && isOlder(heapEpochs[0], heapIds[0], epoch, id)) {
+                siftDown(heapEpochs, heapIds, size[0], epoch, id);
+            }
+        });
+        int[] ids = new int[size[0]];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = heapIds[0];
+            int last = --size[0];
+            siftDown(heapEpochs, heapIds, last, heapEpochs[last], heapIds[last]);
+        }
+        return ids;
+    }
+
+    /**
+     * @return True if the first match ranks before (is older than) the second.
+     */
+    private static boolean isOlder(long epoch, int id, long otherEpoch, int otherId) {
+        return epoch != otherEpoch ? epoch < otherEpoch : id < otherId;
+    }
+
+    /**
+     * Places a match at the given free slot at the end of the heap and moves it up to its place.
+     */
+    private static void siftUp(long[] heapEpochs, int[] heapIds, int slot, long epoch, int id) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!isOlder(epoch, id, heapEpochs[parent], heapIds[parent])) {
+                break;
+            }
+            heapEpochs[slot] = heapEpochs[parent];
+            heapIds[slot] = heapIds[parent];
+            slot = parent;
+        }
+        heapEpochs[slot] = epoch;
+        heapIds[slot] = id;
+    }
+
+    /**
+     * Replaces the root of a heap of the given size with a match and moves it down to its place.
+     */
+    private static void siftDown(long[] heapEpochs, int[] heapIds, int size, long epoch, int id) {
+        int slot = 0;
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isOlder(heapEpochs[child + 1], heapIds[child + 1], heapEpochs[child], heapIds[child])) {
+                child++;
+            }
+            if (!isOlder(heapEpochs[child], heapIds[child], epoch, id)) {
+                break;
+            }
+            heapEpochs[slot] = heapEpochs[child];
+            heapIds[slot] = heapIds[child];
+            slot = child;
+        }
+        if (size > 0) {
+            heapEpochs[slot] = epoch;
+            heapIds[slot] = id;
+        }
+    }
+
+    /**
+     * Splits a query into terms with the same rules as message texts. A trailing * on a word makes the last term of
+     * that word a prefix.
+     */
+    private static void parseQuery(String query, List<String> terms, List<Boolean> prefixes) {
+        if (query == null) {
+            return;
+        }
+        for (String word : query.trim().split("\\s+")) {
+            List<String> wordTerms = terms(word);
+            for (int i = 0; i < wordTerms.size(); i++) {
+                terms.add(wordTerms.get(i));
+                prefixes.add(i == wordTerms.size() - 1 && word.endsWith("*"));
+            }
+        }
+    }
+}
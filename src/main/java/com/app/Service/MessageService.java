@@ -1,20 +1,134 @@
 package com.app.Service;
 
+import com.app.Model.BatchItemResult;
 import com.app.Model.Message;
+import com.app.Model.MessagePage;
 import com.app.DAO.MessageDAO;
 import com.app.DAO.AccountDAO;
+import com.app.Util.LruCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 public class MessageService {
+    /**
+     * Page size used when a paginated request does not specify one, and the largest page size allowed.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The largest number of messages accepted in one batch upload.
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * Size and time-to-live of the message cache. They can be overridden with system properties,
+     * e.g. -Dapp.cache.messages.maxSize=50000 -Dapp.cache.messages.ttlMillis=60000 (a TTL of 0 disables expiry).
+     */
+    private static final int MESSAGE_CACHE_SIZE = Integer.getInteger("app.cache.messages.maxSize", 10000);
+    private static final long MESSAGE_CACHE_TTL_MILLIS = Long.getLong("app.cache.messages.ttlMillis", 0);
+
+    /**
+     * Write-behind mode for new messages, off by default. Enabled with -Dapp.messages.writeBehind=true, and sized with
+     * app.messages.writeBehind.queueCapacity, app.messages.writeBehind.maxBatchSize and app.messages.writeBehind.idBlockSize.
+     */
+    private static final boolean WRITE_BEHIND = Boolean.getBoolean("app.messages.writeBehind");
+    private static final int WRITE_BEHIND_QUEUE_CAPACITY = Integer.getInteger("app.messages.writeBehind.queueCapacity", 10000);
+    private static final int WRITE_BEHIND_MAX_BATCH_SIZE = Integer.getInteger("app.messages.writeBehind.maxBatchSize", 500);
+    private static final int WRITE_BEHIND_ID_BLOCK_SIZE = Integer.getInteger("app.messages.writeBehind.idBlockSize", 100);
+
+    /**
+     * Sizing of the live message feed: the events waiting to be fanned out, the events a subscriber may fall behind
+     * before it is dropped, the number of subscribers and the keep-alive interval. Overridden with
+     * app.feed.dispatchQueueCapacity, app.feed.subscriberQueueCapacity, app.feed.maxSubscribers and app.feed.keepAliveMillis.
+     */
+    private static final int FEED_DISPATCH_QUEUE_CAPACITY = Integer.getInteger("app.feed.dispatchQueueCapacity", 10000);
+    private static final int FEED_SUBSCRIBER_QUEUE_CAPACITY = Integer.getInteger("app.feed.subscriberQueueCapacity", 256);
+    private static final int FEED_MAX_SUBSCRIBERS = Integer.getInteger("app.feed.maxSubscribers", 10000);
+    private static final long FEED_KEEP_ALIVE_MILLIS = Long.getLong("app.feed.keepAliveMillis", 15000);
+
+    /**
+     * The number of most recent messages kept in memory for time range queries, set with
+     * -Dapp.messages.recentWindowSize (0 sends every time range query to the database).
+     */
+    private static final int RECENT_WINDOW_SIZE = Integer.getInteger("app.messages.recentWindowSize", 10000);
+
     private MessageDAO messageDAO;
     private AccountDAO accountDAO;
 
+    /**
+     * Index of known accounts, used to validate posted_by without a database round trip.
+     */
+    private final AccountIndex accountIndex;
+
+    /**
+     * Read-through cache of messages keyed by message_id. Every write in this service updates or invalidates it,
+     * so reads of a message that has not changed do not reach the database.
+     */
+    private final LruCache<Integer, Message> messageCache;
+
+    /**
+     * The write-behind pipeline new messages are queued on, or null when messages are inserted synchronously.
+     */
+    private final MessageWriteBehind writeBehind;
+
+    /**
+     * Per-account timelines of message IDs sorted by time, used to serve newest-first pages of an account's messages.
+     */
+    private final AccountTimelineIndex timelineIndex;
+
+    /**
+     * Inverted index of message texts, used to serve word and prefix searches without scanning the message table.
+     */
+    private final MessageSearchIndex searchIndex;
+
+    /**
+     * The most recent messages in time order, used to serve recent time ranges, or null when disabled.
+     */
+    private final RecentMessageWindow recentWindow;
+
+    /**
+     * Message counts per account, hour and day, updated by every post and delete in this service.
+     */
+    private final MessageStats stats;
+
+    /**
+     * Versions of messages and account timelines, bumped after every write, used for ETags and conditional GETs.
+     */
+    private final VersionTracker versionTracker = new VersionTracker();
+
+    /**
+     * Number of locks serializing the writes to existing messages, a power of two.
+     */
+    private static final int MESSAGE_LOCK_STRIPES = 64;
+
+    /**
+     * Locks held by updateMessage() and deleteMessage() around the database write and the cache and index changes that
+     * follow it, selected by message_id. Two writes to the same message then apply those changes in the order they
+     * reached the database, so an update that lost the race to a delete cannot put the message back.
+     */
+    private final Object[] messageLocks = newMessageLocks();
+
+    /**
+     * Bus the changes made through this service are published on, for the live message feeds.
+     */
+    private final MessageEventBus eventBus = new MessageEventBus(FEED_DISPATCH_QUEUE_CAPACITY, FEED_SUBSCRIBER_QUEUE_CAPACITY,
+            FEED_MAX_SUBSCRIBERS, FEED_KEEP_ALIVE_MILLIS);
+
     /**
      * Default constructor: initializes DAOs for Message and Account.
+     * The message store is the one selected with -Dapp.messageStore, see MessageDAO.create().
      */
     public MessageService(){
-        messageDAO = new MessageDAO();
-        accountDAO = new AccountDAO();
+        this(MessageDAO.create(), new AccountDAO());
     }
 
     /**
@@ -24,18 +138,116 @@ public class MessageService {
      * @param accountDAO The Data Access Object for accounts.
      */
     public MessageService(MessageDAO messageDAO, AccountDAO accountDAO){
+        this(messageDAO, accountDAO, new AccountIndex(accountDAO));
+    }
+
+    /**
+     * Constructor to inject the DAOs and an AccountIndex shared with the AccountService.
+     *
+     * @param messageDAO The Data Access Object for messages.
+     * @param accountDAO The Data Access Object for accounts.
+     * @param accountIndex The index of known accounts.
+     */
+    public MessageService(MessageDAO messageDAO, AccountDAO accountDAO, AccountIndex accountIndex){
+        this(messageDAO, accountDAO, accountIndex, new LruCache<>(MESSAGE_CACHE_SIZE, MESSAGE_CACHE_TTL_MILLIS));
+    }
+
+    /**
+     * Constructor to inject the DAOs, the account index and the message cache.
+     *
+     * @param messageDAO The Data Access Object for messages.
+     * @param accountDAO The Data Access Object for accounts.
+     * @param accountIndex The index of known accounts.
+     * @param messageCache The cache of messages keyed by message_id.
+     */
+    public MessageService(MessageDAO messageDAO, AccountDAO accountDAO, AccountIndex accountIndex, LruCache<Integer, Message> messageCache){
+        this(messageDAO, accountDAO, accountIndex, messageCache, WRITE_BEHIND
+                ? new MessageWriteBehind(messageDAO, WRITE_BEHIND_QUEUE_CAPACITY, WRITE_BEHIND_MAX_BATCH_SIZE, WRITE_BEHIND_ID_BLOCK_SIZE)
+                : null);
+    }
+
+    /**
+     * Constructor to inject the DAOs, the account index, the message cache and the write-behind pipeline.
+     *
+     * @param messageDAO The Data Access Object for messages.
+     * @param accountDAO The Data Access Object for accounts.
+     * @param accountIndex The index of known accounts.
+     * @param messageCache The cache of messages keyed by message_id.
+     * @param writeBehind The pipeline new messages are queued on, or null to insert them synchronously.
+     */
+    public MessageService(MessageDAO messageDAO, AccountDAO accountDAO, AccountIndex accountIndex, LruCache<Integer, Message> messageCache,
+                          MessageWriteBehind writeBehind){
         this.messageDAO = messageDAO;
         this.accountDAO = accountDAO;
+        this.accountIndex = accountIndex;
+        this.messageCache = messageCache;
+        this.writeBehind = writeBehind;
+        this.timelineIndex = new AccountTimelineIndex(messageDAO);
+        this.searchIndex = new MessageSearchIndex(messageDAO);
+        // Reading through the parameters rather than this::streamAllMessages, so this does not escape the constructor
+        this.stats = new MessageStats(consumer -> {
+            awaitPendingWrites(writeBehind);
+            messageDAO.forEachMessage(consumer);
+        });
+        this.recentWindow = RECENT_WINDOW_SIZE > 0 ? new RecentMessageWindow(messageDAO, RECENT_WINDOW_SIZE) : null;
+        if (writeBehind != null) {
+            writeBehind.setDroppedListener(droppedListener(timelineIndex, searchIndex, recentWindow, stats, versionTracker, eventBus));
+        }
+    }
+
+    /**
+     * Builds the listener that takes messages the write-behind writer gave up on back out of everything they were
+     * added to when they were queued. It captures the components rather than this, so the writer thread never sees
+     * a service that is still being constructed.
+     *
+     * It runs on the writer thread while flush() callers wait, so it must not take the statistics change lock: a stats
+     * rebuild holds the other side of that lock while it flushes. It does not need it either. The writer finishes the
+     * listener before any flush() covering the batch returns, so a rebuild that is waiting has not read the store yet
+     * and the dropped messages are uncounted from the counters it is about to replace.
+     */
+    private static Consumer<List<Message>> droppedListener(AccountTimelineIndex timelineIndex, MessageSearchIndex searchIndex,
+            RecentMessageWindow recentWindow, MessageStats stats, VersionTracker versionTracker, MessageEventBus eventBus) {
+        return dropped -> {
+            for (Message message : dropped) {
+                timelineIndex.messageRemoved(message);
+                searchIndex.messageRemoved(message);
+                if (recentWindow != null) {
+                    recentWindow.messageRemoved(message);
+                }
+                stats.messageRemoved(message);
+                versionTracker.messageChanged(message);
+                // Feed subscribers were told about the message when it was queued
+                eventBus.publish("deleted", message);
+            }
+        };
     }
 
     /**
      * Posts a new message after validating its content and the user posting it.
      *
      * @param message The Message object containing the message text, posted_by (account), and time posted.
-     * @return The persisted Message object after being saved to the database.
+     * In write-behind mode the message is queued and returned with its final message_id straight away;
+     * it is committed by the writer thread shortly after, see flushWrites().
+     *
+     * @return The persisted (or queued) Message object.
+     * @throws IllegalArgumentException If the message text is invalid or the user does not exist.
+     * @throws RejectedExecutionException In write-behind mode, if the queue is full.
+     */
+    public Message postMessage(Message message) throws IllegalArgumentException, RejectedExecutionException {
+        return postMessage(message, false);
+    }
+
+    /**
+     * Posts a new message after validating its content and, unless the caller already has, the user posting it.
+     *
+     * @param message The Message object containing the message text, posted_by (account), and time posted.
+     * @param postedByVerified True if posted_by is known to be an existing account, e.g. because it is the account of
+     * a valid session token (accounts are never deleted), so the existence check can be skipped.
+     * @return The persisted (or queued) Message object.
      * @throws IllegalArgumentException If the message text is invalid or the user does not exist.
+     * @throws RejectedExecutionException In write-behind mode, if the queue is full.
      */
-    public Message postMessage(Message message) throws IllegalArgumentException {
+    public Message postMessage(Message message, boolean postedByVerified) throws IllegalArgumentException, RejectedExecutionException {
         int postedBy = message.getPosted_by();
         String text = message.getMessage_text();
         long time = message.getTime_posted_epoch();
@@ -45,13 +257,118 @@ public class MessageService {
             throw new IllegalArgumentException(""); // "Message cannot be blank and must be no more than 255 characters long."
         }
 
-        // Validating posted_by to ensure the user exists in the system
-        if (!accountDAO.accountExistsById(postedBy)) {
+        // Validating posted_by to ensure the user exists in the system (answered by the account index when possible)
+        if (!postedByVerified && !accountIndex.accountExists(postedBy)) {
             throw new IllegalArgumentException(""); // "The user posting the message does not exist."
         }
 
-        // Persisting the message in the database
-        return messageDAO.insertMessage(new Message(postedBy, text, time));
+        // Holding the stats change lock across the write and the index updates, so a stats rebuild counts the message once
+        Lock statsLock = stats.changeLock();
+        statsLock.lock();
+        try {
+            if (writeBehind != null) {
+                // Queueing the message; until it is written, getMessageById() finds it in the queue
+                Message queuedMessage = writeBehind.enqueue(new Message(postedBy, text, time));
+                timelineIndex.messageAdded(queuedMessage);
+                searchIndex.messageAdded(queuedMessage);
+                if (recentWindow != null) {
+                    recentWindow.messageAdded(queuedMessage);
+                }
+                stats.messageAdded(queuedMessage);
+                versionTracker.messageChanged(queuedMessage);
+                eventBus.publish("created", queuedMessage);
+                return queuedMessage;
+            }
+
+            // Persisting the message in the database, and caching it since new messages are the most likely to be read
+            Message addedMessage = messageDAO.insertMessage(new Message(postedBy, text, time));
+            if (addedMessage != null) {
+                messageCache.put(addedMessage.getMessage_id(), addedMessage);
+                timelineIndex.messageAdded(addedMessage);
+                searchIndex.messageAdded(addedMessage);
+                if (recentWindow != null) {
+                    recentWindow.messageAdded(addedMessage);
+                }
+                stats.messageAdded(addedMessage);
+                versionTracker.messageChanged(addedMessage);
+                eventBus.publish("created", addedMessage);
+            }
+            return addedMessage;
+        } finally {
+            statsLock.unlock();
+        }
+    }
+
+    /**
+     * Posts a batch of messages. Every item is validated in one pass: the text of each message is checked and all
+     * distinct posted_by IDs are checked together. The valid items are then inserted in a single transaction.
+     *
+     * @param messages The messages to post, in upload order.
+     * @return One result per uploaded item, in upload order, with either the generated message_id or an error.
+     * @throws IllegalArgumentException If the batch is empty or larger than MAX_BATCH_SIZE.
+     * @throws IllegalStateException If the valid items could not be inserted.
+     */
+    public List<BatchItemResult> postMessages(List<Message> messages) throws IllegalArgumentException {
+        if (messages == null || messages.isEmpty() || messages.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(""); // "A batch must contain between 1 and 1000 messages."
+        }
+
+        // Step 1: Checking every distinct posted_by at once
+        Set<Integer> postedByIds = new HashSet<>();
+        for (Message message : messages) {
+            if (message != null) {
+                postedByIds.add(message.getPosted_by());
+            }
+        }
+        Set<Integer> existingAccounts = accountIndex.existingAccounts(postedByIds);
+
+        // Step 2: Validating each item, keeping the valid ones for insertion
+        BatchItemResult[] results = new BatchItemResult[messages.size()];
+        List<Message> validMessages = new ArrayList<>(messages.size());
+        List<Integer> validIndexes = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message == null) {
+                results[i] = new BatchItemResult(i, null, "Message must be a JSON object.");
+                continue;
+            }
+            String text = message.getMessage_text();
+            if (text == null || text.isBlank() || text.length() > 255) {
+                results[i] = new BatchItemResult(i, null, "Message cannot be blank and must be no more than 255 characters long.");
+            } else if (!existingAccounts.contains(message.getPosted_by())) {
+                results[i] = new BatchItemResult(i, null, "The user posting the message does not exist.");
+            } else {
+                validMessages.add(new Message(message.getPosted_by(), text, message.getTime_posted_epoch()));
+                validIndexes.add(i);
+            }
+        }
+
+        // Step 3: Inserting the valid items in one transaction
+        if (!validMessages.isEmpty()) {
+            Lock statsLock = stats.changeLock();
+            statsLock.lock();
+            try {
+                List<Message> insertedMessages = messageDAO.insertMessages(validMessages);
+                if (insertedMessages == null) {
+                    throw new IllegalStateException("The batch could not be inserted.");
+                }
+                for (int i = 0; i < insertedMessages.size(); i++) {
+                    int index = validIndexes.get(i);
+                    results[index] = new BatchItemResult(index, insertedMessages.get(i).getMessage_id(), null);
+                    timelineIndex.messageAdded(insertedMessages.get(i));
+                    searchIndex.messageAdded(insertedMessages.get(i));
+                    if (recentWindow != null) {
+                        recentWindow.messageAdded(insertedMessages.get(i));
+                    }
+                    stats.messageAdded(insertedMessages.get(i));
+                    versionTracker.messageChanged(insertedMessages.get(i));
+                    eventBus.publish("created", insertedMessages.get(i));
+                }
+            } finally {
+                statsLock.unlock();
+            }
+        }
+        return Arrays.asList(results);
     }
 
     /**
@@ -60,9 +377,51 @@ public class MessageService {
      * @return A list of all messages.
      */
     public List<Message> getAllMessages() {
+        awaitPendingWrites();
         return messageDAO.getAllMessages();
     }
 
+    /**
+     * Retrieves one page of messages after the given cursor, in message_id order.
+     *
+     * @param afterId The cursor returned with the previous page, or 0 for the first page.
+     * @param limit The page size, between 1 and MAX_PAGE_SIZE.
+     * @return The page, with a next_cursor if more messages follow.
+     * @throws IllegalArgumentException If the cursor or the page size is out of range.
+     */
+    public MessagePage getMessagesPage(int afterId, int limit) throws IllegalArgumentException {
+        validatePage(afterId, limit);
+        awaitPendingWrites();
+        // Fetching one extra row tells us whether another page follows without a COUNT query
+        return toPage(messageDAO.getMessagesAfter(afterId, limit + 1), limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted in a time range, ordered by time_posted_epoch, then message_id.
+     *
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param afterTime The next_cursor_time returned with the previous page, ignored for the first page.
+     * @param afterId The next_cursor returned with the previous page, or 0 for the first page.
+     * @param limit The page size, between 1 and MAX_PAGE_SIZE.
+     * @return The page, with a next_cursor and next_cursor_time to pass as after_id and after_time if more messages
+     * follow.
+     * @throws IllegalArgumentException If the range is reversed or the page size is out of range.
+     */
+    public MessagePage getMessagesPageByTimeRange(long since, long until, long afterTime, int afterId, int limit) throws IllegalArgumentException {
+        return getTimeRangePage(null, since, until, afterTime, afterId, limit);
+    }
+
+    /**
+     * Streams every message to the consumer without materializing the whole table.
+     *
+     * @param consumer Receives each message in message_id order.
+     */
+    public void streamAllMessages(Consumer<Message> consumer) {
+        awaitPendingWrites();
+        messageDAO.forEachMessage(consumer);
+    }
+
     /**
      * Retrieves a specific message by its unique ID.
      *
@@ -70,7 +429,24 @@ public class MessageService {
      * @return The Message object corresponding to the given ID, or null if not found.
      */
     public Message getMessageById(int messageId) {
-        return messageDAO.getMessageByMessageID(messageId);
+        // Taking the stamp before any read, so a write that lands while the database is read keeps the cache
+        long stamp = messageCache.stamp(messageId);
+        Message message = messageCache.get(messageId);
+        if (message == null && writeBehind != null) {
+            // A queued message is removed from the queue only after it has been committed, so checking the queue
+            // before the database never misses a message that is in flight
+            message = writeBehind.getPending(messageId);
+            if (message != null) {
+                return message;
+            }
+        }
+        if (message == null) {
+            // Cache miss: reading from the database and keeping the result for the next request, unless the message
+            // was updated or deleted in the meantime
+            message = messageDAO.getMessageByMessageID(messageId);
+            messageCache.putIfUnchanged(messageId, message, stamp);
+        }
+        return message;
     }
 
     /**
@@ -80,9 +456,101 @@ public class MessageService {
      * @return A list of messages for the specified account (user).
      */
     public List<Message> getMessagesByAccountId(int accountId) {
+        awaitPendingWrites();
         return messageDAO.getAllMessagesByAccountID(accountId);
     }
 
+    /**
+     * Retrieves one page of the messages posted by a specific user, in message_id order.
+     *
+     * @param accountId The unique ID of the account (user) whose messages are to be retrieved.
+     * @param afterId The cursor returned with the previous page, or 0 for the first page.
+     * @param limit The page size, between 1 and MAX_PAGE_SIZE.
+     * @return The page, with a next_cursor if more messages follow.
+     * @throws IllegalArgumentException If the cursor or the page size is out of range.
+     */
+    public MessagePage getMessagesPageByAccountId(int accountId, int afterId, int limit) throws IllegalArgumentException {
+        validatePage(afterId, limit);
+        awaitPendingWrites();
+        return toPage(messageDAO.getMessagesByAccountIDAfter(accountId, afterId, limit + 1), limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user in a time range, ordered by time_posted_epoch,
+     * then message_id.
+     *
+     * @param accountId The unique ID of the account (user) whose messages are to be retrieved.
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param afterTime The next_cursor_time returned with the previous page, ignored for the first page.
+     * @param afterId The next_cursor returned with the previous page, or 0 for the first page.
+     * @param limit The page size, between 1 and MAX_PAGE_SIZE.
+     * @return The page, with a next_cursor and next_cursor_time to pass as after_id and after_time if more messages
+     * follow.
+     * @throws IllegalArgumentException If the range is reversed or the page size is out of range.
+     */
+    public MessagePage getMessagesPageByAccountIdAndTimeRange(int accountId, long since, long until, long afterTime, int afterId, int limit) throws IllegalArgumentException {
+        return getTimeRangePage(accountId, since, until, afterTime, afterId, limit);
+    }
+
+    /**
+     * Retrieves one page of the messages posted by a specific user, newest first (by time_posted_epoch, then message_id).
+     * The page comes from the account's timeline index; the messages on it are then read by ID, from the cache
+     * when possible and with a single DAO call for the rest.
+     *
+     * @param accountId The unique ID of the account (user) whose messages are to be retrieved.
+     * @param beforeId The cursor returned with the previous page, or 0 for the newest messages.
+     * @param limit The page size, between 1 and MAX_PAGE_SIZE.
+     * @return The page, with a next_cursor to pass as before if older messages follow.
+     * @throws IllegalArgumentException If the page size is out of range or the cursor is not a message of this user.
+     */
+    public MessagePage getTimelinePageByAccountId(int accountId, int beforeId, int limit) throws IllegalArgumentException {
+        validatePage(beforeId, limit);
+        awaitPendingWrites();
+        // Asking for one extra ID tells us whether another page follows
+        int[] ids = timelineIndex.newestMessageIds(accountId, beforeId, limit + 1);
+        if (ids == null) {
+            throw new IllegalArgumentException(""); // "before must be the ID of a message posted by this user."
+        }
+        int[] pageIds = Arrays.copyOf(ids, Math.min(ids.length, limit));
+        Integer nextCursor = ids.length > limit ? pageIds[limit - 1] : null;
+        return new MessagePage(getMessagesByIds(pageIds), nextCursor);
+    }
+
+    /**
+     * Searches message texts, newest first (by time_posted_epoch, then message_id). The matching IDs come from the
+     * search index and the messages on the page are then read by ID, so the message table is never scanned.
+     *
+     * @param query The words to search for, all of which must appear; a word ending with * is a prefix.
+     * @param beforeId The cursor returned with the previous page, or 0 for the newest matches.
+     * @param limit The page size, between 1 and MAX_PAGE_SIZE.
+     * @return The page, with a next_cursor to pass as before if older matches follow.
+     * @throws IllegalArgumentException If the query is empty or too long, the page size is out of range or the
+     * cursor is not an existing message.
+     */
+    public MessagePage searchMessages(String query, int beforeId, int limit) throws IllegalArgumentException {
+        validatePage(beforeId, limit);
+        awaitPendingWrites();
+        int[] ids = searchIndex.search(query, beforeId, limit + 1);
+        if (ids == null) {
+            throw new IllegalArgumentException(""); // "before must be the ID of an existing message."
+        }
+        int[] pageIds = Arrays.copyOf(ids, Math.min(ids.length, limit));
+        Integer nextCursor = ids.length > limit ? pageIds[limit - 1] : null;
+        return new MessagePage(getMessagesByIds(pageIds), nextCursor);
+    }
+
+    /**
+     * Streams every message posted by a specific user to the consumer without materializing them.
+     *
+     * @param accountId The unique ID of the account (user) whose messages are to be streamed.
+     * @param consumer Receives each message in message_id order.
+     */
+    public void streamMessagesByAccountId(int accountId, Consumer<Message> consumer) {
+        awaitPendingWrites();
+        messageDAO.forEachMessageByAccountID(accountId, consumer);
+    }
+
     /**
      * Updates an existing message with new content.
      *
@@ -98,17 +566,26 @@ public class MessageService {
             throw new IllegalArgumentException(""); // "Message cannot be blank and must be no more than 255 characters long."
         }
     
-        // Step 2: Checking if the message exists (using DAO method)
-        Message existingMessage = messageDAO.getMessageByMessageID(messageId);
-        if (existingMessage == null) {
-            throw new IllegalArgumentException(""); // "No message found with the given message_id."
+        // Step 2: Updating the message in the database, which returns the updated row in the same statement
+        awaitPendingWrites();
+        synchronized (messageLock(messageId)) {
+            Message updatedMessage = messageDAO.updateMessage(messageId, message);
+            if (updatedMessage == null) {
+                messageCache.invalidate(messageId);
+                throw new IllegalArgumentException(""); // "No message found with the given message_id."
+            }
+
+            // Step 3: Refreshing the cache with the updated message. The author and the time do not change,
+            // so the message keeps its place in the account's timeline
+            messageCache.put(messageId, updatedMessage);
+            searchIndex.messageUpdated(updatedMessage);
+            if (recentWindow != null) {
+                recentWindow.messageUpdated(updatedMessage);
+            }
+            versionTracker.messageChanged(updatedMessage);
+            eventBus.publish("updated", updatedMessage);
+            return updatedMessage;
         }
-    
-        // Step 3: Updating the message in the database
-        messageDAO.updateMessage(messageId, message);
-    
-        // Step 4: Returning the updated message by fetching it from the database
-        return messageDAO.getMessageByMessageID(messageId);
     }
     
     /**
@@ -118,6 +595,232 @@ public class MessageService {
      * @return The deleted Message object, or null if the deletion fails or the message does not exist.
      */
     public Message deleteMessage(int messageId) {
-        return messageDAO.deleteMessageById(messageId);
+        awaitPendingWrites();
+        Lock statsLock = stats.changeLock();
+        statsLock.lock();
+        try {
+            // Taken after the statistics lock, the order every writer that holds both follows
+            synchronized (messageLock(messageId)) {
+                Message deletedMessage = messageDAO.deleteMessageById(messageId);
+                // Invalidating after the delete. A read that loaded the row before it was deleted took its stamp before
+                // this invalidation, so putIfUnchanged() will not put the deleted row back into the cache
+                messageCache.invalidate(messageId);
+                if (deletedMessage != null) {
+                    timelineIndex.messageRemoved(deletedMessage);
+                    searchIndex.messageRemoved(deletedMessage);
+                    if (recentWindow != null) {
+                        recentWindow.messageRemoved(deletedMessage);
+                    }
+                    stats.messageRemoved(deletedMessage);
+                    versionTracker.messageChanged(deletedMessage);
+                    eventBus.publish("deleted", deletedMessage);
+                }
+                return deletedMessage;
+            }
+        } finally {
+            statsLock.unlock();
+        }
+    }
+
+    /**
+     * Exposes the message cache, e.g. to report its hit ratio and eviction count.
+     *
+     * @return The cache of messages keyed by message_id.
+     */
+    public LruCache<Integer, Message> getMessageCache() {
+        return messageCache;
+    }
+
+    /**
+     * Exposes the versions of messages and account timelines, used by the controller for ETags and conditional GETs.
+     *
+     * @return The version tracker updated by every write in this service.
+     */
+    public VersionTracker getVersionTracker() {
+        return versionTracker;
+    }
+
+    /**
+     * Exposes the bus message changes are published on, used by the controller to subscribe live feeds.
+     *
+     * @return The event bus fed by every write in this service.
+     */
+    public MessageEventBus getEventBus() {
+        return eventBus;
+    }
+
+    /**
+     * Exposes the message statistics, used by the controller for the /stats endpoints.
+     *
+     * @return The statistics updated by every post and delete in this service.
+     */
+    public MessageStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Waits until every message queued so far in write-behind mode has been committed. Returns immediately when
+     * messages are inserted synchronously.
+     *
+     * @throws IllegalStateException If some of the queued messages could not be written. They have already been taken
+     * out of the indexes, statistics and feeds.
+     */
+    public void flushWrites() throws IllegalStateException {
+        if (writeBehind == null) {
+            return;
+        }
+        try {
+            writeBehind.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops accepting new messages in write-behind mode and writes out everything already queued.
+     * Also closes the live feeds. Called when the server stops.
+     */
+    public void shutdown() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        eventBus.close();
+    }
+
+    /**
+     * @return The lock serializing the writes to the given message.
+     */
+    private Object messageLock(int messageId) {
+        return messageLocks[(messageId * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(MESSAGE_LOCK_STRIPES))];
+    }
+
+    private static Object[] newMessageLocks() {
+        Object[] locks = new Object[MESSAGE_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    /**
+     * Reads and changes of existing messages go to the database, so in write-behind mode they first wait for the
+     * queued messages to be committed. That keeps them consistent with the messages already acknowledged to clients.
+     */
+    private void awaitPendingWrites() {
+        awaitPendingWrites(writeBehind);
+    }
+
+    /**
+     * Waits for the messages queued on the pipeline, if any, to be committed or dropped.
+     *
+     * @param writeBehind The write-behind pipeline, or null in synchronous mode.
+     */
+    private static void awaitPendingWrites(MessageWriteBehind writeBehind) {
+        if (writeBehind == null) {
+            return;
+        }
+        try {
+            writeBehind.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            // The queue has been drained either way, and the dropped messages are no longer visible anywhere
+        }
+    }
+
+    /**
+     * Reads messages by ID, from the cache when possible and with one DAO call for the ones that are not cached.
+     *
+     * @return The messages that still exist, in the order of the given IDs.
+     */
+    private List<Message> getMessagesByIds(int[] ids) {
+        Message[] found = new Message[ids.length];
+        int[] missing = new int[ids.length];
+        int missingCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            found[i] = messageCache.get(ids[i]);
+            if (found[i] == null) {
+                missing[missingCount++] = ids[i];
+            }
+        }
+        if (missingCount > 0) {
+            // Stamped before the read, so rows changed while it runs are not cached
+            long[] stamps = new long[missingCount];
+            for (int i = 0; i < missingCount; i++) {
+                stamps[i] = messageCache.stamp(missing[i]);
+            }
+            Map<Integer, Message> loaded = new HashMap<>();
+            for (Message message : messageDAO.getMessagesByIds(Arrays.copyOf(missing, missingCount))) {
+                loaded.put(message.getMessage_id(), message);
+            }
+            for (int i = 0; i < missingCount; i++) {
+                messageCache.putIfUnchanged(missing[i], loaded.get(missing[i]), stamps[i]);
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (found[i] == null) {
+                    found[i] = loaded.get(ids[i]);
+                }
+            }
+        }
+        List<Message> messages = new ArrayList<>(ids.length);
+        for (Message message : found) {
+            // A message deleted since its ID was read from the timeline is left out
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Reads one page of a time range, from the recent window when it covers the range and from the database otherwise.
+     * The after_id cursor is turned into a (time_posted_epoch, message_id) position with a lookup of that message.
+     */
+    private MessagePage getTimeRangePage(Integer accountId, long since, long until, long afterTime, int afterId, int limit) {
+        validatePage(afterId, limit);
+        if (since > until) {
+            throw new IllegalArgumentException(""); // "since must not be after until."
+        }
+        awaitPendingWrites();
+        // The cursor carries its own (time_posted_epoch, message_id) position, so it stays valid if that message is
+        // deleted between two pages
+        int startAfterId = 0;
+        if (afterId != 0 && afterTime >= since) {
+            since = afterTime;
+            startAfterId = afterId;
+        }
+        // Fetching one extra message tells us whether another page follows
+        List<Message> messages = recentWindow != null ? recentWindow.range(since, startAfterId, until, accountId, limit + 1) : null;
+        if (messages == null) {
+            messages = accountId == null
+                    ? messageDAO.getMessagesInTimeRange(since, startAfterId, until, limit + 1)
+                    : messageDAO.getMessagesByAccountIDInTimeRange(accountId, since, startAfterId, until, limit + 1);
+        }
+        if (messages.size() <= limit) {
+            return new MessagePage(messages, null, null);
+        }
+        List<Message> page = messages.subList(0, limit);
+        Message last = page.get(limit - 1);
+        return new MessagePage(page, last.getMessage_id(), last.getTime_posted_epoch());
+    }
+
+    /**
+     * Validates the cursor and page size of a paginated request.
+     */
+    private void validatePage(int afterId, int limit) {
+        if (afterId < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(""); // "after_id must not be negative and limit must be between 1 and 1000."
+        }
+    }
+
+    /**
+     * Trims a result fetched with limit + 1 rows down to one page and works out the next cursor.
+     */
+    private MessagePage toPage(List<Message> messages, int limit) {
+        if (messages.size() <= limit) {
+            return new MessagePage(messages, null);
+        }
+        List<Message> page = messages.subList(0, limit);
+        return new MessagePage(page, page.get(limit - 1).getMessage_id());
     }
 }
\ No newline at end of file
@@ -0,0 +1,249 @@
+package com.app.Service;
+
+import com.app.Model.AccountPostCount;
+import com.app.Model.Message;
+import com.app.Model.MessageStatsSummary;
+import com.app.Model.PostCountBucket;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Message statistics kept up to date as messages are posted and deleted, so a dashboard request reads counters instead
+ * of running an aggregate query over the message table.
+ *
+ * Counts are LongAdders, which spread concurrent increments over striped cells: the total, one per account, and one
+ * per hour and per day of time_posted_epoch. The hour and day buckets are kept in skip lists sorted by time, so a
+ * histogram over a range is a sub-map walk. Updating a message changes neither its author nor its time, so only posts
+ * and deletes are counted.
+ *
+ * Top posters need every account's count, so the top MAX_TOP_POSTERS are computed from the per-account counters at
+ * most once per app.stats.topPostersRefreshMillis (1 second by default) and shared by the requests in between.
+ *
+ * The counters are built with one pass over the store on first use, and can be rebuilt the same way at any time.
+ * MessageService holds changeLock() across each write and the update of the counters, and a rebuild takes the other
+ * side of the lock, so every message is counted exactly once: either it was written before the rebuild's pass, or it
+ * is counted into the rebuilt counters after it.
+ */
+public class MessageStats {
+
+    public static final long HOUR_SECONDS = 3600;
+    public static final long DAY_SECONDS = 86400;
+
+    /**
+     * The largest number of top posters or histogram buckets returned by one request.
+     */
+    public static final int MAX_TOP_POSTERS = 100;
+    public static final int MAX_BUCKETS = 1000;
+
+    private static final long TOP_POSTERS_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("app.stats.topPostersRefreshMillis", 1000));
+
+    /**
+     * One generation of counters. A rebuild fills a new one and swaps it in.
+     */
+    private static final class Counters {
+        final LongAdder total = new LongAdder();
+        final ConcurrentHashMap<Integer, LongAdder> byAccount = new ConcurrentHashMap<>();
+        // Keyed by hour and by day number (floorDiv of the epoch by the bucket size)
+        final ConcurrentSkipListMap<Long, LongAdder> byHour = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, LongAdder> byDay = new ConcurrentSkipListMap<>();
+        final long createdAt = System.currentTimeMillis();
+
+        void add(Message message, int delta) {
+            total.add(delta);
+            // Accounts and buckets that drop back to 0 are kept: removing them could lose a concurrent increment
+            byAccount.computeIfAbsent(message.getPosted_by(), id -> new LongAdder()).add(delta);
+            byHour.computeIfAbsent(Math.floorDiv(message.getTime_posted_epoch(), HOUR_SECONDS), hour -> new LongAdder()).add(delta);
+            byDay.computeIfAbsent(Math.floorDiv(message.getTime_posted_epoch(), DAY_SECONDS), day -> new LongAdder()).add(delta);
+        }
+    }
+
+    private record TopPosters(Counters counters, long computedAt, List<AccountPostCount> accounts) {
+    }
+
+    private final Consumer<Consumer<Message>> source;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Counters counters = new Counters();
+    private volatile boolean built;
+    private volatile TopPosters topPosters;
+
+    /**
+     * @param source Feeds every stored message to the consumer it is given, used to build and rebuild the counters.
+     */
+    public MessageStats(Consumer<Consumer<Message>> source) {
+        this.source = source;
+    }
+
+    /**
+     * The lock to hold, shared, across a write to the store and the matching messageAdded() or messageRemoved().
+     * Acquisition only waits while a rebuild is in progress.
+     *
+     * @return The shared side of the rebuild lock.
+     */
+    public Lock changeLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Counts a message that has just been posted.
+     *
+     * @param message The posted message.
+     */
+    public void messageAdded(Message message) {
+        counters.add(message, 1);
+    }
+
+    /**
+     * Uncounts a message that has just been deleted.
+     *
+     * @param message The deleted message.
+     */
+    public void messageRemoved(Message message) {
+        counters.add(message, -1);
+    }
+
+    /**
+     * Recomputes every counter with one pass over the store, e.g. after the store has been changed by another
+     * process. Writes wait until the pass is over.
+     *
+     * @return The rebuilt totals.
+     */
+    public MessageStatsSummary rebuild() {
+        lock.writeLock().lock();
+        try {
+            Counters rebuilt = new Counters();
+            source.accept(message -> rebuilt.add(message, 1));
+            counters = rebuilt;
+            built = true;
+            return summary(rebuilt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The total number of messages and the time of the last rebuild.
+     */
+    public MessageStatsSummary getSummary() {
+        return summary(current());
+    }
+
+    /**
+     * @param accountId The account to count the messages of.
+     * @return The number of messages the account has posted.
+     */
+    public AccountPostCount getAccountPostCount(int accountId) {
+        LongAdder count = current().byAccount.get(accountId);
+        return new AccountPostCount(accountId, count == null ? 0 : count.sum());
+    }
+
+    /**
+     * Returns the accounts that have posted the most messages.
+     *
+     * @param limit The number of accounts, between 1 and MAX_TOP_POSTERS.
+     * @return Up to limit accounts, by descending message count, then ascending account_id.
+     * @throws IllegalArgumentException If the limit is out of range.
+     */
+    public List<AccountPostCount> getTopPosters(int limit) throws IllegalArgumentException {
+        if (limit < 1 || limit > MAX_TOP_POSTERS) {
+            throw new IllegalArgumentException(""); // "limit must be between 1 and 100."
+        }
+        Counters current = current();
+        TopPosters cached = topPosters;
+        long now = System.nanoTime();
+        if (cached == null || cached.counters() != current || now - cached.computedAt() >= TOP_POSTERS_REFRESH_NANOS) {
+            // Concurrent requests may both recompute; the results are equivalent, so either one can be kept
+            cached = new TopPosters(current, now, computeTopPosters(current));
+            topPosters = cached;
+        }
+        return cached.accounts().subList(0, Math.min(limit, cached.accounts().size()));
+    }
+
+    /**
+     * Returns the number of messages posted in each hour or day overlapping a time range. Empty buckets are left out.
+     *
+     * @param bucketSeconds HOUR_SECONDS or DAY_SECONDS.
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param limit The maximum number of buckets, between 1 and MAX_BUCKETS.
+     * @return Up to limit buckets in time order, starting with the earliest.
+     * @throws IllegalArgumentException If the range is reversed or the limit is out of range.
+     */
+    public List<PostCountBucket> getPostCounts(long bucketSeconds, long since, long until, int limit) throws IllegalArgumentException {
+        if (since > until || limit < 1 || limit > MAX_BUCKETS) {
+            throw new IllegalArgumentException(""); // "since must not be after until and limit must be between 1 and 1000."
+        }
+        List<PostCountBucket> buckets = new ArrayList<>();
+        if (since == until) {
+            return buckets;
+        }
+        Counters current = current();
+        ConcurrentSkipListMap<Long, LongAdder> histogram = bucketSeconds == DAY_SECONDS ? current.byDay : current.byHour;
+        long first = Math.floorDiv(since, bucketSeconds);
+        long last = Math.floorDiv(until - 1, bucketSeconds);
+        for (Map.Entry<Long, LongAdder> bucket : histogram.subMap(first, true, last, true).entrySet()) {
+            long count = bucket.getValue().sum();
+            if (count > 0) {
+                buckets.add(new PostCountBucket(bucket.getKey() * bucketSeconds, count));
+                if (buckets.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns the current counters, building them with one pass over the store the first time.
+     */
+    private Counters current() {
+        if (!built) {
+            lock.writeLock().lock();
+            try {
+                if (!built) {
+                    rebuild();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return counters;
+    }
+
+    private static MessageStatsSummary summary(Counters counters) {
+        return new MessageStatsSummary(counters.total.sum(), counters.createdAt);
+    }
+
+    /**
+     * Selects the MAX_TOP_POSTERS accounts with the most messages with a bounded heap.
+     */
+    private static List<AccountPostCount> computeTopPosters(Counters counters) {
+        Comparator<AccountPostCount> byRank = Comparator.comparingLong(AccountPostCount::getMessage_count).reversed()
+                .thenComparingInt(AccountPostCount::getAccount_id);
+        // Lowest-ranked of the kept accounts at the head, so it is the one replaced by a higher-ranked account
+        PriorityQueue<AccountPostCount> top = new PriorityQueue<>(byRank.reversed());
+        counters.byAccount.forEach((accountId, count) -> {
+            long sum = count.sum();
+            if (sum > 0) {
+                top.add(new AccountPostCount(accountId, sum));
+                if (top.size() > MAX_TOP_POSTERS) {
+                    top.poll();
+                }
+            }
+        });
+        List<AccountPostCount> accounts = new ArrayList<>(top);
+        accounts.sort(byRank);
+        return accounts;
+    }
+}
@@ -0,0 +1,326 @@
+package com.app.Service;
+
+import com.app.DAO.MessageDAO;
+import com.app.Model.Message;
+import com.app.Util.DatabaseUnavailableException;
+import com.app.Util.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind pipeline for new messages. Instead of committing each message on the request thread,
+ * MessageService hands validated messages to this class, which:
+ * - gives each message its final message_id from a block of IDs reserved ahead of time from message_id_seq
+ * - puts it on a bounded queue and returns immediately
+ * - lets a single writer thread drain the queue into the database in batches, one commit per batch (group commit)
+ *
+ * A message is only durable once its batch has been committed. flush() waits for that, for every message accepted
+ * before the call. When the queue is full, enqueue() fails fast with a RejectedExecutionException so callers can shed
+ * load (503) instead of piling up. close() stops accepting messages and drains what is already queued.
+ *
+ * A batch that still cannot be committed after MAX_WRITE_ATTEMPTS is dropped: the dropped listener is told, so it can
+ * take the messages back out of whatever it added them to, and a flush() waiting for any of them fails. The listener
+ * runs on the writer thread while flushes wait, so it must not block on locks their callers hold, see
+ * setDroppedListener().
+ *
+ * Until it has been written, a message can still be read by ID through getPending().
+ */
+public class MessageWriteBehind implements AutoCloseable {
+
+    /**
+     * How many times the writer tries to commit a batch before giving up on it.
+     */
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final MessageDAO messageDAO;
+    private final BlockingQueue<Message> queue;
+    private final int maxBatchSize;
+    private final int idBlockSize;
+
+    /**
+     * Queued messages by message_id, so they can be read before they reach the database.
+     */
+    private final ConcurrentHashMap<Integer, Message> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Guards ID assignment and enqueueing, so messages are counted in the same order as they are queued.
+     * A ReentrantLock rather than synchronized, so a virtual thread refilling the ID block does not pin its carrier.
+     */
+    private final ReentrantLock enqueueLock = new ReentrantLock();
+    private int[] idBlock = new int[0];
+    private int idBlockPosition;
+    private long accepted;
+
+    /**
+     * The number of queued messages the writer has finished with (committed or given up on), and the condition
+     * flush() waits on for it to catch up with the number of accepted messages.
+     */
+    private final ReentrantLock writtenLock = new ReentrantLock();
+    private final Condition writtenAdvanced = writtenLock.newCondition();
+    private long processed;
+
+    /**
+     * The positions, in accepted order, of the dropped batches a running flush() may be waiting for, as
+     * {first, last} pairs. Only kept while a flush() is waiting, since a later flush() starts after them.
+     */
+    private final List<long[]> droppedRanges = new ArrayList<>();
+    private int waitingFlushes;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile Consumer<List<Message>> droppedListener = dropped -> { };
+
+    /**
+     * Creates the pipeline and starts its writer thread.
+     *
+     * @param messageDAO The Data Access Object used to reserve IDs and insert batches.
+     * @param queueCapacity The number of messages that may wait to be written before enqueue() rejects new ones.
+     * @param maxBatchSize The maximum number of messages committed together.
+     * @param idBlockSize The number of message IDs reserved from the database at a time.
+     */
+    public MessageWriteBehind(MessageDAO messageDAO, int queueCapacity, int maxBatchSize, int idBlockSize) {
+        if (queueCapacity < 1 || maxBatchSize < 1 || idBlockSize < 1) {
+            throw new IllegalArgumentException("Invalid write-behind sizing: queueCapacity=" + queueCapacity
+                    + ", maxBatchSize=" + maxBatchSize + ", idBlockSize=" + idBlockSize);
+        }
+        this.messageDAO = messageDAO;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.idBlockSize = idBlockSize;
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("app_write_behind_queue_depth", "Messages waiting to be written by the write-behind writer.", "", queue::size);
+        metrics.counter("app_write_behind_written_total", "Messages committed by the write-behind writer.", "", writtenCount::get);
+        metrics.counter("app_write_behind_failed_total", "Messages the write-behind writer could not commit.", "", failedCount::get);
+
+        this.writer = new Thread(this::runWriter, "message-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Assigns the message its message_id and queues it for writing.
+     *
+     * @param message A validated message, without a message_id.
+     * @return The message with its final message_id. It is durable once flush() has returned.
+     * @throws RejectedExecutionException If the queue is full, the pipeline is closed, or no IDs could be reserved.
+     */
+    public Message enqueue(Message message) throws RejectedExecutionException {
+        enqueueLock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("The write-behind queue is closed.");
+            }
+            if (queue.remainingCapacity() == 0) {
+                throw new RejectedExecutionException("The write-behind queue is full.");
+            }
+            Message queued = new Message(nextId(), message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            pending.put(queued.getMessage_id(), queued);
+            // Only this method adds to the queue and it holds the lock, so the capacity checked above is still there
+            queue.add(queued);
+            accepted++;
+            return queued;
+        } finally {
+            enqueueLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a message that has been accepted but not written yet.
+     *
+     * @param messageId The ID of the message.
+     * @return The queued message, or null if there is no such message waiting to be written.
+     */
+    public Message getPending(int messageId) {
+        return pending.get(messageId);
+    }
+
+    /**
+     * Sets the listener called on the writer thread with every batch that is given up on.
+     *
+     * The listener runs before the batch counts as processed, so a flush() waiting for the batch only returns (and
+     * fails) once the listener has taken the messages back out; a caller that sees the failure never sees them.
+     * In exchange, the listener must not block on any lock that a thread calling flush() may hold while it waits: the
+     * writer would never finish the batch, and the flush would wait forever. It should also return quickly, since
+     * no later batch is written until it does. An exception it throws is logged and ignored.
+     *
+     * @param listener Receives the dropped messages.
+     */
+    public void setDroppedListener(Consumer<List<Message>> listener) {
+        this.droppedListener = listener;
+    }
+
+    /**
+     * Waits until every message accepted before this call has been committed, or given up on after repeated failures.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     * @throws IllegalStateException If any of those messages was dropped, or the writer thread stopped before
+     * writing them.
+     */
+    public void flush() throws InterruptedException, IllegalStateException {
+        long target;
+        enqueueLock.lock();
+        try {
+            target = accepted;
+        } finally {
+            enqueueLock.unlock();
+        }
+        writtenLock.lock();
+        try {
+            // Messages finished before this call are not waited for, so neither are their failures reported
+            long start = processed;
+            waitingFlushes++;
+            try {
+                while (processed < target && writer.isAlive()) {
+                    writtenAdvanced.await(100, TimeUnit.MILLISECONDS);
+                }
+                long dropped = 0;
+                for (long[] range : droppedRanges) {
+                    dropped += Math.max(0, Math.min(range[1], target) - Math.max(range[0], start + 1) + 1);
+                }
+                if (dropped > 0 || processed < target) {
+                    throw new IllegalStateException((dropped + target - Math.min(processed, target))
+                            + " of the messages accepted before the flush could not be written.");
+                }
+            } finally {
+                if (--waitingFlushes == 0) {
+                    droppedRanges.clear();
+                }
+            }
+        } finally {
+            writtenLock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting messages, writes everything already queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        enqueueLock.lock();
+        try {
+            closed = true;
+        } finally {
+            enqueueLock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The number of messages waiting to be written.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Hands out the next reserved ID, reserving a new block from the database when the current one is used up.
+     * Called with enqueueLock held.
+     */
+    private int nextId() {
+        if (idBlockPosition == idBlock.length) {
+            int[] block = messageDAO.allocateMessageIds(idBlockSize);
+            if (block == null) {
+                throw new RejectedExecutionException("Could not reserve message IDs.");
+            }
+            idBlock = block;
+            idBlockPosition = 0;
+        }
+        return idBlock[idBlockPosition++];
+    }
+
+    /**
+     * The writer loop: takes whatever is queued, up to maxBatchSize messages, and commits it as one batch.
+     * Under load batches fill up and the commit cost is shared by many messages; when idle, a single message is
+     * written as soon as it arrives. Exits once the pipeline is closed and the queue is empty.
+     */
+    private void runWriter() {
+        List<Message> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            Message first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, so that nothing accepted is left behind
+                continue;
+            }
+            if (first == null) {
+                if (closed && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Message> batch) {
+        boolean written = false;
+        boolean interrupted = false;
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS && !written && !interrupted; attempt++) {
+            try {
+                written = messageDAO.insertMessagesWithIds(batch);
+            } catch (DatabaseUnavailableException e) {
+                // No connection was free, which counts as a failed attempt like any other
+                System.out.println(e.getMessage());
+            }
+            if (!written && attempt < MAX_WRITE_ATTEMPTS) {
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException e) {
+                    // Giving up on the batch; the next poll of the queue clears the interrupt
+                    Thread.currentThread().interrupt();
+                    interrupted = true;
+                }
+            }
+        }
+        if (written) {
+            writtenCount.addAndGet(batch.size());
+        } else {
+            failedCount.addAndGet(batch.size());
+            System.out.println("Write-behind: giving up on a batch of " + batch.size() + " messages");
+            // Before processed advances, so a failing flush() returns after the messages have been taken back out.
+            // That is why the listener must not wait on a lock a flushing thread may hold
+            try {
+                droppedListener.accept(batch);
+            } catch (RuntimeException e) {
+                // The writer must keep going whatever the listener does
+                System.out.println(e.getMessage());
+            }
+        }
+        for (Message message : batch) {
+            pending.remove(message.getMessage_id());
+        }
+
+        writtenLock.lock();
+        try {
+            if (!written && waitingFlushes > 0) {
+                droppedRanges.add(new long[] { processed + 1, processed + batch.size() });
+            }
+            processed += batch.size();
+            writtenAdvanced.signalAll();
+        } finally {
+            writtenLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.app.Service;
+
+import com.app.DAO.MessageDAO;
+import com.app.Model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The most recently posted messages, kept in memory in a skip list sorted by (time_posted_epoch, message_id), so time
+ * range queries over recent messages, the common case for "what happened since", do not reach the database.
+ *
+ * The window holds every message that sorts after its floor, and at most capacity messages: when a newer message
+ * pushes the count over capacity, the oldest one is dropped and becomes the floor. A query whose range starts after
+ * the floor is answered from the window alone; any other query goes to the database and its time index.
+ *
+ * The window is loaded on first use with the newest messages from the database. MessageService reports every change
+ * to it, also before the load, so a message queued in write-behind mode, which the database does not have yet, is not
+ * missed. Reads walk the skip list without locking; changes are serialized on the window's monitor.
+ */
+public class RecentMessageWindow {
+
+    /**
+     * The position of a message in time order.
+     */
+    private record Key(long epoch, int id) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byEpoch = Long.compare(epoch, other.epoch);
+            return byEpoch != 0 ? byEpoch : Integer.compare(id, other.id);
+        }
+
+        static Key of(Message message) {
+            return new Key(message.getTime_posted_epoch(), message.getMessage_id());
+        }
+
+        static Key max(Key a, Key b) {
+            return a.compareTo(b) >= 0 ? a : b;
+        }
+    }
+
+    private static final Key LOWEST = new Key(Long.MIN_VALUE, Integer.MIN_VALUE);
+
+    private final MessageDAO messageDAO;
+    private final int capacity;
+    private final ConcurrentSkipListMap<Key, Message> messages = new ConcurrentSkipListMap<>();
+
+    // Guarded by this. ConcurrentSkipListMap.size() walks the whole map, so the count is kept here
+    private int count;
+    private Key trimmedUpTo = LOWEST;
+
+    /**
+     * The window holds every message with a greater key. Null until the window is loaded.
+     */
+    private volatile Key floor;
+
+    /**
+     * @param messageDAO The Data Access Object used to load the window on first use.
+     * @param capacity The largest number of messages kept.
+     */
+    public RecentMessageWindow(MessageDAO messageDAO, int capacity) {
+        this.messageDAO = messageDAO;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Reads one page of a time range from the window, if the window covers the whole range.
+     *
+     * @param since The start of the range (inclusive), in epoch seconds.
+     * @param afterId 0 for the first page, or the ID of a message posted at since, to start after it.
+     * @param until The end of the range (exclusive), in epoch seconds.
+     * @param accountId The account whose messages are read, or null for every account.
+     * @param limit The maximum number of messages to return.
+     * @return Up to limit messages in time order, or null if the range starts before the window.
+     */
+    public List<Message> range(long since, int afterId, long until, Integer accountId, int limit) {
+        load();
+        Key start = new Key(since, afterId);
+        if (start.compareTo(floor) < 0) {
+            return null;
+        }
+        List<Message> page = new ArrayList<>(Math.min(limit, 64));
+        for (Message message : messages.tailMap(start, false).values()) {
+            if (message.getTime_posted_epoch() >= until || page.size() == limit) {
+                break;
+            }
+            if (accountId == null || message.getPosted_by() == accountId) {
+                page.add(message);
+            }
+        }
+        // The floor is raised before the oldest message is dropped, so a page that lost a message to a concurrent
+        // trim always sees the new floor here
+        return start.compareTo(floor) < 0 ? null : page;
+    }
+
+    /**
+     * Adds a message that has just been posted, if it is recent enough for the window.
+     *
+     * @param message The posted message, with its message_id.
+     */
+    public synchronized void messageAdded(Message message) {
+        Key key = Key.of(message);
+        if (floor != null && key.compareTo(floor) <= 0) {
+            return;
+        }
+        if (messages.put(key, message) == null) {
+            count++;
+        }
+        trim();
+    }
+
+    /**
+     * Replaces a message whose text has just been updated, if it is in the window.
+     *
+     * @param message The updated message.
+     */
+    public synchronized void messageUpdated(Message message) {
+        messages.replace(Key.of(message), message);
+    }
+
+    /**
+     * Removes a message that has just been deleted, if it is in the window. The floor stays where it is.
+     *
+     * @param message The deleted message.
+     */
+    public synchronized void messageRemoved(Message message) {
+        if (messages.remove(Key.of(message)) != null) {
+            count--;
+        }
+    }
+
+    /**
+     * Loads the newest messages from the database the first time the window is read. Messages reported before the
+     * load are kept if they are newer than what the database returned.
+     */
+    private void load() {
+        if (floor != null) {
+            return;
+        }
+        synchronized (this) {
+            if (floor != null) {
+                return;
+            }
+            // Reading one message more than fits, so the window knows where it starts
+            List<Message> newest = messageDAO.getLatestMessages(capacity + 1);
+            Key loadedFloor = newest.size() > capacity ? Key.of(newest.get(capacity)) : LOWEST;
+            Key start = Key.max(loadedFloor, trimmedUpTo);
+            while (!messages.isEmpty() && messages.firstKey().compareTo(start) <= 0) {
+                messages.pollFirstEntry();
+                count--;
+            }
+            for (int i = 0; i < Math.min(capacity, newest.size()); i++) {
+                Message message = newest.get(i);
+                Key key = Key.of(message);
+                if (key.compareTo(start) > 0 && messages.putIfAbsent(key, message) == null) {
+                    count++;
+                }
+            }
+            trim();
+            floor = Key.max(start, trimmedUpTo);
+        }
+    }
+
+    /**
+     * Drops the oldest messages while there are more than capacity. Requires the monitor.
+     */
+    private void trim() {
+        while (count > capacity) {
+            Key oldest = messages.firstKey();
+            trimmedUpTo = Key.max(trimmedUpTo, oldest);
+            if (floor != null) {
+                floor = trimmedUpTo;
+            }
+            messages.remove(oldest);
+            count--;
+        }
+    }
+}
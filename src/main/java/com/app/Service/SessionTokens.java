@@ -0,0 +1,138 @@
+package com.app.Service;
+
+import com.app.Util.IntLongHashMap;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Stateless session tokens, issued at login and checked on every write without touching the database.
+ *
+ * A token is account_id.issuedAtMillis.expiresAtMillis.signature, where the signature is an HMAC-SHA256 of the first
+ * three fields, in unpadded Base64url. Verifying one is a string split and an HMAC; nothing is stored per token.
+ *
+ * The HMAC key comes from -Dapp.auth.tokenSecret (Base64, so several instances can accept each other's tokens) or is
+ * generated at startup, in which case tokens stop working when the process restarts. Tokens are valid for
+ * app.auth.tokenTtlSeconds (one hour by default).
+ *
+ * Revocation (logout) is per account: the time of the last logout of each account is kept in an IntLongHashMap, and a
+ * token issued at or before it is rejected. That is 12 bytes per account that has logged out, whatever the number of
+ * tokens, and an entry is dropped once every token it could reject has expired anyway.
+ */
+public class SessionTokens {
+
+    private static final String SECRET = System.getProperty("app.auth.tokenSecret");
+    private static final long TOKEN_TTL_MILLIS = Long.getLong("app.auth.tokenTtlSeconds", 3600) * 1000;
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+
+    /**
+     * Last logout time per account_id. Guarded by its own lock, since IntLongHashMap is not thread-safe.
+     */
+    private final IntLongHashMap revokedBefore = new IntLongHashMap(64);
+
+    public SessionTokens() {
+        this(SECRET != null ? Base64.getDecoder().decode(SECRET) : randomKey(), TOKEN_TTL_MILLIS);
+    }
+
+    /**
+     * @param key The HMAC key.
+     * @param ttlMillis How long a token stays valid after it is issued.
+     */
+    public SessionTokens(byte[] key, long ttlMillis) {
+        this.key = new SecretKeySpec(key, "HmacSHA256");
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Issues a token for an account that has just logged in.
+     *
+     * @param accountId The account_id of the account.
+     * @return The signed token.
+     */
+    public String issue(int accountId) {
+        long issuedAt = System.currentTimeMillis();
+        String payload = accountId + "." + issuedAt + "." + (issuedAt + ttlMillis);
+        return payload + "." + sign(payload);
+    }
+
+    /**
+     * Checks a token's signature, expiry and revocation.
+     *
+     * @param token The token sent by the client.
+     * @return The account_id the token was issued to, or -1 if the token is malformed, forged, expired or revoked.
+     */
+    public int verify(String token) {
+        if (token == null) {
+            return -1;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        if (signatureStart < 0) {
+            return -1;
+        }
+        String payload = token.substring(0, signatureStart);
+        byte[] signature = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(signature, token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII))) {
+            return -1;
+        }
+
+        // The signature is ours, so the payload has the format written by issue()
+        String[] fields = payload.split("\\.");
+        int accountId = Integer.parseInt(fields[0]);
+        long issuedAt = Long.parseLong(fields[1]);
+        long expiresAt = Long.parseLong(fields[2]);
+        long now = System.currentTimeMillis();
+        if (now >= expiresAt || isRevoked(accountId, issuedAt, now)) {
+            return -1;
+        }
+        return accountId;
+    }
+
+    /**
+     * Revokes every token issued to an account so far, e.g. when it logs out.
+     *
+     * @param accountId The account_id of the account.
+     */
+    public void revokeAll(int accountId) {
+        long now = System.currentTimeMillis();
+        synchronized (revokedBefore) {
+            revokedBefore.put(accountId, Math.max(now, revokedBefore.get(accountId, 0)));
+        }
+    }
+
+    private boolean isRevoked(int accountId, long issuedAt, long now) {
+        synchronized (revokedBefore) {
+            long revokedAt = revokedBefore.get(accountId, 0);
+            if (revokedAt != 0 && now >= revokedAt + ttlMillis) {
+                // Every token issued before the logout has expired, so the entry is no longer needed
+                revokedBefore.remove(accountId, 0);
+                return false;
+            }
+            return issuedAt <= revokedAt;
+        }
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
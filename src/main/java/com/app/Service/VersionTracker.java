@@ -0,0 +1,102 @@
+package com.app.Service;
+
+import com.app.Model.Message;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks versions of messages and of account timelines, so that GET handlers can send an ETag and a Last-Modified
+ * header and answer a matching If-None-Match with 304 Not Modified before reading anything.
+ *
+ * Every write through MessageService stamps the message and its author's timeline with the next value of a counter.
+ * The stamps are kept in fixed-size arrays indexed by a hash of the ID rather than per ID, so memory does not grow with
+ * the number of messages: two IDs that share a slot share a stamp, which can only make a tag change when it did not
+ * need to (an extra 200), never stay the same after a change.
+ *
+ * Tags include an ID chosen when the tracker is created, so a tag from before a restart never matches. Resources
+ * not written since then are reported with the creation time as their Last-Modified time.
+ *
+ * The stamp must be taken after the write is visible to readers, and read before the data it describes, so that
+ * a tag is never paired with data older than the version it names.
+ */
+public class VersionTracker {
+
+    /**
+     * The version of a resource: its stamp, and the same ready to be sent as ETag and Last-Modified.
+     */
+    public record Version(long stamp, String etag, long lastModifiedMillis) {
+    }
+
+    private static final int SLOTS = 1 << 16;
+
+    private final String bootId;
+    private final long bootTimeMillis;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong lastChangeMillis = new AtomicLong();
+
+    private final AtomicLongArray messageStamps = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray messageModified = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray accountStamps = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray accountModified = new AtomicLongArray(SLOTS);
+
+    public VersionTracker() {
+        this.bootId = Long.toHexString(new SecureRandom().nextLong());
+        this.bootTimeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Records that a message was posted, updated or deleted, which also changes its author's timeline.
+     *
+     * @param message The message as written, with its message_id and posted_by.
+     */
+    public void messageChanged(Message message) {
+        long stamp = clock.incrementAndGet();
+        long now = System.currentTimeMillis();
+        stamp(messageStamps, messageModified, message.getMessage_id(), stamp, now);
+        stamp(accountStamps, accountModified, message.getPosted_by(), stamp, now);
+        lastChangeMillis.accumulateAndGet(now, Math::max);
+    }
+
+    /**
+     * @return The current version of the list of all messages, which changes with every write.
+     */
+    public Version listVersion() {
+        long stamp = clock.get();
+        return new Version(stamp, "\"" + bootId + "-l-" + stamp + "\"", Math.max(bootTimeMillis, lastChangeMillis.get()));
+    }
+
+    /**
+     * @return The current version of a message.
+     */
+    public Version messageVersion(int messageId) {
+        return version("m", messageStamps, messageModified, messageId);
+    }
+
+    /**
+     * @return The current version of the list of messages posted by an account.
+     */
+    public Version accountVersion(int accountId) {
+        return version("a", accountStamps, accountModified, accountId);
+    }
+
+    private void stamp(AtomicLongArray stamps, AtomicLongArray modified, int id, long stamp, long now) {
+        int slot = slotOf(id);
+        // Concurrent writers may finish out of order; keeping the highest stamp keeps versions moving forward
+        stamps.accumulateAndGet(slot, stamp, Math::max);
+        modified.accumulateAndGet(slot, now, Math::max);
+    }
+
+    private Version version(String kind, AtomicLongArray stamps, AtomicLongArray modified, int id) {
+        int slot = slotOf(id);
+        long stamp = stamps.get(slot);
+        long lastModified = Math.max(bootTimeMillis, modified.get(slot));
+        return new Version(stamp, "\"" + bootId + "-" + kind + id + "-" + stamp + "\"", lastModified);
+    }
+
+    private static int slotOf(int id) {
+        // Fibonacci hashing, as in IntLongHashMap, so neighbouring IDs land in different slots
+        return (id * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(SLOTS));
+    }
+}
@@ -0,0 +1,100 @@
+package com.app.Util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An adaptive limit on the number of requests in flight, adjusted with AIMD (additive increase, multiplicative
+ * decrease) from the latency of completed requests.
+ *
+ * While requests complete within the target latency and the limit is actually being used, the limit grows by about
+ * one per limit's worth of requests. When a request takes longer than the target, the database is taken to be
+ * saturated and the limit is cut by a fixed factor, at most once per target latency so that one slow burst does not
+ * collapse it. Requests over the limit are rejected straight away, so excess load is shed before it queues up in
+ * front of the connection pool.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // Guarded by this
+    private double limit;
+    private long lastDecrease;
+
+    // Read without the lock by tryAcquire()
+    private volatile int currentLimit;
+
+    /**
+     * @param initialLimit The limit to start from.
+     * @param minLimit The limit is never cut below this.
+     * @param maxLimit The limit never grows above this.
+     * @param targetLatencyMillis Requests slower than this cut the limit.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits: initial=" + initialLimit + ", min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.limit = initialLimit;
+        this.currentLimit = initialLimit;
+        this.lastDecrease = System.nanoTime() - targetLatencyNanos;
+    }
+
+    /**
+     * Admits a request if fewer than the limit are in flight. An admitted request must be followed by release().
+     *
+     * @return True if the request is admitted, false if it should be rejected.
+     */
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > currentLimit) {
+            inFlight.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records the completion of an admitted request and adjusts the limit.
+     *
+     * @param latencyNanos How long the request took.
+     */
+    public void release(long latencyNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (latencyNanos > targetLatencyNanos) {
+                long now = System.nanoTime();
+                if (now - lastDecrease >= targetLatencyNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    lastDecrease = now;
+                }
+            } else if (inFlightBefore * 2 >= limit) {
+                // Only growing while at least half the limit is in use, so an idle period does not inflate it
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            currentLimit = (int) limit;
+        }
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
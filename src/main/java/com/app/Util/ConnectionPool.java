@@ -0,0 +1,558 @@
+package com.app.Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * A small bounded connection pool that sits in front of a DataSource.
+ * Physical connections are opened once and handed out again and again, so the DAOs no longer
+ * pay the connection setup cost on every query.
+ *
+ * Borrowers queue fairly on a semaphore sized to the maximum pool size, connections are validated
+ * before they are handed out, and a housekeeping thread keeps the idle set between its minimum and
+ * maximum size, closes connections above the minimum that have sat idle for too long, and reports
+ * connections that have been held for too long.
+ *
+ * Each physical connection keeps its own {@link StatementCache}, so prepareStatement() calls made by the DAOs
+ * reuse statements that were prepared by earlier borrowers of the same connection.
+ */
+public class ConnectionPool {
+
+    /**
+     * The DataSource used to open new physical connections.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * Sizing of the pool: the number of idle connections kept warm, the number of idle connections
+     * kept at most, and the hard limit on connections open at the same time.
+     */
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxSize;
+
+    /**
+     * How long a borrower waits for a free connection before giving up.
+     */
+    private final long borrowTimeoutMillis;
+
+    /**
+     * How long a connection may be held before it is reported as a possible leak (0 disables the check).
+     */
+    private final long leakDetectionThresholdMillis;
+
+    /**
+     * How long a connection above the minimum idle count may sit unused before it is closed (0 disables eviction).
+     */
+    private final long idleTimeoutMillis;
+
+    /**
+     * The maximum number of prepared statements cached per physical connection (0 disables the cache).
+     */
+    private final int statementCacheSize;
+
+    /**
+     * Seconds allowed for the validation query run on every borrow.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * One permit per connection. The semaphore is fair, so waiting threads are served in arrival order.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Idle physical connections. Used as a stack so that the most recently used (warmest) connection is reused first.
+     */
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * Connections currently handed out, tracked for leak detection.
+     */
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+
+    // Counters backing the pool metrics
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final StatementCache.Stats statementStats = new StatementCache.Stats();
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+
+    private final ScheduledExecutorService housekeeper;
+
+    /**
+     * Creates a pool and opens the minimum number of idle connections.
+     *
+     * @param dataSource The DataSource used to open physical connections.
+     * @param minIdle The number of idle connections to keep open.
+     * @param maxIdle The maximum number of idle connections kept open; extra connections are closed when returned.
+     * @param maxSize The maximum number of connections open at the same time.
+     * @param borrowTimeoutMillis How long getConnection() waits for a free connection.
+     * @param leakDetectionThresholdMillis How long a connection may be held before a leak is reported, or 0 to disable.
+     * @param idleTimeoutMillis How long a connection above minIdle may stay idle before it is closed, or 0 to disable.
+     * @param statementCacheSize The maximum number of prepared statements cached per connection, or 0 to disable.
+     */
+    public ConnectionPool(DataSource dataSource, int minIdle, int maxIdle, int maxSize,
+                          long borrowTimeoutMillis, long leakDetectionThresholdMillis, long idleTimeoutMillis, int statementCacheSize) {
+        if (maxSize < 1 || minIdle < 0 || maxIdle < minIdle || maxIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool sizing: minIdle=" + minIdle + ", maxIdle=" + maxIdle + ", maxSize=" + maxSize);
+        }
+        this.dataSource = dataSource;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        // Running housekeeping on a daemon thread so that the pool never keeps the JVM alive
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::houseKeep, 1, 1, TimeUnit.SECONDS);
+
+        fillIdle();
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing the returned connection hands it back to the pool.
+     *
+     * @return A validated connection.
+     * @throws SQLTransientConnectionException If no connection becomes available within the borrow timeout.
+     * @throws SQLException If a new connection cannot be opened.
+     */
+    public Connection getConnection() throws SQLException {
+        // Step 1: Waiting for a permit in arrival order
+        long waitStart = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            borrowWait.recordSince(waitStart);
+            if (!acquired) {
+                borrowTimeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection "
+                        + "(active=" + getActiveConnections() + ", idle=" + getIdleConnections() + ", waiting=" + getWaitingThreads() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        // Step 2: Reusing a valid idle connection, or opening a new one
+        try {
+            PhysicalConnection physical;
+            while ((physical = idle.pollFirst()) != null) {
+                if (isUsable(physical)) {
+                    return lend(physical);
+                }
+                closeQuietly(physical);
+            }
+            return lend(open());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The time borrowers spent waiting for a connection permit, including the ones that timed out.
+     */
+    public LatencyHistogram getBorrowWaitHistogram() {
+        return borrowWait;
+    }
+
+    /**
+     * @return The number of connections currently handed out.
+     */
+    public int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return The number of open connections waiting in the pool.
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * @return An estimate of the number of threads waiting for a connection.
+     */
+    public int getWaitingThreads() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return The number of physical connections currently open.
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return The maximum number of connections open at the same time.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of connections handed out since the pool was created.
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * @return The number of borrowers that gave up waiting for a connection.
+     */
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.get();
+    }
+
+    /**
+     * @return The number of connections reported as possible leaks.
+     */
+    public long getLeaksDetected() {
+        return leaksDetected.get();
+    }
+
+    /**
+     * @return Hit, miss and eviction counts of the prepared statement caches.
+     */
+    public StatementCache.Stats getStatementCacheStats() {
+        return statementStats;
+    }
+
+    /**
+     * Closes every idle connection and stops the housekeeping thread.
+     * Connections still handed out are closed when they are returned.
+     */
+    public void shutdown() {
+        housekeeper.shutdownNow();
+        PhysicalConnection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            closeQuietly(physical);
+        }
+    }
+
+    /**
+     * Wraps a physical connection in a proxy whose close() returns it to the pool.
+     */
+    private Connection lend(PhysicalConnection physical) {
+        PooledConnection pooled = new PooledConnection(physical);
+        borrowed.add(pooled);
+        borrowCount.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, pooled);
+    }
+
+    /**
+     * Takes a connection back from a borrower. Uncommitted work is rolled back so the next borrower starts clean.
+     */
+    private void giveBack(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        PhysicalConnection physical = pooled.physical;
+        try {
+            // Statements the borrower forgot to close go back to the cache
+            pooled.recycleOpenStatements();
+            Connection connection = physical.connection;
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (idle.size() < maxIdle && !connection.isClosed()) {
+                physical.idleSince = System.nanoTime();
+                idle.offerFirst(physical);
+            } else {
+                closeQuietly(physical);
+            }
+        } catch (SQLException e) {
+            // A connection that cannot be reset is not worth keeping
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Validates a connection before it is handed out.
+     */
+    private boolean isUsable(PhysicalConnection physical) {
+        try {
+            return physical.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a new physical connection.
+     */
+    private PhysicalConnection open() throws SQLException {
+        PhysicalConnection physical = new PhysicalConnection(dataSource.getConnection(), new StatementCache(statementCacheSize, statementStats));
+        physical.idleSince = System.nanoTime();
+        totalConnections.incrementAndGet();
+        return physical;
+    }
+
+    private void closeQuietly(PhysicalConnection physical) {
+        try {
+            physical.statements.closeAll();
+            physical.connection.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            totalConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Periodic maintenance: reporting leaks, closing surplus and expired idle connections and topping up to the minimum.
+     */
+    private void houseKeep() {
+        try {
+            if (leakDetectionThresholdMillis > 0) {
+                long now = System.nanoTime();
+                for (PooledConnection pooled : borrowed) {
+                    long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - pooled.borrowedAt);
+                    if (heldMillis > leakDetectionThresholdMillis && !pooled.leakReported) {
+                        // Reporting each leak once, with the stack trace of the code that borrowed the connection
+                        pooled.leakReported = true;
+                        leaksDetected.incrementAndGet();
+                        System.out.println("Possible connection leak: connection held for " + heldMillis + " ms by "
+                                + pooled.borrower.getName() + ", borrowed at:");
+                        pooled.borrowSite.printStackTrace(System.out);
+                    }
+                }
+            }
+            while (idle.size() > maxIdle) {
+                PhysicalConnection physical = idle.pollLast();
+                if (physical == null) break;
+                closeQuietly(physical);
+            }
+            if (idleTimeoutMillis > 0) {
+                evictExpired();
+            }
+            fillIdle();
+        } catch (RuntimeException e) {
+            // Never letting an exception cancel the scheduled task
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes idle connections that have not been borrowed for idleTimeoutMillis, down to minIdle. Borrowers take from
+     * the head of the idle stack, so the connections idle the longest are at the tail.
+     */
+    private void evictExpired() {
+        long now = System.nanoTime();
+        PhysicalConnection oldest;
+        while (idle.size() > minIdle && (oldest = idle.peekLast()) != null
+                && TimeUnit.NANOSECONDS.toMillis(now - oldest.idleSince) > idleTimeoutMillis) {
+            // Removing this exact connection, since a borrower may have taken it after the peek
+            if (idle.removeLastOccurrence(oldest)) {
+                closeQuietly(oldest);
+            }
+        }
+    }
+
+    /**
+     * Opens connections until the minimum number of idle connections is reached, without exceeding the maximum size.
+     */
+    private void fillIdle() {
+        while (idle.size() < minIdle && totalConnections.get() < maxSize && permits.tryAcquire()) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * A physical connection together with the statements prepared on it, and when it last went idle.
+     */
+    private static final class PhysicalConnection {
+        final Connection connection;
+        final StatementCache statements;
+        volatile long idleSince;
+
+        PhysicalConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+    }
+
+    /**
+     * The borrower's view of a physical connection. Every call is forwarded to the physical connection,
+     * except close(), which returns the connection to the pool instead of closing it, and
+     * prepareStatement(sql) / prepareStatement(sql, autoGeneratedKeys), which are served from the statement cache.
+     */
+    private class PooledConnection implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final Set<CachedStatement> openStatements = new HashSet<>();
+        private final long borrowedAt = System.nanoTime();
+        private final Thread borrower = Thread.currentThread();
+        private final Throwable borrowSite;
+        private volatile boolean leakReported;
+        private boolean closed;
+
+        PooledConnection(PhysicalConnection physical) {
+            this.physical = physical;
+            // Capturing the stack trace is only worth its cost when leak detection is enabled
+            this.borrowSite = leakDetectionThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical.connection + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+            }
+            if (method.getName().equals("prepareStatement") && args.length <= 2
+                    && (args.length == 1 || method.getParameterTypes()[1] == int.class)) {
+                // prepareStatement(sql) or prepareStatement(sql, autoGeneratedKeys)
+                int autoGeneratedKeys = args.length == 1 ? Statement.NO_GENERATED_KEYS : (int) args[1];
+                return prepareCached(proxy, new StatementCache.Key((String) args[0], autoGeneratedKeys));
+            }
+            return forward(physical.connection, method, args);
+        }
+
+        /**
+         * Hands out a cached statement for the key, preparing it on the physical connection on a cache miss.
+         */
+        private PreparedStatement prepareCached(Object proxy, StatementCache.Key key) throws SQLException {
+            PreparedStatement statement = physical.statements.take(key);
+            if (statement == null) {
+                statement = physical.connection.prepareStatement(key.sql(), key.autoGeneratedKeys());
+            }
+            CachedStatement cached = new CachedStatement(this, (Connection) proxy, key, statement);
+            openStatements.add(cached);
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, cached);
+        }
+
+        /**
+         * Puts every statement still open by the borrower back into the cache.
+         */
+        void recycleOpenStatements() {
+            for (CachedStatement cached : new ArrayList<>(openStatements)) {
+                cached.recycle();
+            }
+        }
+    }
+
+    /**
+     * The borrower's view of a cached prepared statement. close() clears the parameters and puts the statement
+     * back into the connection's cache instead of closing it.
+     */
+    private static class CachedStatement implements InvocationHandler {
+        private final PooledConnection owner;
+        private final Connection connectionProxy;
+        private final StatementCache.Key key;
+        private final PreparedStatement statement;
+        private boolean closed;
+
+        CachedStatement(PooledConnection owner, Connection connectionProxy, StatementCache.Key key, PreparedStatement statement) {
+            this.owner = owner;
+            this.connectionProxy = connectionProxy;
+            this.key = key;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    recycle();
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return connectionProxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + key.sql() + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+            }
+            return forward(statement, method, args);
+        }
+
+        void recycle() {
+            if (closed) return;
+            closed = true;
+            owner.openStatements.remove(this);
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                owner.physical.statements.put(key, statement);
+            } catch (SQLException e) {
+                // A statement that cannot be reset is simply dropped
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    System.out.println(ignored.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Invokes a JDBC method on the real object, rethrowing the original exception.
+     */
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
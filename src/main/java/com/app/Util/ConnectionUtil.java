@@ -1,9 +1,10 @@
 package com.app.Util;
 
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 
 import org.h2.jdbcx.JdbcDataSource;
 import org.h2.tools.RunScript;
@@ -32,43 +33,106 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * Pool sizing. Each value can be overridden with a system property, e.g. -Dapp.db.pool.maxSize=20
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static final int minIdle = Integer.getInteger("app.db.pool.minIdle", 2);
+	private static final int maxIdle = Integer.getInteger("app.db.pool.maxIdle", 10);
+	private static final int maxSize = Integer.getInteger("app.db.pool.maxSize", 10);
 
 	/**
-	 * Static initialization block to establish credentials for DataSource Pool
+	 * How long a DAO call waits for a free connection, and how long a connection may be held before
+	 * it is reported as a possible leak.
+	 */
+	private static final long borrowTimeoutMillis = Long.getLong("app.db.pool.borrowTimeoutMillis", 5000);
+	private static final long leakDetectionThresholdMillis = Long.getLong("app.db.pool.leakDetectionThresholdMillis", 10000);
+
+	/**
+	 * How long a connection above the minimum idle count may stay unused before the pool closes it
+	 */
+	private static final long idleTimeoutMillis = Long.getLong("app.db.pool.idleTimeoutMillis", 60000);
+
+	/**
+	 * The number of prepared statements cached per pooled connection, so the DAOs reuse compiled plans
+	 */
+	private static final int statementCacheSize = Integer.getInteger("app.db.pool.statementCacheSize", 32);
+
+	/**
+	 * Bounded connection pool. Physical connections are opened by the DataSource once and then reused,
+	 * closing a connection returns it to the pool.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * Static initialization block to establish credentials for the DataSource and create the pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
+		pool = new ConnectionPool(dataSource, minIdle, maxIdle, maxSize, borrowTimeoutMillis, leakDetectionThresholdMillis, idleTimeoutMillis, statementCacheSize);
+		registerPoolMetrics();
+	}
+
+	/**
+	 * Publishes the pool metrics on /metrics. The values are read from the pool when the metrics are scraped.
+	 */
+	private static void registerPoolMetrics() {
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		metrics.latency("app_db_connection_wait_seconds", "Time spent waiting for a pooled database connection.", "", pool.getBorrowWaitHistogram());
+		metrics.gauge("app_db_pool_connections", "Pooled database connections by state.", "state=\"active\"", pool::getActiveConnections);
+		metrics.gauge("app_db_pool_connections", "Pooled database connections by state.", "state=\"idle\"", pool::getIdleConnections);
+		metrics.gauge("app_db_pool_waiting_threads", "Threads waiting for a pooled database connection.", "", pool::getWaitingThreads);
+		metrics.counter("app_db_pool_borrow_timeouts_total", "Borrowers that gave up waiting for a database connection.", "", pool::getBorrowTimeouts);
+		metrics.counter("app_db_pool_leaks_detected_total", "Database connections held longer than the leak detection threshold.", "", pool::getLeaksDetected);
+		StatementCache.Stats statements = pool.getStatementCacheStats();
+		metrics.counter("app_db_statement_cache_total", "Prepared statement cache lookups by result.", "result=\"hit\"", statements::getHits);
+		metrics.counter("app_db_statement_cache_total", "Prepared statement cache lookups by result.", "result=\"miss\"", statements::getMisses);
 	}
 
 	/**
 	 * @return an active connection to the database
+	 * @throws SQLTransientConnectionException If no connection became free within the borrow timeout.
+	 * @throws SQLException If a new connection could not be opened.
 	 */
-	public static Connection getConnection() {
-		try {
-			return pool.getConnection();
-		} catch (SQLException e) {
-			e.printStackTrace();
+	public static Connection getConnection() throws SQLException {
+		return pool.getConnection();
+	}
+
+	/**
+	 * Called first in the DAOs' catch blocks: a borrow timeout is rethrown as a DatabaseUnavailableException, which
+	 * the controller answers with 503, while any other SQLException is left to the DAO's usual handling.
+	 *
+	 * @param e The exception caught by the DAO.
+	 * @throws DatabaseUnavailableException If e is a borrow timeout.
+	 */
+	public static void rethrowIfUnavailable(SQLException e) {
+		if (e instanceof SQLTransientConnectionException timeout) {
+			throw new DatabaseUnavailableException(timeout);
 		}
+	}
 
-		return null;
+	/**
+	 * @return the connection pool, for reading its metrics (active, idle and waiting connections)
+	 */
+	public static ConnectionPool getPool() {
+		return pool;
 	}
 
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
 	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * file in resources and then apply the schema migrations on top of it.
+	 * This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
+		// Closing the connection afterwards, otherwise every reset would keep one pooled connection busy
+		try (Connection connection = getConnection();
+				FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql")) {
+			RunScript.execute(connection, sqlReader);
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
+		MigrationRunner.migrate();
 	}
 }
\ No newline at end of file
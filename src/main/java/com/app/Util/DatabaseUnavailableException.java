@@ -0,0 +1,19 @@
+package com.app.Util;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown by the DAOs when no database connection could be borrowed in time, so the request is answered with
+ * 503 Service Unavailable instead of being treated as "not found" or a failed write.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param cause The pool's borrow timeout.
+     */
+    public DatabaseUnavailableException(SQLTransientConnectionException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,306 @@
+package com.app.Util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints in the style of a roaring bitmap, used for the postings of the search index.
+ *
+ * The ints are grouped by their high 16 bits. Each group is stored in a container chosen by its size: a sorted array
+ * of the low 16 bits (2 bytes per int) while it holds at most 4096 ints, and a 65536-bit bitmap (8 KB) above that.
+ * Sparse sets therefore cost about 2 bytes per int, and dense ranges (e.g. a common word in consecutive message IDs)
+ * at most one bit per possible int.
+ *
+ * Not thread-safe: callers synchronize access.
+ */
+public class IntBitmap {
+
+    /**
+     * The largest array container; above it, a bitmap container is smaller.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[1];
+    private Object[] containers = new Object[1];
+    private int containerCount;
+    private int cardinality;
+
+    /**
+     * Sorted low 16 bits of the ints of one group.
+     */
+    private static final class ArrayContainer {
+        char[] values = new char[4];
+        int size;
+    }
+
+    /**
+     * One bit per low 16-bit value of one group.
+     */
+    private static final class BitmapContainer {
+        final long[] words = new long[1024];
+        int size;
+    }
+
+    /**
+     * Adds an int to the set.
+     *
+     * @param value A non-negative int.
+     * @return True if it was not in the set yet.
+     */
+    public boolean add(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, containerCount, high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer());
+        }
+        Object container = containers[index];
+        if (container instanceof ArrayContainer array) {
+            int position = Arrays.binarySearch(array.values, 0, array.size, low);
+            if (position >= 0) {
+                return false;
+            }
+            if (array.size == ARRAY_MAX) {
+                // Converting to a bitmap, which is smaller from here on
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int i = 0; i < array.size; i++) {
+                    bitmap.words[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+                bitmap.size = array.size;
+                containers[index] = bitmap;
+                return addToBitmap(bitmap, low);
+            }
+            position = -position - 1;
+            if (array.size == array.values.length) {
+                array.values = Arrays.copyOf(array.values, Math.min(ARRAY_MAX, array.size * 2));
+            }
+            System.arraycopy(array.values, position, array.values, position + 1, array.size - position);
+            array.values[position] = low;
+            array.size++;
+            cardinality++;
+            return true;
+        }
+        return addToBitmap((BitmapContainer) container, low);
+    }
+
+    /**
+     * Removes an int from the set.
+     *
+     * @param value A non-negative int.
+     * @return True if it was in the set.
+     */
+    public boolean remove(int value) {
+        char high = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, containerCount, high);
+        if (index < 0) {
+            return false;
+        }
+        Object container = containers[index];
+        int remaining;
+        if (container instanceof ArrayContainer array) {
+            int position = Arrays.binarySearch(array.values, 0, array.size, low);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array.values, position + 1, array.values, position, array.size - position - 1);
+            remaining = --array.size;
+        } else {
+            BitmapContainer bitmap = (BitmapContainer) container;
+            long bit = 1L << low;
+            if ((bitmap.words[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bitmap.words[low >>> 6] &= ~bit;
+            remaining = --bitmap.size;
+            if (remaining == ARRAY_MAX) {
+                // Back at the size where an array is smaller
+                containers[index] = toArray(bitmap);
+            }
+        }
+        cardinality--;
+        if (remaining == 0) {
+            System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+            containers[--containerCount] = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return True if the set contains the int.
+     */
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, containerCount, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof ArrayContainer array) {
+            return Arrays.binarySearch(array.values, 0, array.size, low) >= 0;
+        }
+        return (((BitmapContainer) container).words[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * @return The number of ints in the set.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return True if the set is empty.
+     */
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Feeds every int in the set to the consumer, in ascending order.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int c = 0; c < containerCount; c++) {
+            int base = keys[c] << 16;
+            Object container = containers[c];
+            if (container instanceof ArrayContainer array) {
+                for (int i = 0; i < array.size; i++) {
+                    consumer.accept(base | array.values[i]);
+                }
+            } else {
+                long[] words = ((BitmapContainer) container).words;
+                for (int w = 0; w < words.length; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        consumer.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Intersects the two sets group by group: two arrays are merged, an array is probed against a bitmap, and two
+     * bitmaps are ANDed a word at a time, so no int is boxed or added one by one.
+     *
+     * @return A new set of the ints in both this set and the other.
+     */
+    public IntBitmap and(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < containerCount && j < other.containerCount) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object container = and(containers[i], other.containers[j]);
+                if (container != null) {
+                    result.insertContainer(result.containerCount, keys[i], container);
+                    result.cardinality += container instanceof ArrayContainer array ? array.size : ((BitmapContainer) container).size;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds every int of the other set to this one.
+     */
+    public void addAll(IntBitmap other) {
+        other.forEach(this::add);
+    }
+
+    /**
+     * @return The intersection of two containers of the same group, or null if it is empty.
+     */
+    private static Object and(Object first, Object second) {
+        if (first instanceof ArrayContainer a && second instanceof ArrayContainer b) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[Math.min(a.size, b.size)];
+            int i = 0;
+            int j = 0;
+            while (i < a.size && j < b.size) {
+                if (a.values[i] < b.values[j]) {
+                    i++;
+                } else if (a.values[i] > b.values[j]) {
+                    j++;
+                } else {
+                    result.values[result.size++] = a.values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return result.size == 0 ? null : result;
+        }
+        if (first instanceof ArrayContainer || second instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) (first instanceof ArrayContainer ? first : second);
+            long[] words = ((BitmapContainer) (first instanceof ArrayContainer ? second : first)).words;
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[array.size];
+            for (int i = 0; i < array.size; i++) {
+                char low = array.values[i];
+                if ((words[low >>> 6] & (1L << low)) != 0) {
+                    result.values[result.size++] = low;
+                }
+            }
+            return result.size == 0 ? null : result;
+        }
+        long[] a = ((BitmapContainer) first).words;
+        long[] b = ((BitmapContainer) second).words;
+        BitmapContainer result = new BitmapContainer();
+        for (int w = 0; w < a.length; w++) {
+            result.words[w] = a[w] & b[w];
+            result.size += Long.bitCount(result.words[w]);
+        }
+        if (result.size == 0) {
+            return null;
+        }
+        return result.size <= ARRAY_MAX ? toArray(result) : result;
+    }
+
+    /**
+     * @return An array container holding the same values as the bitmap container.
+     */
+    private static ArrayContainer toArray(BitmapContainer bitmap) {
+        ArrayContainer array = new ArrayContainer();
+        array.values = new char[Math.max(4, bitmap.size)];
+        for (int w = 0; w < bitmap.words.length; w++) {
+            long word = bitmap.words[w];
+            while (word != 0) {
+                array.values[array.size++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return array;
+    }
+
+    private boolean addToBitmap(BitmapContainer bitmap, char low) {
+        long bit = 1L << low;
+        if ((bitmap.words[low >>> 6] & bit) != 0) {
+            return false;
+        }
+        bitmap.words[low >>> 6] |= bit;
+        bitmap.size++;
+        cardinality++;
+        return true;
+    }
+
+    private void insertContainer(int index, char high, Object container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = high;
+        containers[index] = container;
+        containerCount++;
+    }
+}
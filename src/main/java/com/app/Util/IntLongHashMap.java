@@ -0,0 +1,165 @@
+package com.app.Util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to long values that stores both in primitive arrays, so lookups and inserts
+ * do not box and the map costs 12 bytes per slot instead of a node object per entry.
+ *
+ * Open addressing with linear probing; removal shifts the following entries back instead of leaving tombstones,
+ * so lookups stay short after many removals. The key 0 is reserved to mark empty slots and cannot be stored
+ * (message IDs start at 1). Not thread-safe: callers synchronize access.
+ */
+public class IntLongHashMap {
+
+    private static final int EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it first grows.
+     */
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @return The value for the key, or missingValue if the key is not in the map.
+     */
+    public long get(int key, long missingValue) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(int key) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     *
+     * @throws IllegalArgumentException If the key is 0.
+     */
+    public void put(int key, long value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("The key 0 cannot be stored");
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Removes the key from the map.
+     *
+     * @return The value that was removed, or missingValue if the key was not in the map.
+     */
+    public long remove(int key, long missingValue) {
+        int slot = slotOf(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                long value = values[slot];
+                shiftBack(slot);
+                size--;
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return The number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left at a removed slot by moving back the entries that probed past it.
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int key = keys[slot];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = slotOf(key);
+            // The entry can fill the gap if its home slot is not cyclically between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private int slotOf(int key) {
+        // Fibonacci hashing: the top bits of the product spread sequential IDs across the table
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.app.Util;
+
+import com.app.Model.Account;
+import com.app.Model.AccountPostCount;
+import com.app.Model.BatchItemResult;
+import com.app.Model.Message;
+import com.app.Model.MessagePage;
+import com.app.Model.MessageStatsSummary;
+import com.app.Model.PostCountBucket;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.javalin.http.ContentType;
+import io.javalin.http.Context;
+import io.javalin.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The JSON codec shared by every handler and registered as Javalin's JsonMapper.
+ *
+ * Jackson caches the serializers and deserializers it builds per ObjectMapper, so creating an ObjectMapper per request
+ * throws that work away every time. This class utilizes the singleton design pattern: one ObjectMapper is configured
+ * once, and ObjectReader/ObjectWriter instances for the model classes are built up front. Readers and writers are
+ * immutable and thread-safe, so they can be used by any number of requests at once.
+ */
+public class JsonCodec implements JsonMapper {
+
+    private static final JsonCodec INSTANCE = new JsonCodec();
+
+    private final ObjectMapper mapper;
+
+    // Pre-built readers and writers for the types the handlers exchange
+    private final ObjectReader accountReader;
+    private final ObjectReader messageReader;
+    private final ObjectReader messageListReader;
+    private final ObjectWriter accountWriter;
+    private final ObjectWriter messageWriter;
+    private final ObjectWriter messageListWriter;
+    private final ObjectWriter messagePageWriter;
+    private final ObjectWriter batchResultListWriter;
+    private final ObjectWriter statsSummaryWriter;
+    private final ObjectWriter accountPostCountWriter;
+    private final ObjectWriter accountPostCountListWriter;
+    private final ObjectWriter postCountBucketListWriter;
+
+    private JsonCodec() {
+        mapper = new ObjectMapper();
+        // Writing into the response stream directly: the generator must not close it, Jetty does that
+        mapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+
+        accountReader = mapper.readerFor(Account.class);
+        messageReader = mapper.readerFor(Message.class);
+        messageListReader = mapper.readerFor(new TypeReference<List<Message>>() {});
+        accountWriter = mapper.writerFor(Account.class);
+        messageWriter = mapper.writerFor(Message.class);
+        messageListWriter = mapper.writerFor(new TypeReference<List<Message>>() {});
+        messagePageWriter = mapper.writerFor(MessagePage.class);
+        batchResultListWriter = mapper.writerFor(new TypeReference<List<BatchItemResult>>() {});
+        statsSummaryWriter = mapper.writerFor(MessageStatsSummary.class);
+        accountPostCountWriter = mapper.writerFor(AccountPostCount.class);
+        accountPostCountListWriter = mapper.writerFor(new TypeReference<List<AccountPostCount>>() {});
+        postCountBucketListWriter = mapper.writerFor(new TypeReference<List<PostCountBucket>>() {});
+    }
+
+    /**
+     * @return The shared codec.
+     */
+    public static JsonCodec getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return The underlying ObjectMapper, for code that needs Jackson directly. It must not be reconfigured.
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * @return The JsonFactory used to create streaming generators.
+     */
+    public JsonFactory getFactory() {
+        return mapper.getFactory();
+    }
+
+    /**
+     * Reads an Account from raw request bytes.
+     *
+     * @param body The request body.
+     * @return The deserialized Account.
+     * @throws IOException If the body is not a valid JSON representation of an Account.
+     */
+    public Account readAccount(byte[] body) throws IOException {
+        return accountReader.readValue(body);
+    }
+
+    /**
+     * Reads a Message from raw request bytes.
+     *
+     * @param body The request body.
+     * @return The deserialized Message.
+     * @throws IOException If the body is not a valid JSON representation of a Message.
+     */
+    public Message readMessage(byte[] body) throws IOException {
+        return messageReader.readValue(body);
+    }
+
+    /**
+     * Reads a JSON array of messages from raw request bytes.
+     *
+     * @param body The request body.
+     * @return The deserialized messages.
+     * @throws IOException If the body is not a valid JSON array of messages.
+     */
+    public List<Message> readMessages(byte[] body) throws IOException {
+        return messageListReader.readValue(body);
+    }
+
+    /**
+     * Reads a batch of messages from raw request bytes, either as a JSON array or as newline-delimited JSON
+     * (one message object per line).
+     *
+     * @param body The request body.
+     * @return The deserialized messages, in upload order.
+     * @throws IOException If the body is neither a JSON array of messages nor a sequence of message objects.
+     */
+    public List<Message> readMessageBatch(byte[] body) throws IOException {
+        for (byte b : body) {
+            if (b == '[') {
+                return messageListReader.readValue(body);
+            }
+            if (!Character.isWhitespace(b)) {
+                break;
+            }
+        }
+        try (MappingIterator<Message> items = messageReader.readValues(body)) {
+            return items.readAll();
+        }
+    }
+
+    /**
+     * Writes an Account straight to the response output stream as JSON.
+     */
+    public void writeAccount(Context ctx, Account account) throws IOException {
+        write(ctx, accountWriter, account);
+    }
+
+    /**
+     * Writes a Message straight to the response output stream as JSON.
+     */
+    public void writeMessage(Context ctx, Message message) throws IOException {
+        write(ctx, messageWriter, message);
+    }
+
+    /**
+     * Writes a list of messages straight to the response output stream as a JSON array.
+     */
+    public void writeMessages(Context ctx, List<Message> messages) throws IOException {
+        write(ctx, messageListWriter, messages);
+    }
+
+    /**
+     * Writes a list of messages to any output stream as a JSON array.
+     */
+    public void writeMessages(OutputStream out, List<Message> messages) throws IOException {
+        messageListWriter.writeValue(out, messages);
+    }
+
+    /**
+     * Writes the per-item results of a batch upload straight to the response output stream as a JSON array.
+     */
+    public void writeBatchResults(Context ctx, List<BatchItemResult> results) throws IOException {
+        write(ctx, batchResultListWriter, results);
+    }
+
+    /**
+     * Writes a page of messages straight to the response output stream as JSON.
+     */
+    public void writeMessagePage(Context ctx, MessagePage page) throws IOException {
+        write(ctx, messagePageWriter, page);
+    }
+
+    /**
+     * Writes the overall message statistics straight to the response output stream as JSON.
+     */
+    public void writeStatsSummary(Context ctx, MessageStatsSummary summary) throws IOException {
+        write(ctx, statsSummaryWriter, summary);
+    }
+
+    /**
+     * Writes the message count of one account straight to the response output stream as JSON.
+     */
+    public void writeAccountPostCount(Context ctx, AccountPostCount count) throws IOException {
+        write(ctx, accountPostCountWriter, count);
+    }
+
+    /**
+     * Writes message counts of accounts straight to the response output stream as a JSON array.
+     */
+    public void writeAccountPostCounts(Context ctx, List<AccountPostCount> counts) throws IOException {
+        write(ctx, accountPostCountListWriter, counts);
+    }
+
+    /**
+     * Writes a histogram of message counts straight to the response output stream as a JSON array.
+     */
+    public void writePostCountBuckets(Context ctx, List<PostCountBucket> buckets) throws IOException {
+        write(ctx, postCountBucketListWriter, buckets);
+    }
+
+    /**
+     * Serializes a value into the response output stream, without building an intermediate String.
+     */
+    private void write(Context ctx, ObjectWriter writer, Object value) throws IOException {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        writer.writeValue(ctx.outputStream(), value);
+    }
+
+    /**
+     * @return A writer for the given type, reusing the pre-built writers for the model types.
+     */
+    private ObjectWriter writerFor(Type type) {
+        if (type == Message.class) return messageWriter;
+        if (type == Account.class) return accountWriter;
+        if (type == MessagePage.class) return messagePageWriter;
+        return mapper.writerFor(mapper.constructType(type));
+    }
+
+    /**
+     * @return A reader for the given type, reusing the pre-built readers for the model types.
+     */
+    private ObjectReader readerFor(Type type) {
+        if (type == Message.class) return messageReader;
+        if (type == Account.class) return accountReader;
+        return mapper.readerFor(mapper.constructType(type));
+    }
+
+    // JsonMapper implementation, used by Javalin for ctx.json(), ctx.bodyAsClass() and friends
+
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String) {
+            // Javalin treats strings as already serialized JSON
+            return (String) obj;
+        }
+        try {
+            return writerFor(type).writeValueAsString(obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        try {
+            return new ByteArrayInputStream(writerFor(type).writeValueAsBytes(obj));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeToOutputStream(Stream<?> stream, OutputStream outputStream) {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            Iterator<?> items = stream.iterator();
+            while (items.hasNext()) {
+                generator.writeObject(items.next());
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.app.Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * Values (in nanoseconds) are counted in buckets whose width grows with the value: every power of two is split into
+ * SUB_BUCKETS equal parts, so any recorded value is reported with a relative error of at most 1 / SUB_BUCKETS (about 3%)
+ * whether it is 50 microseconds or 5 seconds. All buckets are allocated up front, and recording only increments
+ * atomic counters, so record() never allocates and can be called on every request.
+ */
+public class LatencyHistogram {
+
+    /**
+     * log2 of the number of sub-buckets per power of two. 5 bits gives 32 sub-buckets, i.e. about 3% precision.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below 2 * SUB_BUCKETS get a bucket each. Above that, 64 - SUB_BUCKET_BITS - 1 powers of two
+     * with SUB_BUCKETS buckets each cover the whole positive long range.
+     */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value.
+     *
+     * @param nanos The measured duration in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records the time elapsed since a System.nanoTime() reading.
+     *
+     * @param startNanos The System.nanoTime() value taken when the measured work started.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The sum of all recorded values, in nanoseconds.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return The largest recorded value, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Estimates a quantile from the bucket counts. The result is the upper bound of the bucket holding the quantile,
+     * capped at the largest recorded value, so it is never lower than the true value by more than the bucket precision.
+     *
+     * @param quantile The quantile to compute, between 0 and 1 (e.g. 0.99 for p99).
+     * @return The estimated value in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Maps a value to its bucket. Small values map to themselves; larger values keep their top SUB_BUCKET_BITS + 1 bits.
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return The largest value that maps to the given bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
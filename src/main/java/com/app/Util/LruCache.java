@@ -0,0 +1,208 @@
+package com.app.Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded in-process cache with least-recently-used eviction and an optional time-to-live.
+ * It keeps hit, miss and eviction counts so that its effectiveness can be monitored.
+ *
+ * The map is guarded by a single lock. Every operation is a hash lookup plus a relink of the access order,
+ * so the critical section stays short even under concurrent reads.
+ *
+ * A reader that fills the cache after a miss uses stamp() and putIfUnchanged(): every put() and invalidate() advances
+ * the stamp of the key, so a value loaded before a concurrent write is not cached over that write. Stamps are kept per
+ * stripe of keys rather than per key, so they survive the removal of the entry; two keys sharing a stripe only cost a
+ * skipped fill.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type. Values are shared between callers, so they should not be mutated once cached.
+ */
+public class LruCache<K, V> {
+
+    /**
+     * A cached value and the System.nanoTime() after which it is stale.
+     */
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private static final int STAMP_STRIPES = 1024;
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    /**
+     * Access-ordered map, so iteration starts at the least recently used entry.
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Write counts per stripe of keys, and the number of invalidateAll() calls. Guarded by the entries lock.
+     */
+    private final long[] stamps = new long[STAMP_STRIPES];
+    private long clears;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize The maximum number of entries kept.
+     * @param ttlMillis How long an entry stays valid after it is written, or 0 to keep entries until they are evicted.
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Invalid cache configuration: maxSize=" + maxSize + ", ttlMillis=" + ttlMillis);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true);
+    }
+
+    /**
+     * Looks up a value.
+     *
+     * @param key The key to look up.
+     * @return The cached value, or null if it is absent or has expired.
+     */
+    public V get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entry if the cache is full.
+     *
+     * @param key The key.
+     * @param value The value; null values are not cached.
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            invalidate(key);
+            return;
+        }
+        synchronized (entries) {
+            stamps[stripe(key)]++;
+            store(key, value);
+        }
+    }
+
+    /**
+     * Returns the current stamp of a key. A reader takes it before loading the value that it then caches with
+     * putIfUnchanged().
+     *
+     * @param key The key about to be loaded.
+     * @return A stamp that changes with every put() or invalidate() of the key.
+     */
+    public long stamp(K key) {
+        synchronized (entries) {
+            return stamps[stripe(key)] + clears;
+        }
+    }
+
+    /**
+     * Caches a value loaded by a reader, unless the key has been written or invalidated since the stamp was taken,
+     * in which case the value may be older than what the writer left.
+     *
+     * @param key The key.
+     * @param value The loaded value; null values are not cached.
+     * @param stamp The stamp() of the key taken before the value was loaded.
+     * @return True if the value was cached.
+     */
+    public boolean putIfUnchanged(K key, V value, long stamp) {
+        if (value == null) {
+            return false;
+        }
+        synchronized (entries) {
+            if (stamps[stripe(key)] + clears != stamp) {
+                return false;
+            }
+            store(key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a value, e.g. because the underlying data has been deleted.
+     *
+     * @param key The key to remove.
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            stamps[stripe(key)]++;
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes every value.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            clears++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return The number of entries currently cached, including expired entries not yet removed.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Writes an entry, evicting the least recently used entry if the cache is full. Requires the entries lock.
+     */
+    private void store(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STAMP_STRIPES - 1);
+    }
+
+    /**
+     * @return The share of lookups answered from the cache, between 0 and 1 (1 if there have been no lookups yet).
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,193 @@
+package com.app.Util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * The process-wide registry of runtime metrics, rendered in the Prometheus text exposition format on /metrics.
+ *
+ * This class utilizes the singleton design pattern. Metrics are registered once, when a route, a DAO class or the
+ * connection pool is set up, and the returned objects are kept in fields. Recording a value then only touches
+ * pre-allocated atomic counters, so nothing on the request path allocates or looks anything up by name.
+ *
+ * Three kinds of series are supported:
+ * - latency summaries, backed by a LatencyHistogram and reported as p50/p99/p999 plus count and sum
+ * - status code counters, one atomic slot per HTTP status code
+ * - gauges and counters read from a LongSupplier when the metrics are scraped
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    /**
+     * The quantiles reported for every latency summary.
+     */
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /**
+     * A metric family: one name, help text and type, and its series keyed by their rendered label set.
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Counts responses by HTTP status code. Codes outside 100-599 are counted as 599.
+     */
+    public static class StatusCounter {
+        private final AtomicLongArray counts = new AtomicLongArray(600);
+
+        public void increment(int statusCode) {
+            counts.incrementAndGet(statusCode >= 100 && statusCode < 600 ? statusCode : 599);
+        }
+
+        public long get(int statusCode) {
+            return counts.get(statusCode);
+        }
+    }
+
+    // Families sorted by name, so the output is stable between scrapes
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * @return The shared registry.
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the latency histogram of a series, creating it on first use.
+     * Registering the same name and labels twice returns the same histogram.
+     *
+     * @param name The metric name, e.g. app_db_query_duration_seconds.
+     * @param help The help text of the metric family.
+     * @param labels The rendered labels of the series, e.g. method="getAllMessages", or "" for none.
+     * @return The histogram to record into.
+     */
+    public LatencyHistogram latency(String name, String help, String labels) {
+        return (LatencyHistogram) family(name, help, "summary").series.computeIfAbsent(labels, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a latency histogram owned by another component, e.g. the connection pool's borrow wait times.
+     * A later registration with the same name and labels replaces it.
+     */
+    public void latency(String name, String help, String labels, LatencyHistogram histogram) {
+        family(name, help, "summary").series.put(labels, histogram);
+    }
+
+    /**
+     * Returns the status code counter of a series, creating it on first use.
+     *
+     * @param name The metric name, e.g. app_http_requests_total.
+     * @param help The help text of the metric family.
+     * @param labels The rendered labels of the series; a status label is added for each code when rendering.
+     * @return The counter to increment.
+     */
+    public StatusCounter statusCounter(String name, String help, String labels) {
+        return (StatusCounter) family(name, help, "counter").series.computeIfAbsent(labels, key -> new StatusCounter());
+    }
+
+    /**
+     * Registers a gauge read when the metrics are scraped. A later registration with the same name and labels replaces it.
+     */
+    public void gauge(String name, String help, String labels, LongSupplier value) {
+        family(name, help, "gauge").series.put(labels, value);
+    }
+
+    /**
+     * Registers a monotonically increasing counter read when the metrics are scraped.
+     * A later registration with the same name and labels replaces it.
+     */
+    public void counter(String name, String help, String labels, LongSupplier value) {
+        family(name, help, "counter").series.put(labels, value);
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    /**
+     * Renders every registered metric in the Prometheus text exposition format (version 0.0.4).
+     * Latencies are reported in seconds, as Prometheus recommends.
+     *
+     * @return The metrics, one sample per line.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object value = series.getValue();
+                if (value instanceof LatencyHistogram histogram) {
+                    for (double quantile : QUANTILES) {
+                        sample(out, family.name, join(labels, "quantile=\"" + quantile + "\""),
+                                histogram.getValueAtQuantile(quantile) / NANOS_PER_SECOND);
+                    }
+                    sample(out, family.name + "_sum", labels, histogram.getSum() / NANOS_PER_SECOND);
+                    sample(out, family.name + "_count", labels, histogram.getCount());
+                } else if (value instanceof StatusCounter counter) {
+                    for (int status = 100; status < 600; status++) {
+                        long count = counter.get(status);
+                        if (count > 0) {
+                            sample(out, family.name, join(labels, "status=\"" + status + "\""), count);
+                        }
+                    }
+                } else if (value instanceof LongSupplier supplier) {
+                    sample(out, family.name, labels, supplier.getAsLong());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String join(String labels, String extraLabel) {
+        return labels.isEmpty() ? extraLabel : labels + "," + extraLabel;
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Renders one label as name="value", escaping the value as the exposition format requires.
+     */
+    public static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,153 @@
+package com.app.Util;
+
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the versioned schema migrations found in src/main/resources/db/migration.
+ *
+ * Every script is named V<version>__<description>.sql and is applied at most once, in version order, each in its
+ * own transaction. Applied versions are recorded in the schema_version table together with a checksum of the script,
+ * so a script that was edited after it had been applied is reported instead of being silently skipped.
+ *
+ * To add a migration, add the script to db/migration and its file name to MIGRATIONS. Applied scripts must never be
+ * edited, a change to the schema is always a new migration.
+ */
+public class MigrationRunner {
+
+    private static final String MIGRATION_PATH = "db/migration/";
+
+    /**
+     * The migration scripts, in the order they are applied. Listed explicitly because a classpath directory cannot be
+     * listed reliably once the application is packaged in a jar.
+     */
+    private static final List<String> MIGRATIONS = List.of(
+            "V1__baseline.sql",
+            "V2__message_posted_by_index.sql",
+            "V3__message_time_posted_index.sql",
+            "V4__message_id_sequence.sql",
+            "V5__message_posted_by_time_index.sql"
+    );
+
+    private MigrationRunner() {
+    }
+
+    /**
+     * Applies every migration that has not been applied to the database yet.
+     * Safe to call on every startup: when the schema is up to date, this only reads schema_version.
+     *
+     * @return The number of migrations applied by this call.
+     * @throws IllegalStateException If a migration fails, or an applied migration has been edited since.
+     */
+    public static synchronized int migrate() {
+        try (Connection connection = ConnectionUtil.getConnection()) {
+            createVersionTable(connection);
+            Map<Integer, Long> appliedChecksums = readAppliedVersions(connection);
+
+            int applied = 0;
+            for (String fileName : MIGRATIONS) {
+                int version = versionOf(fileName);
+                String script = readScript(fileName);
+                long checksum = checksumOf(script);
+
+                Long appliedChecksum = appliedChecksums.get(version);
+                if (appliedChecksum != null) {
+                    if (appliedChecksum != checksum) {
+                        throw new IllegalStateException("Migration " + fileName + " has been changed after it was applied.");
+                    }
+                    continue;
+                }
+                apply(connection, version, fileName, script, checksum);
+                applied++;
+            }
+            return applied;
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Database migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version int primary key, " +
+                    "script varchar(255) not null, " +
+                    "checksum bigint not null, " +
+                    "installed_on timestamp default current_timestamp)");
+        }
+    }
+
+    private static Map<Integer, Long> readAppliedVersions(Connection connection) throws SQLException {
+        Map<Integer, Long> appliedChecksums = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (resultSet.next()) {
+                appliedChecksums.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+            }
+        }
+        return appliedChecksums;
+    }
+
+    /**
+     * Runs one script and records it in schema_version, in a single transaction.
+     * H2 commits DDL statements implicitly, so the scripts themselves are written to be re-runnable (IF NOT EXISTS).
+     */
+    private static void apply(Connection connection, int version, String fileName, String script, long checksum) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            RunScript.execute(connection, new StringReader(script));
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, script, checksum) VALUES (?, ?, ?)")) {
+                preparedStatement.setInt(1, version);
+                preparedStatement.setString(2, fileName);
+                preparedStatement.setLong(3, checksum);
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + fileName + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Parses the version out of a file name such as V2__message_posted_by_index.sql.
+     */
+    private static int versionOf(String fileName) {
+        int separator = fileName.indexOf("__");
+        if (!fileName.startsWith("V") || separator < 2) {
+            throw new IllegalStateException("Migration file name must look like V<version>__<description>.sql: " + fileName);
+        }
+        return Integer.parseInt(fileName.substring(1, separator));
+    }
+
+    private static String readScript(String fileName) throws IOException {
+        InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(MIGRATION_PATH + fileName);
+        if (in == null) {
+            throw new IOException("Migration script not found on the classpath: " + MIGRATION_PATH + fileName);
+        }
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long checksumOf(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,194 @@
+package com.app.Util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted, deliberately slow password hashing with PBKDF2 (PBKDF2WithHmacSHA512, from the JDK).
+ *
+ * Hashes are stored as pbkdf2-sha512$iterations$salt$hash, with the salt and hash in Base64, so the iteration count
+ * can be raised later: a stored hash with fewer iterations than configured is reported by needsRehash() and can be
+ * replaced the next time its password is seen. A stored password without that prefix is a plaintext password from
+ * before hashing was introduced; it is still accepted, and also reported by needsRehash().
+ *
+ * Hashing and verification take tens of milliseconds of CPU each, so they run on a dedicated pool of
+ * app.passwords.threads threads (half the processors by default) rather than on request threads. The pool's queue holds
+ * at most app.passwords.queueCapacity tasks; when it is full, work is rejected with a RejectedExecutionException
+ * straight away instead of piling up, and the caller answers 503.
+ *
+ * This class utilizes the singleton design pattern, so the pool is shared by the whole process.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha512$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 512;
+
+    /**
+     * The iteration count for new hashes, 210000 by default as recommended for PBKDF2-HMAC-SHA512
+     * (-Dapp.passwords.iterations).
+     */
+    private static final int ITERATIONS = Integer.getInteger("app.passwords.iterations", 210000);
+    private static final int THREADS = Integer.getInteger("app.passwords.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_CAPACITY = Integer.getInteger("app.passwords.queueCapacity", 256);
+
+    private static final PasswordHasher INSTANCE = new PasswordHasher();
+
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * A hash of a random password, verified against when an account does not exist, so that a login for an unknown
+     * username takes as long as one with a wrong password.
+     */
+    private final String dummyHash;
+
+    private PasswordHasher() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException("The password hashing queue is full.");
+                });
+
+        byte[] password = new byte[SALT_BYTES];
+        random.nextBytes(password);
+        this.dummyHash = encode(ITERATIONS, newSalt(), Base64.getEncoder().encodeToString(password));
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("app_password_hash_queue_size", "Password hashing tasks waiting for a thread.", "", () -> executor.getQueue().size());
+        metrics.counter("app_password_hash_rejected_total", "Password hashing tasks rejected because the queue was full.", "", rejected::get);
+    }
+
+    /**
+     * @return The shared hasher.
+     */
+    public static PasswordHasher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Hashes a password with a new random salt, on the hashing pool.
+     *
+     * @param password The plaintext password.
+     * @return The encoded hash to store.
+     * @throws RejectedExecutionException If the hashing queue is full.
+     */
+    public String hash(String password) throws RejectedExecutionException {
+        byte[] salt = newSalt();
+        return run(() -> encode(ITERATIONS, salt, password));
+    }
+
+    /**
+     * Checks a password against a stored hash, on the hashing pool. A legacy plaintext password is compared directly.
+     *
+     * @param password The password entered by the user.
+     * @param stored The stored hash or legacy plaintext password, or null if the account does not exist.
+     * @return True if the password matches, false if it does not or if the stored hash is malformed.
+     * @throws RejectedExecutionException If the hashing queue is full.
+     */
+    public boolean verify(String password, String stored) throws RejectedExecutionException {
+        if (stored == null) {
+            // Doing the same work as for an existing account, then failing
+            verify(password, dummyHash);
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        int iterations;
+        byte[] salt;
+        try {
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Expected 4 fields but found " + parts.length + ".");
+            }
+            iterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            Base64.getDecoder().decode(parts[3]);
+            if (iterations < 1 || salt.length == 0) {
+                throw new IllegalArgumentException("No iterations or no salt.");
+            }
+        } catch (IllegalArgumentException e) {
+            // A corrupted row fails this login rather than the request; NumberFormatException is caught here too
+            System.out.println("Malformed stored password hash: " + e.getMessage());
+            return false;
+        }
+        String computed = run(() -> encode(iterations, salt, password));
+        return MessageDigest.isEqual(computed.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param stored The stored hash or legacy plaintext password.
+     * @return True if it should be replaced with a new hash: it is plaintext or uses fewer iterations than configured.
+     */
+    public boolean needsRehash(String stored) {
+        if (!stored.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < ITERATIONS;
+    }
+
+    /**
+     * @param stored A stored password.
+     * @return True if it is a hash made by this class rather than a legacy plaintext password.
+     */
+    public boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    /**
+     * Runs a hashing task on the pool and waits for its result.
+     */
+    private String run(Callable<String> task) throws RejectedExecutionException {
+        try {
+            return executor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String encode(int iterations, byte[] salt, String password) {
+        try {
+            KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+            byte[] hash = SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+            Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+            return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+        } catch (GeneralSecurityException e) {
+            // PBKDF2WithHmacSHA512 is available on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
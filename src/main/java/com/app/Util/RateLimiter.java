@@ -0,0 +1,108 @@
+package com.app.Util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token bucket rate limiting, e.g. one bucket per client IP or per account.
+ *
+ * Each bucket is a single AtomicLong holding its theoretical arrival time (the generic cell rate algorithm, which is
+ * equivalent to a token bucket): a request is allowed if, after adding one request's worth of time, the bucket is no
+ * more than a full burst ahead of the clock. Taking a token is one compare-and-set, without locks.
+ *
+ * Buckets are kept in a fixed number of ConcurrentHashMap stripes selected by the hash of the key. A bucket that has
+ * been full (idle) for idleMillis carries no state worth keeping, so it is removed. Each stripe is swept on its own,
+ * by whichever request touches it once its sweep is due, so a sweep only ever walks a fraction of the keys.
+ */
+public class RateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private static final class Stripe {
+        final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        final AtomicLong nextSweep;
+
+        Stripe(long nextSweep) {
+            this.nextSweep = new AtomicLong(nextSweep);
+        }
+    }
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long idleNanos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param permitsPerSecond The sustained rate allowed per key.
+     * @param burst The number of requests a key may make at once after being idle.
+     * @param idleMillis How long a full bucket is kept before it is removed.
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long idleMillis) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate limit: permitsPerSecond=" + permitsPerSecond + ", burst=" + burst);
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        long now = System.nanoTime();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(now + idleNanos);
+        }
+    }
+
+    /**
+     * Takes a token from the key's bucket if one is available.
+     *
+     * @param key The client the request is counted against.
+     * @return 0 if the request is allowed, otherwise how many nanoseconds to wait before a token is available.
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        Stripe stripe = stripes[(key.hashCode() * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(STRIPES))];
+        sweepIfDue(stripe, now);
+
+        // A new bucket starts full: its arrival time is the current time
+        AtomicLong bucket = stripe.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long arrival = bucket.get();
+            long next = (arrival - now > 0 ? arrival : now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                rejected.incrementAndGet();
+                return ahead - burstNanos;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return The number of buckets currently kept.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return The number of requests rejected so far.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void sweepIfDue(Stripe stripe, long now) {
+        long due = stripe.nextSweep.get();
+        if (now - due < 0 || !stripe.nextSweep.compareAndSet(due, now + idleNanos)) {
+            return;
+        }
+        // A request racing with the removal may count against the removed bucket, letting one extra request through
+        stripe.buckets.values().removeIf(bucket -> now - bucket.get() > idleNanos);
+    }
+}
@@ -0,0 +1,93 @@
+package com.app.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches one response body, serialized and gzip-compressed ahead of time, for as long as the data it was built from
+ * does not change. The caller identifies the state of the data with a version number (e.g. a VersionTracker stamp);
+ * a request for the same version is answered with the cached byte arrays, without reading or serializing anything.
+ *
+ * Only one thread rebuilds the body at a time; the others wait for it and reuse its result. A body larger than
+ * maxBytes is returned but not kept, so a very large list does not stay pinned in memory.
+ */
+public class ResponseSnapshot {
+
+    /**
+     * A serialized body, and its gzip-compressed form (null if the body is too small to be worth compressing).
+     */
+    public record Payload(long version, byte[] body, byte[] gzipBody) {
+    }
+
+    /**
+     * Builds the body for the current state of the data.
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        byte[] write() throws IOException;
+    }
+
+    private final int maxBytes;
+    private final int compressionMinBytes;
+    private final int gzipLevel;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Payload current;
+
+    /**
+     * @param maxBytes The largest body that is kept.
+     * @param compressionMinBytes The smallest body that is pre-compressed.
+     * @param gzipLevel The gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    public ResponseSnapshot(int maxBytes, int compressionMinBytes, int gzipLevel) {
+        this.maxBytes = maxBytes;
+        this.compressionMinBytes = compressionMinBytes;
+        this.gzipLevel = gzipLevel;
+    }
+
+    /**
+     * Returns the body for the given version, building it with the writer if the cached one is older.
+     *
+     * @param version The version of the data, read before the data itself so the body is never older than it.
+     * @param writer Serializes the current data.
+     * @return The body and its compressed form.
+     * @throws IOException If the writer fails.
+     */
+    public Payload get(long version, BodyWriter writer) throws IOException {
+        Payload payload = current;
+        if (payload != null && payload.version() == version) {
+            return payload;
+        }
+        rebuildLock.lock();
+        try {
+            // Another request may have rebuilt it while this one was waiting
+            payload = current;
+            if (payload != null && payload.version() == version) {
+                return payload;
+            }
+            byte[] body = writer.write();
+            byte[] gzipBody = body.length >= compressionMinBytes ? gzip(body) : null;
+            payload = new Payload(version, body, gzipBody != null && gzipBody.length < body.length ? gzipBody : null);
+            // Versions only move forward; a slow rebuild must not replace a newer snapshot
+            if (body.length <= maxBytes && (current == null || current.version() < version)) {
+                current = payload;
+            }
+            return payload;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(gzipLevel);
+            }
+        }) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
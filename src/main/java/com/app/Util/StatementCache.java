@@ -0,0 +1,119 @@
+package com.app.Util;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of prepared statements belonging to one physical connection.
+ * Statements are keyed by their SQL text and generated-keys mode and evicted in least-recently-used order,
+ * so the DAO hot paths reuse the plan H2 has already compiled instead of re-parsing the same SQL on every call.
+ *
+ * A statement is removed from the cache while it is in use and put back when the borrower closes it,
+ * so two open statements never share the same physical PreparedStatement.
+ * A connection is only used by one thread at a time, but the housekeeping thread may close it, hence the synchronization.
+ */
+public class StatementCache {
+
+    /**
+     * Hit, miss and eviction counters, shared by the caches of every connection in a pool.
+     */
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getEvictions() {
+            return evictions.sum();
+        }
+    }
+
+    /**
+     * Identifies a cached statement: the same SQL prepared with and without generated keys are different statements.
+     */
+    public record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private final int maxSize;
+    private final Stats stats;
+
+    /**
+     * Access-ordered map, so iteration starts at the least recently used statement.
+     */
+    private final LinkedHashMap<Key, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxSize The maximum number of statements kept for the connection.
+     * @param stats The counters to update.
+     */
+    public StatementCache(int maxSize, Stats stats) {
+        this.maxSize = maxSize;
+        this.stats = stats;
+    }
+
+    /**
+     * Takes a statement out of the cache.
+     *
+     * @param key The SQL text and generated-keys mode.
+     * @return The cached statement, or null if the caller has to prepare a new one.
+     */
+    public synchronized PreparedStatement take(Key key) {
+        PreparedStatement statement = statements.remove(key);
+        if (statement != null) {
+            stats.hits.increment();
+        } else {
+            stats.misses.increment();
+        }
+        return statement;
+    }
+
+    /**
+     * Returns a statement to the cache once its borrower is done with it, evicting the least recently used
+     * statement if the cache is full. If the same key was cached in the meantime, the returned statement is closed.
+     *
+     * @param key The SQL text and generated-keys mode.
+     * @param statement The statement to keep.
+     */
+    public synchronized void put(Key key, PreparedStatement statement) {
+        if (maxSize <= 0 || statements.containsKey(key)) {
+            closeQuietly(statement);
+            return;
+        }
+        statements.put(key, statement);
+        if (statements.size() > maxSize) {
+            Iterator<PreparedStatement> eldest = statements.values().iterator();
+            closeQuietly(eldest.next());
+            eldest.remove();
+            stats.evictions.increment();
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    public synchronized void closeAll() {
+        for (Map.Entry<Key, PreparedStatement> entry : statements.entrySet()) {
+            closeQuietly(entry.getValue());
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -1,4 +1,6 @@
+drop table if exists schema_version;
 drop table if exists message;
+drop sequence if exists message_id_seq;
 drop table if exists account;
 create table account (
     account_id int primary key auto_increment,
@@ -0,0 +1,2 @@
+-- Per-account timelines: WHERE posted_by = ? [AND message_id > ?] ORDER BY message_id
+create index if not exists idx_message_posted_by_id on message (posted_by, message_id);
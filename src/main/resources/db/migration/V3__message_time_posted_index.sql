@@ -0,0 +1,2 @@
+-- Time-ordered listing: ORDER BY time_posted_epoch, message_id and time range filters
+create index if not exists idx_message_time_posted_id on message (time_posted_epoch, message_id);
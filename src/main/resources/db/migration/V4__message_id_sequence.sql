@@ -0,0 +1,6 @@
+-- Message IDs come from a sequence instead of an identity column, so a block of IDs can be reserved ahead of
+-- the insert (write-behind mode) while plain inserts keep getting their ID from the column default.
+create sequence if not exists message_id_seq;
+alter table message alter column message_id drop identity;
+alter table message alter column message_id set default next value for message_id_seq;
+alter sequence message_id_seq restart with (select coalesce(max(message_id), 0) + 1 from message);
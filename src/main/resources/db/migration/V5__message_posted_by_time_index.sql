@@ -0,0 +1,2 @@
+-- Per-account time ranges: WHERE posted_by = ? AND time_posted_epoch >= ? ... ORDER BY time_posted_epoch, message_id
+create index if not exists idx_message_posted_by_time on message (posted_by, time_posted_epoch, message_id);
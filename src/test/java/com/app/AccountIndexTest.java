@@ -0,0 +1,118 @@
+package com.app;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.DAO.AccountDAO;
+import com.app.Model.Account;
+import com.app.Service.AccountIndex;
+import com.app.Service.AccountService;
+import com.app.Util.ConnectionUtil;
+
+public class AccountIndexTest {
+
+    /**
+     * An AccountDAO that counts the lookups the index falls through to.
+     */
+    static class CountingAccountDAO extends AccountDAO {
+        int usernameLookups;
+        int idLookups;
+        Set<Integer> lastIdsLookedUp;
+
+        @Override
+        public Account getAccountByUserName(String username) {
+            usernameLookups++;
+            return super.getAccountByUserName(username);
+        }
+
+        @Override
+        public boolean accountExistsById(int accountId) {
+            idLookups++;
+            return super.accountExistsById(accountId);
+        }
+
+        @Override
+        public Set<Integer> findExistingAccountIds(Set<Integer> accountIds) {
+            lastIdsLookedUp = accountIds;
+            return super.findExistingAccountIds(accountIds);
+        }
+    }
+
+    CountingAccountDAO accountDAO;
+    AccountIndex accountIndex;
+    AccountService accountService;
+
+    /**
+     * Before every test, resetting the database, which holds account 1 (testuser1) with the legacy plaintext
+     * password "password", and starting from an empty index.
+     */
+    @BeforeEach
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = new CountingAccountDAO();
+        accountIndex = new AccountIndex(accountDAO);
+        accountService = new AccountService(accountDAO, accountIndex);
+    }
+
+    /**
+     * The first lookup of an account reads the database and later lookups are answered from the index. Misses are
+     * not remembered, so an account created behind the index's back is still found.
+     */
+    @Test
+    public void fillsLazilyOnFirstLookup() {
+        Assertions.assertTrue(accountIndex.accountExists(1));
+        Assertions.assertTrue(accountIndex.accountExists(1));
+        Assertions.assertEquals(1, accountDAO.idLookups);
+
+        Assertions.assertEquals(1, accountIndex.getAccount("testuser1").getAccount_id());
+        Assertions.assertTrue(accountIndex.usernameExists("testuser1"));
+        Assertions.assertEquals(1, accountDAO.usernameLookups);
+
+        Assertions.assertFalse(accountIndex.usernameExists("user2"));
+        Account created = accountDAO.insertAccount(new Account("user2", "password2"));
+        Assertions.assertTrue(accountIndex.usernameExists("user2"));
+        Assertions.assertEquals(3, accountDAO.usernameLookups);
+
+        // Only the IDs not known yet are looked up
+        Assertions.assertEquals(Set.of(1, created.getAccount_id()), accountIndex.existingAccounts(Set.of(1, created.getAccount_id(), 99)));
+        Assertions.assertEquals(Set.of(99), accountDAO.lastIdsLookedUp);
+    }
+
+    /**
+     * Registering a username right after the index has been filled with it is rejected, as is registering a username
+     * that was just registered through the index.
+     */
+    @Test
+    public void duplicateRegistrationAfterFillRejected() {
+        Assertions.assertNotNull(accountIndex.getAccount("testuser1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> accountService.registerAccount(new Account("testuser1", "password")));
+
+        Account registered = accountService.registerAccount(new Account("user2", "password2"));
+        int lookups = accountDAO.usernameLookups;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> accountService.registerAccount(new Account("user2", "password2")));
+        Assertions.assertEquals(lookups, accountDAO.usernameLookups);
+        Assertions.assertTrue(accountIndex.accountExists(registered.getAccount_id()));
+        Assertions.assertEquals(0, accountDAO.idLookups);
+    }
+
+    /**
+     * A login with a legacy plaintext password replaces it with a hash in the database and in the index, so a later
+     * login verified against the index (not the login cache) succeeds without reading the account again.
+     */
+    @Test
+    public void loginAfterRehashUsesIndexedHash() {
+        accountService.login("testuser1", "password");
+        String storedHash = accountIndex.getAccount("testuser1").getPassword();
+        Assertions.assertNotEquals("password", storedHash);
+        Assertions.assertEquals(storedHash, new AccountDAO().getAccountByUserName("testuser1").getPassword());
+
+        // A second service has its own login cache but shares the index
+        AccountService otherService = new AccountService(accountDAO, accountIndex);
+        Assertions.assertEquals(1, otherService.login("testuser1", "password").getAccount_id());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> otherService.login("testuser1", "wrong password"));
+        Assertions.assertEquals(1, accountDAO.usernameLookups);
+    }
+}
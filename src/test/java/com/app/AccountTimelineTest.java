@@ -0,0 +1,131 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.Message;
+import com.app.Model.MessagePage;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class AccountTimelineTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web. Three more messages are posted by account 1, out of time order, so that the
+     * timeline from newest to oldest is messages 3, 4, 1, 2.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        postMessage("oldest", 1669947700);
+        postMessage("newest", 1669947900);
+        postMessage("middle", 1669947800);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?order=desc&limit=2 and then following the
+     * next_cursor with before
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page with messages 3 and 4 and next_cursor 4, then a page with messages 1 and 2 and no next_cursor
+     */
+    @Test
+    public void getTimelineNewestFirst() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/messages?order=desc&limit=2");
+        Assertions.assertEquals(200, response.statusCode());
+        MessagePage firstPage = objectMapper.readValue(response.body(), MessagePage.class);
+        Assertions.assertEquals(List.of(3, 4), firstPage.getMessages().stream().map(Message::getMessage_id).toList());
+        Assertions.assertEquals(new Message(3, 1, "newest", 1669947900), firstPage.getMessages().get(0));
+        Assertions.assertEquals(4, firstPage.getNext_cursor());
+
+        response = get("/accounts/1/messages?limit=2&before=" + firstPage.getNext_cursor());
+        Assertions.assertEquals(200, response.statusCode());
+        MessagePage secondPage = objectMapper.readValue(response.body(), MessagePage.class);
+        Assertions.assertEquals(List.of(1, 2), secondPage.getMessages().stream().map(Message::getMessage_id).toList());
+        Assertions.assertNull(secondPage.getNext_cursor());
+    }
+
+    /**
+     * Posting and deleting messages after the timeline has been loaded keeps it up to date.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the deleted message 4 is gone and the new message 5 comes first
+     */
+    @Test
+    public void timelineFollowsPostsAndDeletes() throws IOException, InterruptedException {
+        get("/accounts/1/messages?order=desc");
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/4"))
+                .DELETE()
+                .build();
+        webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        postMessage("latest", 1669948000);
+
+        HttpResponse<String> response = get("/accounts/1/messages?order=desc");
+        Assertions.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+        Assertions.assertEquals(List.of(5, 3, 1, 2), page.getMessages().stream().map(Message::getMessage_id).toList());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?before=99, a message that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getTimelineUnknownCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/messages?before=99");
+        Assertions.assertEquals(400, response.statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String text, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
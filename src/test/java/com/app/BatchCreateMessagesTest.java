@@ -0,0 +1,122 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.BatchItemResult;
+import com.app.Model.Message;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BatchCreateMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with a JSON array of one valid message,
+     * one blank message and one message from a user that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per item, a message_id for the valid item and an error for the others
+     *  The valid message is persisted as message 2
+     */
+    @Test
+    public void batchCreateMessagesJsonArray() throws IOException, InterruptedException {
+        HttpResponse<String> response = postBatch("[" +
+                "{\"posted_by\": 1, \"message_text\": \"batch message\", \"time_posted_epoch\": 1669947792}," +
+                "{\"posted_by\": 1, \"message_text\": \"\", \"time_posted_epoch\": 1669947792}," +
+                "{\"posted_by\": 3, \"message_text\": \"nobody\", \"time_posted_epoch\": 1669947792}" +
+                "]", "application/json");
+        Assertions.assertEquals(200, response.statusCode());
+        List<BatchItemResult> results = objectMapper.readValue(response.body(), new TypeReference<List<BatchItemResult>>(){});
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertEquals(2, results.get(0).getMessage_id());
+        Assertions.assertNull(results.get(0).getError());
+        Assertions.assertNull(results.get(1).getMessage_id());
+        Assertions.assertNotNull(results.get(1).getError());
+        Assertions.assertEquals(2, results.get(2).getIndex());
+        Assertions.assertNull(results.get(2).getMessage_id());
+        Assertions.assertNotNull(results.get(2).getError());
+
+        HttpResponse<String> getResponse = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(new Message(2, 1, "batch message", 1669947792), objectMapper.readValue(getResponse.body(), Message.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with two messages as newline-delimited JSON
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the generated message_ids 2 and 3, in upload order
+     */
+    @Test
+    public void batchCreateMessagesNdjson() throws IOException, InterruptedException {
+        HttpResponse<String> response = postBatch(
+                "{\"posted_by\": 1, \"message_text\": \"first\", \"time_posted_epoch\": 1669947792}\n" +
+                "{\"posted_by\": 1, \"message_text\": \"second\", \"time_posted_epoch\": 1669947793}\n",
+                "application/x-ndjson");
+        Assertions.assertEquals(200, response.statusCode());
+        List<BatchItemResult> results = objectMapper.readValue(response.body(), new TypeReference<List<BatchItemResult>>(){});
+        Assertions.assertEquals(List.of(2, 3), results.stream().map(BatchItemResult::getMessage_id).toList());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with an empty array
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void batchCreateMessagesEmpty() throws IOException, InterruptedException {
+        HttpResponse<String> response = postBatch("[]", "application/json");
+        Assertions.assertEquals(400, response.statusCode());
+    }
+
+    private HttpResponse<String> postBatch(String body, String contentType) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", contentType)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,111 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending GET localhost:8080/messages/1 again with the ETag it returned, before and after the message is updated
+     *
+     * Expected Response:
+     *  Status Code: 304 with an empty body while the message is unchanged, 200 with a new ETag once it has been updated
+     */
+    @Test
+    public void getMessageByIdConditional() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages/1", null);
+        Assertions.assertEquals(200, response.statusCode());
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+        Assertions.assertTrue(response.headers().firstValue("Last-Modified").isPresent());
+
+        response = get("/messages/1", etag);
+        Assertions.assertEquals(304, response.statusCode());
+        Assertions.assertEquals("", response.body());
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+
+        response = get("/messages/1", etag);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.body().contains("updated message"));
+        Assertions.assertNotEquals(etag, response.headers().firstValue("ETag").orElseThrow());
+    }
+
+    /**
+     * Sending GET localhost:8080/accounts/1/messages again with the ETag it returned, before and after a new message
+     * is posted by account 1
+     *
+     * Expected Response:
+     *  Status Code: 304 while the account's messages are unchanged, 200 once a message has been posted
+     */
+    @Test
+    public void getMessagesForUserConditional() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/messages", null);
+        Assertions.assertEquals(200, response.statusCode());
+        String etag = response.headers().firstValue("ETag").orElseThrow();
+
+        Assertions.assertEquals(304, get("/accounts/1/messages", etag).statusCode());
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        response = get("/accounts/1/messages", etag);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.body().contains("hello message"));
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,175 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Util.ConnectionPool;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConnectionPoolTest {
+
+    /**
+     * An in-memory H2 DataSource that keeps the physical connections it opens, so a test can break them.
+     */
+    static class RecordingDataSource {
+        final List<Connection> opened = new ArrayList<>();
+        final DataSource dataSource;
+
+        RecordingDataSource(String name) {
+            JdbcDataSource h2 = new JdbcDataSource();
+            h2.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+            h2.setUser("sa");
+            h2.setPassword("sa");
+            dataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] { DataSource.class },
+                    (proxy, method, args) -> {
+                        Object result = method.invoke(h2, args);
+                        if (result instanceof Connection connection) {
+                            synchronized (opened) {
+                                opened.add(connection);
+                            }
+                        }
+                        return result;
+                    });
+        }
+    }
+
+    /**
+     * With every connection handed out, a borrower gives up after the borrow timeout with a transient exception.
+     * Closing a connection returns it to the pool once: a second close() does not free a second permit.
+     */
+    @Test
+    public void borrowTimeoutAndDoubleClose() throws SQLException {
+        RecordingDataSource dataSource = new RecordingDataSource("pool-timeout");
+        ConnectionPool pool = new ConnectionPool(dataSource.dataSource, 0, 1, 1, 100, 0, 0, 0);
+        try {
+            Connection first = pool.getConnection();
+            Assertions.assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            Assertions.assertEquals(1, pool.getBorrowTimeouts());
+
+            first.close();
+            first.close();
+            Assertions.assertTrue(first.isClosed());
+            Assertions.assertThrows(SQLException.class, first::createStatement);
+            Assertions.assertEquals(0, pool.getActiveConnections());
+            Assertions.assertEquals(1, pool.getIdleConnections());
+
+            // The returned physical connection is reused, and the pool is exhausted again while it is held
+            Connection second = pool.getConnection();
+            Assertions.assertEquals(1, dataSource.opened.size());
+            Assertions.assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            Assertions.assertEquals(2, pool.getBorrowTimeouts());
+            second.close();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * An idle connection that fails validation is closed and replaced by a new one on the next borrow.
+     */
+    @Test
+    public void invalidConnectionReplacedOnBorrow() throws SQLException {
+        RecordingDataSource dataSource = new RecordingDataSource("pool-validation");
+        ConnectionPool pool = new ConnectionPool(dataSource.dataSource, 0, 1, 1, 1000, 0, 0, 0);
+        try {
+            pool.getConnection().close();
+            dataSource.opened.get(0).close();
+
+            try (Connection connection = pool.getConnection();
+                    Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT 1")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+            Assertions.assertEquals(2, dataSource.opened.size());
+            Assertions.assertEquals(1, pool.getTotalConnections());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The housekeeper reports a connection held past the leak threshold once, and closes idle connections above
+     * minIdle once they pass the idle timeout.
+     */
+    @Test
+    public void housekeeperReportsLeaksAndEvictsIdleConnections() throws SQLException, InterruptedException {
+        RecordingDataSource dataSource = new RecordingDataSource("pool-housekeeping");
+        ConnectionPool pool = new ConnectionPool(dataSource.dataSource, 1, 3, 3, 1000, 100, 100, 0);
+        try {
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+            Connection leaked = pool.getConnection();
+            first.close();
+            second.close();
+            Assertions.assertEquals(2, pool.getIdleConnections());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((pool.getLeaksDetected() == 0 || pool.getIdleConnections() > 1) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(1, pool.getLeaksDetected());
+            Assertions.assertEquals(1, pool.getIdleConnections());
+            Assertions.assertEquals(2, pool.getTotalConnections());
+
+            // Another housekeeping run neither reports the same leak again nor goes below minIdle
+            Thread.sleep(1200);
+            Assertions.assertEquals(1, pool.getLeaksDetected());
+            Assertions.assertEquals(1, pool.getIdleConnections());
+            leaked.close();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 while every connection of the application's pool is
+     * held elsewhere
+     *
+     * Expected Response:
+     *  Status Code: 503
+     *  Retry-After: 1
+     */
+    @Test
+    public void exhaustedPoolAnsweredWith503() throws SQLException, IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        Javalin app = new SocialMediaController().startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < ConnectionUtil.getPool().getMaxSize(); i++) {
+                held.add(ConnectionUtil.getConnection());
+            }
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/1"))
+                    .build();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(503, response.statusCode());
+            Assertions.assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+            app.stop();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Util.IntBitmap;
+
+public class IntBitmapTest {
+
+    /**
+     * Intersecting sets whose groups are sparse (array containers) and dense (bitmap containers) in every pairing
+     * gives the same ints as intersecting the plain sets, in ascending order.
+     */
+    @Test
+    public void andMatchesEveryContainerPairing() {
+        Random random = new Random(42);
+        TreeSet<Integer> expectedFirst = new TreeSet<>();
+        TreeSet<Integer> expectedSecond = new TreeSet<>();
+        IntBitmap first = new IntBitmap();
+        IntBitmap second = new IntBitmap();
+        // Group 0: both dense; group 1: dense and sparse; group 2: both sparse; group 3: only in the first set
+        fill(first, expectedFirst, random, 0, 30000);
+        fill(second, expectedSecond, random, 0, 30000);
+        fill(first, expectedFirst, random, 1, 30000);
+        fill(second, expectedSecond, random, 1, 2000);
+        fill(first, expectedFirst, random, 2, 3000);
+        fill(second, expectedSecond, random, 2, 3000);
+        fill(first, expectedFirst, random, 3, 100);
+
+        TreeSet<Integer> expected = new TreeSet<>(expectedFirst);
+        expected.retainAll(expectedSecond);
+        IntBitmap result = first.and(second);
+        Assertions.assertEquals(new ArrayList<>(expected), toList(result));
+        Assertions.assertEquals(expected.size(), result.cardinality());
+        Assertions.assertEquals(toList(result), toList(second.and(first)));
+        // The result is a set of its own that can still be changed
+        int any = expected.first();
+        Assertions.assertTrue(result.remove(any));
+        Assertions.assertTrue(first.contains(any));
+    }
+
+    /**
+     * A group that grew past the array limit and shrinks back below it keeps answering correctly, and adding to it
+     * again works.
+     */
+    @Test
+    public void shrinkingGroupStaysConsistent() {
+        IntBitmap bitmap = new IntBitmap();
+        for (int value = 0; value < 5000; value++) {
+            bitmap.add(value);
+        }
+        for (int value = 0; value < 5000; value += 2) {
+            Assertions.assertTrue(bitmap.remove(value));
+        }
+        Assertions.assertEquals(2500, bitmap.cardinality());
+        Assertions.assertFalse(bitmap.contains(4998));
+        Assertions.assertTrue(bitmap.contains(4999));
+        Assertions.assertTrue(bitmap.add(4998));
+        Assertions.assertFalse(bitmap.add(4999));
+        Assertions.assertEquals(2501, bitmap.cardinality());
+
+        List<Integer> values = toList(bitmap);
+        Assertions.assertEquals(2501, values.size());
+        Assertions.assertEquals(1, values.get(0));
+        Assertions.assertEquals(4999, values.get(values.size() - 1));
+    }
+
+    /**
+     * Adds count random ints of the given group to the bitmap and to the expected set.
+     */
+    private static void fill(IntBitmap bitmap, TreeSet<Integer> expected, Random random, int group, int count) {
+        for (int i = 0; i < count; i++) {
+            int value = (group << 16) | random.nextInt(1 << 16);
+            Assertions.assertEquals(expected.add(value), bitmap.add(value));
+        }
+    }
+
+    private static List<Integer> toList(IntBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
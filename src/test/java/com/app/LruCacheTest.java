@@ -0,0 +1,75 @@
+package com.app;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Util.LruCache;
+
+public class LruCacheTest {
+
+    /**
+     * A full cache evicts the least recently used entry, where reading an entry counts as using it. Hits, misses and
+     * evictions are counted.
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LruCache<Integer, String> cache = new LruCache<>(2, 0);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        Assertions.assertEquals("one", cache.get(1));
+        cache.put(3, "three");
+
+        Assertions.assertNull(cache.get(2));
+        Assertions.assertEquals("one", cache.get(1));
+        Assertions.assertEquals("three", cache.get(3));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getEvictionCount());
+        Assertions.assertEquals(3, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(0.75, cache.getHitRatio());
+    }
+
+    /**
+     * An entry read after its time-to-live is a miss and is dropped; writing it again restarts its time-to-live.
+     */
+    @Test
+    public void expiresAfterTtl() throws InterruptedException {
+        LruCache<Integer, String> cache = new LruCache<>(10, 50);
+        Assertions.assertEquals(1.0, cache.getHitRatio());
+        cache.put(1, "one");
+        Assertions.assertEquals("one", cache.get(1));
+
+        Thread.sleep(100);
+        Assertions.assertNull(cache.get(1));
+        Assertions.assertEquals(0, cache.size());
+
+        cache.put(1, "one again");
+        Assertions.assertEquals("one again", cache.get(1));
+        Assertions.assertEquals(0, cache.getEvictionCount());
+        Assertions.assertEquals(2.0 / 3, cache.getHitRatio());
+    }
+
+    /**
+     * A fill stamped before a write or invalidation of the same key is not cached; one stamped after is.
+     */
+    @Test
+    public void fillSkippedAfterConcurrentWrite() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 0);
+        long stamp = cache.stamp(1);
+        cache.invalidate(1);
+        Assertions.assertFalse(cache.putIfUnchanged(1, "stale", stamp));
+        Assertions.assertNull(cache.get(1));
+
+        stamp = cache.stamp(1);
+        cache.put(1, "written");
+        Assertions.assertFalse(cache.putIfUnchanged(1, "stale", stamp));
+        Assertions.assertEquals("written", cache.get(1));
+
+        stamp = cache.stamp(1);
+        cache.invalidateAll();
+        Assertions.assertFalse(cache.putIfUnchanged(1, "stale", stamp));
+
+        Assertions.assertTrue(cache.putIfUnchanged(1, "loaded", cache.stamp(1)));
+        Assertions.assertEquals("loaded", cache.get(1));
+    }
+}
@@ -0,0 +1,108 @@
+package com.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.app.DAO.MappedLogMessageDAO;
+import com.app.Model.Message;
+
+public class MappedLogMessageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Inserting, reading, paging, updating and deleting messages in the message log.
+     */
+    @Test
+    public void storeOperations() throws IOException {
+        try (MappedLogMessageDAO store = open()) {
+            Message first = store.insertMessage(new Message(1, "first", 1669947792));
+            List<Message> batch = store.insertMessages(List.of(new Message(1, "second", 1669947793), new Message(2, "third ünïcode", 1669947794)));
+            Assertions.assertEquals(1, first.getMessage_id());
+            Assertions.assertEquals(List.of(2, 3), batch.stream().map(Message::getMessage_id).toList());
+
+            Assertions.assertEquals(new Message(3, 2, "third ünïcode", 1669947794), store.getMessageByMessageID(3));
+            Assertions.assertEquals(List.of(2, 3), store.getMessagesAfter(1, 10).stream().map(Message::getMessage_id).toList());
+            Assertions.assertEquals(2, store.getAllMessagesByAccountID(1).size());
+
+            Assertions.assertEquals(new Message(2, 1, "edited", 1669947793), store.updateMessage(2, new Message(0, "edited", 0)));
+            Assertions.assertEquals(first, store.deleteMessageById(1));
+            Assertions.assertNull(store.getMessageByMessageID(1));
+            Assertions.assertNull(store.deleteMessageById(1));
+            Assertions.assertEquals(List.of(
+                    new Message(2, 1, "edited", 1669947793),
+                    new Message(3, 2, "third ünïcode", 1669947794)), store.getAllMessages());
+        }
+    }
+
+    /**
+     * Reopening the log restores its messages, ignoring a record torn by a crash at the end of the active segment.
+     */
+    @Test
+    public void reopenRestoresMessages() throws IOException {
+        MappedLogMessageDAO store = open();
+        store.insertMessages(List.of(new Message(1, "one", 1669947792), new Message(1, "two", 1669947793)));
+        store.updateMessage(2, new Message(0, "two edited", 0));
+        store.deleteMessageById(1);
+        store.insertMessage(new Message(1, "three", 1669947794));
+        store.close();
+
+        // Appending half a record after the five records written above (25 bytes each plus their text),
+        // as if the process died while writing it
+        long end = 5 * 25 + "one".length() + "two".length() + "two edited".length() + "three".length();
+        try (FileChannel segment = FileChannel.open(directory.resolve("segment-0000000001.log"), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[] {1, 4, 0, 0, 0, 1, 0}), end);
+        }
+
+        try (MappedLogMessageDAO reopened = open()) {
+            Assertions.assertEquals(List.of(
+                    new Message(2, 1, "two edited", 1669947793),
+                    new Message(3, 1, "three", 1669947794)), reopened.getAllMessages());
+            Assertions.assertEquals(4, reopened.insertMessage(new Message(1, "four", 1669947795)).getMessage_id());
+        }
+    }
+
+    /**
+     * Compaction rewrites sealed segments that are mostly garbage, and deleted messages stay deleted after a reopen.
+     */
+    @Test
+    public void compactionReclaimsSegments() throws IOException {
+        try (MappedLogMessageDAO store = open()) {
+            List<Message> messages = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                messages.add(new Message(1 + i % 3, "message number " + i, 1669947792 + i));
+            }
+            store.insertMessages(messages);
+            for (int id = 1; id <= 1000; id++) {
+                if (id % 10 != 0) {
+                    store.deleteMessageById(id);
+                }
+            }
+            int segmentsBefore = store.segmentCount();
+            Assertions.assertTrue(store.compact() > 0);
+            Assertions.assertTrue(store.segmentCount() < segmentsBefore);
+            Assertions.assertEquals(100, store.size());
+        }
+
+        try (MappedLogMessageDAO reopened = open()) {
+            List<Message> messages = reopened.getAllMessages();
+            Assertions.assertEquals(100, messages.size());
+            Assertions.assertEquals(new Message(10, 1, "message number 9", 1669947801), messages.get(0));
+            Assertions.assertNull(reopened.getMessageByMessageID(1));
+        }
+    }
+
+    private MappedLogMessageDAO open() throws IOException {
+        return new MappedLogMessageDAO(directory, false, 4096);
+    }
+}
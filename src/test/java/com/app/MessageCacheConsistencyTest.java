@@ -0,0 +1,116 @@
+package com.app;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.DAO.AccountDAO;
+import com.app.DAO.JdbcMessageDAO;
+import com.app.Model.Message;
+import com.app.Service.AccountIndex;
+import com.app.Service.MessageService;
+import com.app.Util.ConnectionUtil;
+import com.app.Util.LruCache;
+
+public class MessageCacheConsistencyTest {
+    AccountDAO accountDAO;
+
+    /**
+     * Before every test, resetting the database, which holds message 1 posted by account 1.
+     */
+    @BeforeEach
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = new AccountDAO();
+    }
+
+    /**
+     * A read that loads message 1 from the database just before a concurrent delete commits must not put the deleted
+     * row back into the cache: reading message 1 after the delete finds nothing.
+     */
+    @Test
+    public void concurrentReadDoesNotCacheDeletedMessage() throws InterruptedException {
+        CountDownLatch rowLoaded = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        JdbcMessageDAO messageDAO = new JdbcMessageDAO() {
+            @Override
+            public Message getMessageByMessageID(int messageId) {
+                Message message = super.getMessageByMessageID(messageId);
+                if (rowLoaded.getCount() > 0) {
+                    // Holding the loaded row until the delete has gone through
+                    rowLoaded.countDown();
+                    try {
+                        deleted.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return message;
+            }
+        };
+        MessageService messageService = service(messageDAO);
+        try {
+            Thread reader = new Thread(() -> messageService.getMessageById(1));
+            reader.start();
+            rowLoaded.await();
+            Assertions.assertNotNull(messageService.deleteMessage(1));
+            deleted.countDown();
+            reader.join();
+
+            Assertions.assertNull(messageService.getMessageById(1));
+        } finally {
+            messageService.shutdown();
+        }
+    }
+
+    /**
+     * An update whose database write lands before a concurrent delete of message 1 must not put the message back
+     * into the cache or the search index once the delete is done: the delete waits for the update to finish.
+     */
+    @Test
+    public void updateRacingDeleteDoesNotRestoreMessage() throws InterruptedException {
+        CountDownLatch rowUpdated = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JdbcMessageDAO messageDAO = new JdbcMessageDAO() {
+            @Override
+            public Message updateMessage(int messageId, Message message) {
+                Message updated = super.updateMessage(messageId, message);
+                // Holding the updated row until the delete has had its chance to run
+                rowUpdated.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return updated;
+            }
+        };
+        MessageService messageService = service(messageDAO);
+        try {
+            Assertions.assertTrue(messageService.searchMessages("raced", 0, 10).getMessages().isEmpty());
+            Thread updater = new Thread(() -> messageService.updateMessage(1, new Message(1, "raced update", 0)));
+            updater.start();
+            rowUpdated.await();
+            Thread deleter = new Thread(() -> messageService.deleteMessage(1));
+            deleter.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (deleter.getState() != Thread.State.BLOCKED && deleter.isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            updater.join();
+            deleter.join();
+
+            Assertions.assertNull(messageService.getMessageById(1));
+            Assertions.assertTrue(messageService.searchMessages("raced", 0, 10).getMessages().isEmpty());
+        } finally {
+            messageService.shutdown();
+        }
+    }
+
+    private MessageService service(JdbcMessageDAO messageDAO) {
+        return new MessageService(messageDAO, accountDAO, new AccountIndex(accountDAO), new LruCache<>(100, 0));
+    }
+}
@@ -0,0 +1,165 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.Message;
+import com.app.Service.MessageEventBus;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageFeedTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Subscribing to GET localhost:8080/accounts/1/messages/feed, then posting and deleting a message by account 1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a text/event-stream with a created event and then a deleted event, each with the message as JSON
+     */
+    @Test
+    public void accountFeedReceivesChanges() throws Exception {
+        HttpRequest feedRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages/feed"))
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<Stream<String>> feed = webClient.send(feedRequest, HttpResponse.BodyHandlers.ofLines());
+        Assertions.assertEquals(200, feed.statusCode());
+        Iterator<String> lines = feed.body().iterator();
+        // The first comment is sent once the subscription is in place
+        Assertions.assertTrue(lines.next().startsWith(":"));
+
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        HttpRequest deleteMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .DELETE()
+                .build();
+        webClient.send(deleteMessageRequest, HttpResponse.BodyHandlers.ofString());
+
+        Message expected = new Message(2, 1, "hello message", 1669947792);
+        Assertions.assertEquals("event: created", nextField(lines, "event: "));
+        Assertions.assertEquals(expected, objectMapper.readValue(nextField(lines, "data: ").substring(6), Message.class));
+        Assertions.assertEquals("event: deleted", nextField(lines, "event: "));
+        Assertions.assertEquals(expected, objectMapper.readValue(nextField(lines, "data: ").substring(6), Message.class));
+    }
+
+    /**
+     * Publishing more events than a subscriber's queue holds while its sink is stuck, one at a time so that
+     * the other subscriber keeps up
+     *
+     * Expected Result: publishing does not block, the stuck subscriber is dropped and closed,
+     * and the subscriber that keeps up receives every event
+     */
+    @Test
+    public void slowSubscriberIsDropped() throws InterruptedException {
+        MessageEventBus eventBus = new MessageEventBus(1000, 4, 10, 60000);
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch slowClosed = new CountDownLatch(1);
+        Semaphore received = new Semaphore(0);
+        try {
+            MessageEventBus.Subscription slow = eventBus.subscribe(null, new TestSink() {
+                @Override
+                public void send(MessageEventBus.Event event) throws IOException {
+                    try {
+                        stuck.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+
+                @Override
+                public void close() {
+                    slowClosed.countDown();
+                }
+            });
+            eventBus.subscribe(1, new TestSink() {
+                @Override
+                public void send(MessageEventBus.Event event) {
+                    received.release();
+                }
+            });
+
+            for (int i = 0; i < 50; i++) {
+                eventBus.publish("created", new Message(i + 1, 1, "test message", 1669947792));
+                Assertions.assertTrue(received.tryAcquire(5, TimeUnit.SECONDS));
+            }
+
+            Assertions.assertTrue(slowClosed.await(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(slow.isClosed());
+            Assertions.assertEquals(1, eventBus.getSubscriberCount());
+            Assertions.assertEquals(1, eventBus.getDroppedSubscriberCount());
+        } finally {
+            stuck.countDown();
+            eventBus.close();
+        }
+    }
+
+    private static String nextField(Iterator<String> lines, String prefix) {
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new AssertionError("The feed ended before a line starting with " + prefix);
+    }
+
+    private abstract static class TestSink implements MessageEventBus.Sink {
+        @Override
+        public void keepAlive() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.Message;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageListSnapshotTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web. Enough messages are posted for the list to be worth compressing.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        for (int i = 2; i <= 30; i++) {
+            postMessage("test message " + i);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending GET localhost:8080/messages with Accept-Encoding: gzip, then again after posting another message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the gzip-compressed JSON array of all messages, including the message posted in between
+     */
+    @Test
+    public void getAllMessagesCompressedAndRefreshed() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = getGzip();
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        Assertions.assertEquals(30, readMessages(response).size());
+
+        postMessage("test message 31");
+
+        response = getGzip();
+        List<Message> messages = readMessages(response);
+        Assertions.assertEquals(31, messages.size());
+        Assertions.assertEquals("test message 31", messages.get(30).getMessage_text());
+    }
+
+    /**
+     * Sending GET localhost:8080/messages without Accept-Encoding
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the uncompressed JSON array of all messages
+     */
+    @Test
+    public void getAllMessagesUncompressed() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(30, messages.size());
+    }
+
+    private HttpResponse<byte[]> getGzip() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept-Encoding", "gzip")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private List<Message> readMessages(HttpResponse<byte[]> response) throws IOException {
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return objectMapper.readValue(body, new TypeReference<List<Message>>(){});
+        }
+    }
+
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,137 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.AccountPostCount;
+import com.app.Model.MessageStatsSummary;
+import com.app.Model.PostCountBucket;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageStatsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web. Account 2 is registered; with the seeded message 1 (1669947792, in the hour
+     * starting 1669946400 and the day starting 1669939200), no other messages exist yet.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"user2\", \"password\": \"password2\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Posting and deleting messages, then sending http requests to GET localhost:8080/stats/accounts/{account_id},
+     * /stats/top-posters, /stats/hourly and /stats/daily
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: counts that include the new messages and leave out the deleted one
+     */
+    @Test
+    public void statsFollowPostsAndDeletes() throws IOException, InterruptedException {
+        // Reading once first, so the counters are built before the changes below
+        Assertions.assertEquals(new AccountPostCount(1, 1), get("/stats/accounts/1", new TypeReference<AccountPostCount>() {}));
+
+        postMessage(2, 1669947800);
+        postMessage(2, 1669951000);
+        postMessage(2, 1670100000);
+        postMessage(1, 1670100001);
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/5"))
+                .DELETE()
+                .build();
+        webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+
+        Assertions.assertEquals(new AccountPostCount(2, 3), get("/stats/accounts/2", new TypeReference<AccountPostCount>() {}));
+        Assertions.assertEquals(List.of(new AccountPostCount(2, 3), new AccountPostCount(1, 1)),
+                get("/stats/top-posters", new TypeReference<List<AccountPostCount>>() {}));
+        Assertions.assertEquals(List.of(new PostCountBucket(1669946400, 2), new PostCountBucket(1669950000, 1)),
+                get("/stats/hourly?since=1669940000&until=1670000000", new TypeReference<List<PostCountBucket>>() {}));
+        Assertions.assertEquals(List.of(new PostCountBucket(1669939200, 3), new PostCountBucket(1670025600, 1)),
+                get("/stats/daily", new TypeReference<List<PostCountBucket>>() {}));
+        Assertions.assertEquals(4, get("/stats", new TypeReference<MessageStatsSummary>() {}).getTotal_messages());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/stats/rebuild after messages were written directly to the
+     * database, bypassing the counters
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: totals recomputed from the database
+     */
+    @Test
+    public void rebuildFromDatabase() throws Exception {
+        Assertions.assertEquals(1, get("/stats", new TypeReference<MessageStatsSummary>() {}).getTotal_messages());
+        try (var connection = ConnectionUtil.getConnection(); var statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (2, 'direct', 1669947800)");
+        }
+
+        HttpRequest rebuildRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/stats/rebuild"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = webClient.send(rebuildRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(2, objectMapper.readValue(response.body(), MessageStatsSummary.class).getTotal_messages());
+        Assertions.assertEquals(new AccountPostCount(2, 1), get("/stats/accounts/2", new TypeReference<AccountPostCount>() {}));
+    }
+
+    private <T> T get(String path, TypeReference<T> type) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), type);
+    }
+
+    private void postMessage(int postedBy, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"hello\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
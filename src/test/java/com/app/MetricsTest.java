@@ -0,0 +1,107 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1 and GET localhost:8080/messages/100,
+     * then to GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text with the route's latency quantiles, its 200 status count,
+     *  the DAO query timings and the connection wait times
+     */
+    @Test
+    public void getMetricsAfterRequests() throws IOException, InterruptedException {
+        get("/messages/1");
+        get("/messages/100");
+
+        HttpResponse<String> response = get("/metrics");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        String body = response.body();
+        Assertions.assertTrue(body.contains("# TYPE app_http_request_duration_seconds summary"), body);
+        Assertions.assertTrue(body.contains("app_http_request_duration_seconds{route=\"GET /messages/{message_id}\",quantile=\"0.99\"}"), body);
+        Assertions.assertTrue(body.contains("app_http_requests_total{route=\"GET /messages/{message_id}\",status=\"200\"}"), body);
+        Assertions.assertTrue(body.contains("app_db_query_duration_seconds_count{method=\"MessageDAO.getMessageByMessageID\"}"), body);
+        Assertions.assertTrue(body.contains("app_db_connection_wait_seconds_count"), body);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=abc, then to GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 400 for the malformed limit
+     *  Response Body: Prometheus text counting the request under status 400, not 500
+     */
+    @Test
+    public void getMetricsCountsClientErrors() throws IOException, InterruptedException {
+        String clientErrors = "app_http_requests_total{route=\"GET /messages\",status=\"400\"}";
+        String serverErrors = "app_http_requests_total{route=\"GET /messages\",status=\"500\"}";
+        String before = get("/metrics").body();
+
+        HttpResponse<String> rejected = get("/messages?limit=abc");
+        Assertions.assertEquals(400, rejected.statusCode());
+
+        String after = get("/metrics").body();
+        Assertions.assertEquals(count(before, clientErrors) + 1, count(after, clientErrors), after);
+        Assertions.assertEquals(count(before, serverErrors), count(after, serverErrors), after);
+    }
+
+    /**
+     * @return The value of the sample with the given name and labels in a scrape, or 0 if it is not there yet.
+     */
+    private static long count(String scrape, String sample) {
+        for (String line : scrape.split("\n")) {
+            if (line.startsWith(sample + " ")) {
+                return (long) Double.parseDouble(line.substring(sample.length() + 1).trim());
+            }
+        }
+        return 0;
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
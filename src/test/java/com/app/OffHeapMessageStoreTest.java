@@ -0,0 +1,111 @@
+package com.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.app.DAO.OffHeapMessageDAO;
+import com.app.Model.Message;
+
+public class OffHeapMessageStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Inserting, reading, paging, updating and deleting messages in the off-heap store.
+     */
+    @Test
+    public void storeOperations() throws IOException {
+        try (OffHeapMessageDAO store = open()) {
+            Message first = store.insertMessage(new Message(1, "first", 1669947792));
+            List<Message> batch = store.insertMessages(List.of(new Message(1, "second", 1669947793), new Message(2, "third ünïcode", 1669947794)));
+            Assertions.assertEquals(1, first.getMessage_id());
+            Assertions.assertEquals(List.of(2, 3), batch.stream().map(Message::getMessage_id).toList());
+
+            Assertions.assertEquals(new Message(3, 2, "third ünïcode", 1669947794), store.getMessageByMessageID(3));
+            Assertions.assertEquals(List.of(2, 3), store.getMessagesAfter(1, 10).stream().map(Message::getMessage_id).toList());
+            Assertions.assertEquals(2, store.getAllMessagesByAccountID(1).size());
+
+            Assertions.assertEquals(new Message(2, 1, "edited", 1669947793), store.updateMessage(2, new Message(0, "edited", 0)));
+            Assertions.assertEquals(first, store.deleteMessageById(1));
+            Assertions.assertNull(store.getMessageByMessageID(1));
+            Assertions.assertNull(store.deleteMessageById(1));
+            Assertions.assertEquals(List.of(2, 3), store.getAllMessages().stream().map(Message::getMessage_id).toList());
+        }
+    }
+
+    /**
+     * Messages inserted with reserved IDs after newer messages are still returned in message_id order.
+     */
+    @Test
+    public void reservedIdsKeepOrder() throws IOException {
+        try (OffHeapMessageDAO store = open()) {
+            int[] reserved = store.allocateMessageIds(2);
+            store.insertMessage(new Message(1, "after the reserved block", 1669947792));
+            Assertions.assertTrue(store.insertMessagesWithIds(List.of(
+                    new Message(reserved[0], 1, "reserved 1", 1669947790),
+                    new Message(reserved[1], 1, "reserved 2", 1669947791))));
+            Assertions.assertEquals(List.of(1, 2, 3), store.getAllMessages().stream().map(Message::getMessage_id).toList());
+            Assertions.assertFalse(store.insertMessagesWithIds(List.of(new Message(reserved[0], 1, "duplicate", 1669947790))));
+        }
+    }
+
+    /**
+     * Reopening the store restores its messages, from the write-ahead log alone and from a snapshot plus the log.
+     */
+    @Test
+    public void reopenRestoresMessages() throws IOException {
+        OffHeapMessageDAO store = open();
+        store.insertMessages(List.of(new Message(1, "one", 1669947792), new Message(1, "two", 1669947793)));
+        store.updateMessage(2, new Message(0, "two edited", 0));
+        store.snapshot();
+        store.insertMessage(new Message(1, "three", 1669947794));
+        store.deleteMessageById(1);
+
+        // Reopening without close(), as after a crash: the snapshot is loaded and the log replayed
+        try (OffHeapMessageDAO reopened = open()) {
+            Assertions.assertEquals(List.of(
+                    new Message(2, 1, "two edited", 1669947793),
+                    new Message(3, 1, "three", 1669947794)), reopened.getAllMessages());
+            Assertions.assertEquals(4, reopened.insertMessage(new Message(1, "four", 1669947795)).getMessage_id());
+        }
+    }
+
+    /**
+     * A log whose last record was damaged and then followed by garbage with a plausible header is replayed up to the
+     * last intact record, and truncated there so new records follow it.
+     */
+    @Test
+    public void corruptedLogTailDropped() throws IOException {
+        OffHeapMessageDAO store = open();
+        store.insertMessage(new Message(1, "intact", 1669947792));
+        long intactLength = Files.size(directory.resolve("messages.wal"));
+        store.insertMessage(new Message(1, "damaged", 1669947793));
+
+        Path wal = directory.resolve("messages.wal");
+        byte[] log = Files.readAllBytes(wal);
+        // Flipping a bit in the text of the second record, then appending an insert header announcing 3 bytes of text
+        log[(int) intactLength + 21] ^= 1;
+        byte[] garbage = { 1, 9, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0, 'b', 'a', 'd', 0, 0, 0, 0 };
+        byte[] damaged = new byte[log.length + garbage.length];
+        System.arraycopy(log, 0, damaged, 0, log.length);
+        System.arraycopy(garbage, 0, damaged, log.length, garbage.length);
+        Files.write(wal, damaged);
+
+        try (OffHeapMessageDAO reopened = open()) {
+            Assertions.assertEquals(List.of(new Message(1, 1, "intact", 1669947792)), reopened.getAllMessages());
+            Assertions.assertEquals(intactLength, Files.size(wal));
+            Assertions.assertEquals(2, reopened.insertMessage(new Message(1, "after recovery", 1669947794)).getMessage_id());
+        }
+    }
+
+    private OffHeapMessageDAO open() throws IOException {
+        return new OffHeapMessageDAO(directory, false, 1 << 20);
+    }
+}
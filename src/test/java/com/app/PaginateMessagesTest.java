@@ -0,0 +1,121 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.Message;
+import com.app.Model.MessagePage;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class PaginateMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web. Two more messages are posted so that there are three messages to page through.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        postMessage("test message 2");
+        postMessage("test message 3");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2 and then following the next_cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a page with messages 1 and 2 and next_cursor 2, then a page with message 3 and no next_cursor
+     */
+    @Test
+    public void getMessagesPageFollowsCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?limit=2");
+        Assertions.assertEquals(200, response.statusCode());
+        MessagePage firstPage = objectMapper.readValue(response.body(), MessagePage.class);
+        Assertions.assertEquals(List.of(1, 2), firstPage.getMessages().stream().map(Message::getMessage_id).toList());
+        Assertions.assertEquals(2, firstPage.getNext_cursor());
+
+        response = get("/messages?limit=2&after_id=" + firstPage.getNext_cursor());
+        Assertions.assertEquals(200, response.statusCode());
+        MessagePage secondPage = objectMapper.readValue(response.body(), MessagePage.class);
+        Assertions.assertEquals(List.of(3), secondPage.getMessages().stream().map(Message::getMessage_id).toList());
+        Assertions.assertNull(secondPage.getNext_cursor());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesPageInvalidLimit() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?limit=0");
+        Assertions.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?stream=true
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array of all three messages posted by account 1
+     */
+    @Test
+    public void streamMessagesForUser() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/messages?stream=true");
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals(new Message(1, 1, "test message 1", 1669947792), messages.get(0));
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
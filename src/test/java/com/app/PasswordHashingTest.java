@@ -0,0 +1,98 @@
+package com.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.DAO.AccountDAO;
+import com.app.Model.Account;
+import com.app.Service.AccountService;
+import com.app.Util.ConnectionUtil;
+
+public class PasswordHashingTest {
+    AccountDAO accountDAO;
+
+    /**
+     * Before every test, resetting the database.
+     */
+    @BeforeEach
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = new AccountDAO();
+    }
+
+    /**
+     * Registering an account, then logging in through a new AccountService (so nothing is cached)
+     *
+     * Expected Result: the database holds a PBKDF2 hash instead of the password, the right password logs in
+     * and a wrong one is rejected
+     */
+    @Test
+    public void registeredPasswordIsHashed() throws SQLException {
+        Account registered = new AccountService(accountDAO).registerAccount(new Account("newuser", "newpassword"));
+        Assertions.assertEquals(new Account(2, "newuser", null), registered);
+
+        String stored = storedPassword("newuser");
+        Assertions.assertTrue(stored.startsWith("pbkdf2-sha512$"));
+        Assertions.assertFalse(stored.contains("newpassword"));
+
+        AccountService accountService = new AccountService(accountDAO);
+        Assertions.assertEquals(registered, accountService.login("newuser", "newpassword"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> accountService.login("newuser", "wrongpassword"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> accountService.login("nosuchuser", "newpassword"));
+    }
+
+    /**
+     * Logging in with the seed account, whose password was stored in plaintext before hashing was introduced
+     *
+     * Expected Result: the login succeeds, the plaintext password is replaced with a hash, and the account can still
+     * log in afterwards
+     */
+    @Test
+    public void legacyPasswordIsRehashedOnLogin() throws SQLException {
+        Assertions.assertEquals("password", storedPassword("testuser1"));
+
+        Account expected = new Account(1, "testuser1", null);
+        Assertions.assertEquals(expected, new AccountService(accountDAO).login("testuser1", "password"));
+        Assertions.assertTrue(storedPassword("testuser1").startsWith("pbkdf2-sha512$"));
+
+        AccountService accountService = new AccountService(accountDAO);
+        Assertions.assertEquals(expected, accountService.login("testuser1", "password"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> accountService.login("testuser1", "wrongpassword"));
+    }
+
+    /**
+     * Logging in to an account whose stored hash is corrupted (an iteration count that is not a number, and a salt
+     * that is not Base64)
+     *
+     * Expected Result: the login is rejected like a wrong password instead of failing with an exception
+     */
+    @Test
+    public void malformedStoredHashRejectsLogin() throws SQLException {
+        for (String corrupted : new String[] { "pbkdf2-sha512$many$c2FsdA$aGFzaA", "pbkdf2-sha512$1000$not base64!$aGFzaA", "pbkdf2-sha512$1000" }) {
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement("UPDATE account SET password = ? WHERE username = ?")) {
+                preparedStatement.setString(1, corrupted);
+                preparedStatement.setString(2, "testuser1");
+                Assertions.assertEquals(1, preparedStatement.executeUpdate());
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new AccountService(accountDAO).login("testuser1", "password"));
+        }
+    }
+
+    private String storedPassword(String username) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT password FROM account WHERE username = ?")) {
+            preparedStatement.setString(1, username);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                Assertions.assertTrue(resultSet.next());
+                return resultSet.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Util.ConcurrencyLimiter;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending POST localhost:8080/messages as account 1 until the account's burst is used up, then
+     * GET localhost:8080/messages/1 from the same client
+     *
+     * Expected Response:
+     *  Status Code: 429 with a Retry-After header once account 1 is over its limit, while the GET is still 200
+     */
+    @Test
+    public void postMessageOverAccountLimit() throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = null;
+        for (int i = 0; i < 150; i++) {
+            response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                break;
+            }
+        }
+        Assertions.assertEquals(429, response.statusCode());
+        Assertions.assertTrue(Integer.parseInt(response.headers().firstValue("Retry-After").orElseThrow()) >= 1);
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        Assertions.assertEquals(200, webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Completing requests slower and then faster than the target latency
+     *
+     * Expected Result: the limit is cut by slow requests but not below its minimum, requests over the limit are
+     * rejected, and fast requests under load let the limit grow again
+     */
+    @Test
+    public void concurrencyLimitAdapts() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20, 100);
+        long slow = TimeUnit.MILLISECONDS.toNanos(200);
+        long fast = TimeUnit.MILLISECONDS.toNanos(1);
+
+        Assertions.assertTrue(limiter.tryAcquire());
+        limiter.release(slow);
+        Assertions.assertEquals(9, limiter.getLimit());
+
+        for (int i = 0; i < 9; i++) {
+            Assertions.assertTrue(limiter.tryAcquire());
+        }
+        Assertions.assertFalse(limiter.tryAcquire());
+        Assertions.assertEquals(1, limiter.getRejectedCount());
+
+        for (int i = 0; i < 9; i++) {
+            limiter.release(fast);
+        }
+        Assertions.assertTrue(limiter.getLimit() >= 9);
+        Assertions.assertEquals(0, limiter.getInFlight());
+
+        for (int i = 0; i < 1000; i++) {
+            int admitted = 0;
+            while (admitted < 20 && limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int j = 0; j < admitted; j++) {
+                limiter.release(fast);
+            }
+        }
+        Assertions.assertEquals(20, limiter.getLimit());
+    }
+}
@@ -0,0 +1,77 @@
+package com.app;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Util.ConnectionUtil;
+import com.app.Util.MigrationRunner;
+
+public class SchemaMigrationTest {
+
+    /**
+     * Before every test, resetting the database, which recreates the tables and applies all migrations.
+     */
+    @BeforeEach
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Every migration is recorded in schema_version, and running the migrations again applies nothing.
+     */
+    @Test
+    public void migrationsAreRecordedAndAppliedOnce() throws SQLException {
+        Assertions.assertEquals(0, MigrationRunner.migrate());
+        try (Connection connection = ConnectionUtil.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), MAX(version) FROM schema_version")) {
+            resultSet.next();
+            // Versions are numbered from 1 without gaps, so every version up to the latest has been recorded once
+            Assertions.assertTrue(resultSet.getInt(1) >= 3);
+            Assertions.assertEquals(resultSet.getInt(2), resultSet.getInt(1));
+        }
+    }
+
+    /**
+     * The per-account timeline query is answered from the (posted_by, message_id) index.
+     */
+    @Test
+    public void accountTimelineUsesPostedByIndex() throws SQLException {
+        String plan = explain("SELECT * FROM message WHERE posted_by = 1 AND message_id > 0 ORDER BY message_id LIMIT 100");
+        Assertions.assertTrue(plan.contains("IDX_MESSAGE_POSTED_BY_ID"), plan);
+    }
+
+    /**
+     * Time-ordered listing is answered from the (time_posted_epoch, message_id) index.
+     */
+    @Test
+    public void timeRangeUsesTimePostedIndex() throws SQLException {
+        String plan = explain("SELECT * FROM message WHERE time_posted_epoch >= 1669947792 ORDER BY time_posted_epoch, message_id");
+        Assertions.assertTrue(plan.contains("IDX_MESSAGE_TIME_POSTED_ID"), plan);
+    }
+
+    /**
+     * A per-account time range is answered from the (posted_by, time_posted_epoch, message_id) index.
+     */
+    @Test
+    public void accountTimeRangeUsesPostedByTimeIndex() throws SQLException {
+        String plan = explain("SELECT * FROM message USE INDEX (idx_message_posted_by_time) WHERE posted_by = 1 AND time_posted_epoch >= 1669947792 AND time_posted_epoch < 1669947900"
+                + " ORDER BY time_posted_epoch, message_id LIMIT 100");
+        Assertions.assertTrue(plan.contains("IDX_MESSAGE_POSTED_BY_TIME"), plan);
+    }
+
+    private String explain(String sql) throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN " + sql)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Model.Message;
+import com.app.Model.MessagePage;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web. Three more messages are posted by account 1, so the messages are
+     * 1 "test message 1", 2 "Hello world", 3 "hello, helpful people" and 4 "goodbye world", from oldest to newest.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        postMessage("Hello world", 1669947800);
+        postMessage("hello, helpful people", 1669947900);
+        postMessage("goodbye world", 1669948000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search with a single word, two words, a prefix and
+     * a prefix that pages with limit=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the matching messages, newest first, with a next_cursor while older matches follow
+     */
+    @Test
+    public void searchWordsAndPrefixes() throws IOException, InterruptedException {
+        Assertions.assertEquals(List.of(4, 2), search("q=world"));
+        Assertions.assertEquals(List.of(2), search("q=HELLO%20world"));
+        Assertions.assertEquals(List.of(3, 2), search("q=hel*"));
+        Assertions.assertEquals(List.of(), search("q=hello%20goodbye"));
+
+        HttpResponse<String> response = get("/messages/search?q=hel*&limit=1");
+        MessagePage firstPage = objectMapper.readValue(response.body(), MessagePage.class);
+        Assertions.assertEquals(3, firstPage.getNext_cursor());
+        Assertions.assertEquals(List.of(2), search("q=hel*&limit=1&before=3"));
+    }
+
+    /**
+     * Updating and deleting messages after the index has been built keeps search results up to date.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the updated message matches its new text only, and the deleted message no longer matches
+     */
+    @Test
+    public void searchFollowsUpdatesAndDeletes() throws IOException, InterruptedException {
+        Assertions.assertEquals(List.of(4, 2), search("q=world"));
+
+        HttpRequest updateRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"farewell everyone\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(updateRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/4"))
+                .DELETE()
+                .build();
+        webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        postMessage("new world", 1669948100);
+
+        Assertions.assertEquals(List.of(5), search("q=world"));
+        Assertions.assertEquals(List.of(2), search("q=farewell"));
+        Assertions.assertEquals(List.of(3), search("q=hello"));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search without words and with an unknown cursor
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchInvalidQuery() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, get("/messages/search").statusCode());
+        Assertions.assertEquals(400, get("/messages/search?q=%2A%20%21").statusCode());
+        Assertions.assertEquals(400, get("/messages/search?q=world&before=99").statusCode());
+    }
+
+    private List<Integer> search(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages/search?" + query);
+        Assertions.assertEquals(200, response.statusCode());
+        MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+        return page.getMessages().stream().map(Message::getMessage_id).toList();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String text, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
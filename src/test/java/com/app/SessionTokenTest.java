@@ -0,0 +1,124 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Controller.SocialMediaController;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SessionTokenTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending POST localhost:8080/messages with the token returned by POST /login, as the token's account,
+     * as another account, and with a forged token
+     *
+     * Expected Response:
+     *  Status Code: 200 as the token's account, 403 as another account, 401 with a forged token
+     */
+    @Test
+    public void postMessageWithToken() throws IOException, InterruptedException {
+        String token = login("testuser1", "password");
+
+        Assertions.assertEquals(200, postMessage(1, "Bearer " + token).statusCode());
+        Assertions.assertEquals(403, postMessage(2, "Bearer " + token).statusCode());
+        Assertions.assertEquals(401, postMessage(1, "Bearer " + token.substring(0, token.length() - 2) + "xx").statusCode());
+        // Without a token, the request is accepted as before
+        Assertions.assertEquals(200, postMessage(1, null).statusCode());
+    }
+
+    /**
+     * Sending DELETE localhost:8080/messages/1 with the token of an account that did not post message 1,
+     * then POST /logout and POST localhost:8080/messages with the revoked token
+     *
+     * Expected Response:
+     *  Status Code: 403 for the delete, 200 for the logout, then 401 for the post and for a second logout
+     */
+    @Test
+    public void ownershipAndLogout() throws IOException, InterruptedException {
+        HttpRequest registerRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"user2\", \"password\": \"password2\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(registerRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        String token = login("user2", "password2");
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .header("Authorization", "Bearer " + token)
+                .DELETE()
+                .build();
+        Assertions.assertEquals(403, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assertions.assertEquals(200, postMessage(2, "Bearer " + token).statusCode());
+        Assertions.assertEquals(200, logout(token).statusCode());
+        Assertions.assertEquals(401, postMessage(2, "Bearer " + token).statusCode());
+        Assertions.assertEquals(401, logout(token).statusCode());
+    }
+
+    private String login(String username, String password) throws IOException, InterruptedException {
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"" + username + "\", \"password\": \"" + password + "\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response.headers().firstValue("X-Session-Token").orElseThrow();
+    }
+
+    private HttpResponse<String> logout(String token) throws IOException, InterruptedException {
+        HttpRequest logoutRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/logout"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .header("Authorization", "Bearer " + token)
+                .build();
+        return webClient.send(logoutRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> postMessage(int postedBy, String authorization) throws IOException, InterruptedException {
+        HttpRequest.Builder postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json");
+        if (authorization != null) {
+            postMessageRequest.header("Authorization", authorization);
+        }
+        return webClient.send(postMessageRequest.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
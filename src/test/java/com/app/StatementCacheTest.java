@@ -0,0 +1,120 @@
+package com.app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.Util.ConnectionPool;
+import com.app.Util.StatementCache;
+
+public class StatementCacheTest {
+    private static final String INSERT = "INSERT INTO item (amount) VALUES (?)";
+
+    ConnectionPool pool;
+    Connection connection;
+
+    /**
+     * Before every test, creating a one-connection pool over an in-memory database, with room for two cached
+     * statements, and borrowing its connection.
+     */
+    @BeforeEach
+    public void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:statement-cache;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        pool = new ConnectionPool(dataSource, 0, 1, 1, 1000, 0, 0, 2);
+        connection = pool.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS item (item_id INT AUTO_INCREMENT PRIMARY KEY, amount INT)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        connection.close();
+        pool.shutdown();
+    }
+
+    /**
+     * Closing a cached statement keeps the physical statement open, and preparing the same SQL again on the
+     * connection reuses it. While it is in use, the same SQL gets a statement of its own.
+     */
+    @Test
+    public void sameSqlReusesStatement() throws SQLException {
+        StatementCache.Stats stats = pool.getStatementCacheStats();
+        PreparedStatement first = connection.prepareStatement(INSERT);
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.close();
+        Assertions.assertTrue(first.isClosed());
+        Assertions.assertFalse(physical.isClosed());
+        Assertions.assertThrows(SQLException.class, () -> first.setInt(1, 1));
+
+        PreparedStatement second = connection.prepareStatement(INSERT);
+        Assertions.assertSame(physical, second.unwrap(PreparedStatement.class));
+        PreparedStatement concurrent = connection.prepareStatement(INSERT);
+        Assertions.assertNotSame(physical, concurrent.unwrap(PreparedStatement.class));
+        second.close();
+        concurrent.close();
+        Assertions.assertEquals(1, stats.getHits());
+        Assertions.assertEquals(2, stats.getMisses());
+    }
+
+    /**
+     * The same SQL prepared with and without generated keys is cached as two different statements.
+     */
+    @Test
+    public void generatedKeysVariantsKeptApart() throws SQLException {
+        PreparedStatement plain = connection.prepareStatement(INSERT);
+        PreparedStatement physicalPlain = plain.unwrap(PreparedStatement.class);
+        plain.close();
+
+        PreparedStatement withKeys = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS);
+        PreparedStatement physicalWithKeys = withKeys.unwrap(PreparedStatement.class);
+        Assertions.assertNotSame(physicalPlain, physicalWithKeys);
+        withKeys.setInt(1, 7);
+        withKeys.executeUpdate();
+        Assertions.assertTrue(withKeys.getGeneratedKeys().next());
+        withKeys.close();
+
+        try (PreparedStatement again = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            Assertions.assertSame(physicalWithKeys, again.unwrap(PreparedStatement.class));
+        }
+        try (PreparedStatement again = connection.prepareStatement(INSERT)) {
+            Assertions.assertSame(physicalPlain, again.unwrap(PreparedStatement.class));
+        }
+    }
+
+    /**
+     * A statement returned to a full cache evicts the least recently used one, which is really closed.
+     */
+    @Test
+    public void evictedStatementIsClosed() throws SQLException {
+        long evictions = pool.getStatementCacheStats().getEvictions();
+        PreparedStatement oldest = prepareAndClose("SELECT 1");
+        PreparedStatement middle = prepareAndClose("SELECT 2");
+        Assertions.assertFalse(oldest.isClosed());
+
+        PreparedStatement newest = prepareAndClose("SELECT 3");
+        Assertions.assertTrue(oldest.isClosed());
+        Assertions.assertFalse(middle.isClosed());
+        Assertions.assertFalse(newest.isClosed());
+        Assertions.assertEquals(evictions + 1, pool.getStatementCacheStats().getEvictions());
+    }
+
+    /**
+     * Prepares and closes a statement, returning the physical statement left in the cache.
+     */
+    private PreparedStatement prepareAndClose(String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            return statement.unwrap(PreparedStatement.class);
+        }
+    }
+}
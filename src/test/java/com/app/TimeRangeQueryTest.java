@@ -0,0 +1,151 @@
+package com.app;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.app.Controller.SocialMediaController;
+import com.app.DAO.JdbcMessageDAO;
+import com.app.Model.Message;
+import com.app.Model.MessagePage;
+import com.app.Service.RecentMessageWindow;
+import com.app.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class TimeRangeQueryTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, resetting the database, restarting the Javalin app, and creating a new webClient and ObjectMapper
+     * for interacting locally on the web. Three more messages are posted by account 1, out of time order, so that in time
+     * order the messages are 2 (1669947700), 1 (1669947792), 4 (1669947800) and 3 (3000000000, past the int range).
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        postMessage("oldest", 1669947700);
+        postMessage("far future", 3000000000L);
+        postMessage("middle", 1669947800);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages and GET localhost:8080/accounts/1/messages with since and
+     * until, then following the next_cursor and next_cursor_time with after_id and after_time
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages in the range in time order, with epochs beyond the int range read back intact
+     */
+    @Test
+    public void getMessagesInTimeRange() throws IOException, InterruptedException {
+        Assertions.assertEquals(List.of(1, 4), ids(get("/messages?since=1669947792&until=1669947900")));
+        Assertions.assertEquals(List.of(2, 1), ids(get("/accounts/1/messages?until=1669947800")));
+
+        MessagePage page = get("/messages?since=1669947750&limit=1");
+        Assertions.assertEquals(List.of(1), ids(page));
+        Assertions.assertEquals(1, page.getNext_cursor());
+        Assertions.assertEquals(1669947792L, page.getNext_cursor_time());
+        page = get("/messages?since=1669947750&limit=2&after_id=1&after_time=1669947792");
+        Assertions.assertEquals(List.of(4, 3), ids(page));
+        Assertions.assertEquals(3000000000L, page.getMessages().get(1).getTime_posted_epoch());
+        Assertions.assertNull(page.getNext_cursor());
+        Assertions.assertNull(page.getNext_cursor_time());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages with since and a limit of 2, deleting the
+     * message the next_cursor points to, then following the cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the page after the deleted cursor message, since the cursor carries its own position;
+     *  and 400 for an after_id without after_time
+     */
+    @Test
+    public void cursorSurvivesDeletedMessage() throws IOException, InterruptedException {
+        MessagePage page = get("/accounts/1/messages?since=1669947700&limit=2");
+        Assertions.assertEquals(List.of(2, 1), ids(page));
+        Assertions.assertEquals(1, page.getNext_cursor());
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        page = get("/accounts/1/messages?since=1669947700&limit=2&after_id=" + page.getNext_cursor() + "&after_time=" + page.getNext_cursor_time());
+        Assertions.assertEquals(List.of(4, 3), ids(page));
+
+        HttpRequest withoutTime = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?since=1669947700&after_id=4"))
+                .build();
+        Assertions.assertEquals(400, webClient.send(withoutTime, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * A window smaller than the data answers the recent ranges it covers and leaves older ranges to the database.
+     */
+    @Test
+    public void recentWindowCoversNewestMessages() {
+        RecentMessageWindow window = new RecentMessageWindow(new JdbcMessageDAO(), 2);
+
+        List<Message> recent = window.range(1669947800, 0, Long.MAX_VALUE, null, 10);
+        Assertions.assertEquals(List.of(4, 3), recent.stream().map(Message::getMessage_id).toList());
+        Assertions.assertNull(window.range(1669947700, 0, Long.MAX_VALUE, null, 10));
+
+        // A newer message pushes message 4 out, so its range is no longer covered
+        window.messageAdded(new Message(5, 1, "newest", 3000000001L));
+        Assertions.assertNull(window.range(1669947800, 0, Long.MAX_VALUE, null, 10));
+        Assertions.assertEquals(List.of(3, 5), window.range(1669947900, 0, Long.MAX_VALUE, 1, 10).stream().map(Message::getMessage_id).toList());
+    }
+
+    private List<Integer> ids(MessagePage page) {
+        return page.getMessages().stream().map(Message::getMessage_id).toList();
+    }
+
+    private MessagePage get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), MessagePage.class);
+    }
+
+    private void postMessage(String text, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
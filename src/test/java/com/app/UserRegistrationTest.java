@@ -18,6 +18,7 @@ import com.app.Util.ConnectionUtil;
 import io.javalin.Javalin;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 public class UserRegistrationTest {
 
@@ -52,7 +53,7 @@ public class UserRegistrationTest {
      * 
      * Expected Response:
      *  Status Code: 200
-     *  Response Body: JSON representation of user object
+     *  Response Body: JSON representation of user object, without the password
      */
     @Test
     public void registerSuccessful() throws IOException, InterruptedException {
@@ -68,9 +69,10 @@ public class UserRegistrationTest {
 
         assertEquals(200, status);
         ObjectMapper om = new ObjectMapper();
-        Account expectedResult = new Account(2, "newuser", "newpassword");
+        Account expectedResult = new Account(2, "newuser", null);
         Account actualResult = om.readValue(response.body(), Account.class);
-        assertEquals(expectedResult, actualResult);        
+        assertEquals(expectedResult, actualResult);
+        assertFalse(response.body().contains("newpassword"));        
     }
 
     /**
@@ -0,0 +1,180 @@
+package com.app;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Assertions;
+
+import com.app.DAO.AccountDAO;
+import com.app.DAO.JdbcMessageDAO;
+import com.app.DAO.MessageDAO;
+import com.app.Model.Message;
+import com.app.Service.AccountIndex;
+import com.app.Service.MessageService;
+import com.app.Service.MessageWriteBehind;
+import com.app.Util.ConnectionUtil;
+import com.app.Util.LruCache;
+
+public class WriteBehindMessageTest {
+    MessageDAO messageDAO;
+    AccountDAO accountDAO;
+    MessageWriteBehind writeBehind;
+
+    /**
+     * Before every test, resetting the database.
+     */
+    @BeforeEach
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new JdbcMessageDAO();
+        accountDAO = new AccountDAO();
+    }
+
+    /**
+     * Messages posted in write-behind mode get IDs from the sequence straight away, can be read before they are written,
+     * and are in the database after a flush.
+     */
+    @Test
+    public void postMessagesWriteBehind() {
+        MessageService messageService = service(messageDAO, 10);
+        Message first = messageService.postMessage(new Message(1, "queued 1", 1669947792));
+        Message second = messageService.postMessage(new Message(1, "queued 2", 1669947793));
+        Assertions.assertEquals(2, first.getMessage_id());
+        Assertions.assertEquals(3, second.getMessage_id());
+        Assertions.assertEquals(first, messageService.getMessageById(2));
+
+        messageService.flushWrites();
+        Assertions.assertEquals(second, messageDAO.getMessageByMessageID(3));
+        // A synchronous insert keeps drawing from the same sequence
+        Assertions.assertEquals(4, messageDAO.insertMessage(new Message(1, "direct", 1669947794)).getMessage_id());
+
+        messageService.shutdown();
+        Assertions.assertThrows(RejectedExecutionException.class,
+                () -> messageService.postMessage(new Message(1, "too late", 1669947795)));
+    }
+
+    /**
+     * When the queue is full, posting fails fast instead of waiting, and shutting down still writes what was queued.
+     */
+    @Test
+    public void postMessageQueueFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        MessageDAO slowDAO = new JdbcMessageDAO() {
+            @Override
+            public boolean insertMessagesWithIds(List<Message> messages) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.insertMessagesWithIds(messages);
+            }
+        };
+        MessageService messageService = service(slowDAO, 1);
+
+        // The writer takes the first message off the queue and blocks on it, the second one fills the queue
+        messageService.postMessage(new Message(1, "in flight", 1669947792));
+        while (writeBehind.getQueueDepth() > 0) {
+            Thread.sleep(10);
+        }
+        messageService.postMessage(new Message(1, "queued", 1669947793));
+        Assertions.assertThrows(RejectedExecutionException.class,
+                () -> messageService.postMessage(new Message(1, "rejected", 1669947794)));
+
+        release.countDown();
+        messageService.shutdown();
+        Assertions.assertEquals(3, messageDAO.getAllMessages().size());
+    }
+
+    /**
+     * When every attempt to write a batch fails, the flush waiting for it fails, and the dropped message is taken back
+     * out of the timelines, the search index and the statistics, and its version is bumped.
+     */
+    @Test
+    public void droppedBatchUndone() {
+        AtomicInteger attempts = new AtomicInteger();
+        MessageDAO failingDAO = new JdbcMessageDAO() {
+            @Override
+            public boolean insertMessagesWithIds(List<Message> messages) {
+                attempts.incrementAndGet();
+                return false;
+            }
+        };
+        MessageService messageService = service(failingDAO, 10);
+        // Building the indexes and the counters before the message is queued
+        messageService.getTimelinePageByAccountId(1, 0, 10);
+        messageService.searchMessages("queued", 0, 10);
+        Assertions.assertEquals(1, messageService.getStats().getAccountPostCount(1).getMessage_count());
+
+        Message queued = messageService.postMessage(new Message(1, "queued", 1669947793));
+        Assertions.assertEquals(2, messageService.getStats().getAccountPostCount(1).getMessage_count());
+        long postedStamp = messageService.getVersionTracker().messageVersion(queued.getMessage_id()).stamp();
+
+        Assertions.assertThrows(IllegalStateException.class, messageService::flushWrites);
+        Assertions.assertEquals(3, attempts.get());
+        Assertions.assertNull(messageService.getMessageById(queued.getMessage_id()));
+        Assertions.assertEquals(1, messageService.getStats().getAccountPostCount(1).getMessage_count());
+        Assertions.assertTrue(messageService.getVersionTracker().messageVersion(queued.getMessage_id()).stamp() > postedStamp);
+        // The dropped message is no longer a valid cursor in the account's timeline or in the search index
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> messageService.getTimelinePageByAccountId(1, queued.getMessage_id(), 10));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> messageService.searchMessages("queued", queued.getMessage_id(), 10));
+
+        // A flush after the failure has been reported only waits for later messages
+        messageService.flushWrites();
+        messageService.shutdown();
+    }
+
+    /**
+     * A batch dropped while a stats rebuild is waiting for the queue to be flushed is uncounted without blocking the
+     * writer on the rebuild, so the rebuild finishes, counts only the stored messages, and writes go on afterwards.
+     */
+    @Test
+    public void droppedBatchDuringRebuild() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        MessageDAO failingDAO = new JdbcMessageDAO() {
+            @Override
+            public boolean insertMessagesWithIds(List<Message> messages) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+        };
+        MessageService messageService = service(failingDAO, 10);
+        Assertions.assertEquals(1, messageService.getStats().getAccountPostCount(1).getMessage_count());
+        messageService.postMessage(new Message(1, "dropped", 1669947793));
+
+        Thread rebuild = new Thread(() -> messageService.getStats().rebuild());
+        rebuild.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rebuild.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        rebuild.join(5000);
+        Assertions.assertFalse(rebuild.isAlive());
+        Assertions.assertEquals(1, messageService.getStats().getAccountPostCount(1).getMessage_count());
+
+        messageService.postMessage(new Message(1, "after the rebuild", 1669947794));
+        Assertions.assertEquals(2, messageService.getStats().getAccountPostCount(1).getMessage_count());
+        Assertions.assertThrows(IllegalStateException.class, messageService::flushWrites);
+        Assertions.assertEquals(1, messageService.getStats().getAccountPostCount(1).getMessage_count());
+        messageService.shutdown();
+    }
+
+    /**
+     * Creates a MessageService in write-behind mode, with ID blocks of 2 so the tests also cross a block boundary.
+     */
+    private MessageService service(MessageDAO dao, int queueCapacity) {
+        writeBehind = new MessageWriteBehind(dao, queueCapacity, 100, 2);
+        return new MessageService(dao, accountDAO, new AccountIndex(accountDAO), new LruCache<>(100, 0), writeBehind);
+    }
+}